@@ -0,0 +1,167 @@
+package stocks.solver.raul;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Input for the benchmarks, either synthetic or replayed from a recorded input file
+ * @author Raul
+ *
+ */
+final class BenchmarkData {
+
+	static final String SYNTHETIC = "synthetic";
+	static final String REPLAY = "replay";
+
+	// System property with the input file to replay, set by the jmh task in build.gradle
+	static final String REPLAY_FILE_PROPERTY = "replayFile";
+
+	// Mid price the synthetic books are built around, in ticks
+	static final long MID_PRICE = 4400;
+
+	static final int SHARES_PER_ORDER = 200;
+
+	private BenchmarkData(){
+	}
+
+	/**
+	 * @param source SYNTHETIC or REPLAY
+	 * @param maxLines Most lines to return
+	 * @return Lines of input
+	 * @throws IOException Thrown if the replay file cannot be read
+	 */
+	static List<String> lines(String source, int maxLines) throws IOException{
+		if(source.equals(REPLAY)){
+			String replayFile = System.getProperty(REPLAY_FILE_PROPERTY, "src/test/resources/testInput/pricer.in");
+			// Only as much as is needed, a generated input may be far larger than memory
+			List<String> lines = new ArrayList<String>();
+			BufferedReader reader = Files.newBufferedReader(Paths.get(replayFile), Charset.defaultCharset());
+			try {
+				String line;
+				while(lines.size() < maxLines && (line = reader.readLine()) != null){
+					lines.add(line);
+				}
+			} finally {
+				reader.close();
+			}
+			return lines;
+		} else if(source.equals(SYNTHETIC)){
+			return syntheticLines(maxLines);
+		}
+
+		throw new IllegalArgumentException("Unknown source: " + source);
+	}
+
+	/**
+	 * Generates a market of adds around a drifting mid price and reduces of live orders, in the input format, see
+	 * {@link OrderFlowGenerator}
+	 * @param count Number of lines
+	 * @return Lines of input
+	 */
+	static List<String> syntheticLines(int count){
+		// A pool of ids the live orders never fill, so reduces stay at the set ratio
+		return new OrderFlowGenerator(42, 50, 1, Math.max(count, 1), 0.45).lines(count);
+	}
+
+	/**
+	 * Adds a symbol column to lines of input.  The symbol is picked by the order id, so the adds and reduces of an
+	 * order all go to the same symbol and every symbol's lines still make up a market of their own.
+	 * @param lines Lines of input without symbols
+	 * @param symbolCount Number of symbols to spread the orders over
+	 * @return Lines of input in the extended format
+	 */
+	static List<String> symbolLines(List<String> lines, int symbolCount){
+		List<String> symbolLines = new ArrayList<String>(lines.size());
+
+		for(String line : lines){
+			String[] parts = line.split("\\s+");
+			if(parts.length < 3){
+				continue;
+			}
+
+			String symbol = "S" + Integer.toString((parts[2].hashCode() & Integer.MAX_VALUE) % symbolCount, 36);
+			int timestampEnd = line.indexOf(' ');
+			symbolLines.add(line.substring(0, timestampEnd) + " " + symbol + line.substring(timestampEnd));
+		}
+
+		return symbolLines;
+	}
+
+	/**
+	 * @param lines Lines of input
+	 * @return Orders decoded from the lines, bad lines are left out
+	 */
+	static Order[] orders(List<String> lines){
+		List<Order> orders = new ArrayList<Order>(lines.size());
+
+		for(String line : lines){
+			try {
+				orders.add(new Order(line.split("\\s+")));
+			} catch (ParsingException | NumberFormatException e) {
+				// Benchmarks only replay good orders
+			}
+		}
+
+		return orders.toArray(new Order[orders.size()]);
+	}
+
+	/**
+	 * @return Id of a resting order in a book built by book()
+	 */
+	static String restingOrderId(OrderSide side, int level, int index){
+		return side.toString() + Integer.toString(level, 36) + "_" + Integer.toString(index, 36);
+	}
+
+	/**
+	 * Builds a book with the given number of price levels on each side, every level holding the same orders of
+	 * SHARES_PER_ORDER shares.  Bids are at and below MID_PRICE, asks above it.
+	 * @param priceLevelsType Implementation to use for the price levels
+	 * @param depth Number of price levels on each side
+	 * @param ordersPerLevel Number of orders at each price level
+	 * @param targets Targets to price against the book
+	 * @return Book
+	 */
+	static MasterBook book(PriceLevelsType priceLevelsType, int depth, int ordersPerLevel, int[] targets){
+		MasterBook masterBook = new MasterBook(targets, priceLevelsType, false);
+
+		try {
+			for(int level = 0; level < depth; level++){
+				for(int index = 0; index < ordersPerLevel; index++){
+					masterBook.updateBookStructures(addOrder(restingOrderId(OrderSide.B, level, index), OrderSide.B,
+							MID_PRICE - level, SHARES_PER_ORDER));
+					masterBook.updateBookStructures(addOrder(restingOrderId(OrderSide.S, level, index), OrderSide.S,
+							MID_PRICE + 1 + level, SHARES_PER_ORDER));
+				}
+			}
+		} catch (ReduceMarketLookupException e) {
+			throw new IllegalStateException(e);
+		}
+
+		return masterBook;
+	}
+
+	static Order addOrder(String orderId, OrderSide side, long price, int size){
+		Order order = new Order();
+		order.setTimestamp(28800000);
+		order.setOrderAction(OrderAction.ADD);
+		order.setOrderId(orderId);
+		order.setSide(side);
+		order.setPrice(price);
+		order.setSize(size);
+		return order;
+	}
+
+	static Order reduceOrder(String orderId, int size){
+		Order order = new Order();
+		order.setTimestamp(28800000);
+		order.setOrderAction(OrderAction.REDUCE);
+		order.setOrderId(orderId);
+		order.setSize(size);
+		return order;
+	}
+}
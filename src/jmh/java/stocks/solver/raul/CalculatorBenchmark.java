@@ -0,0 +1,60 @@
+package stocks.solver.raul;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link Calculator#calculate(MasterBook, PricingTarget, Order)} for small and large targets against
+ * books of different depths
+ * @author Raul
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CalculatorBenchmark {
+
+	private static final int ORDERS_PER_LEVEL = 10;
+
+	@Param({ "1", "200", "10000", "100000" })
+	public int target;
+
+	// Number of price levels on each side of the book, every depth holds enough shares for the largest target
+	@Param({ "50", "1000" })
+	public int depth;
+
+	@Param({ "TREE", "LADDER", "FENWICK" })
+	public PriceLevelsType levels;
+
+	private final Calculator calculator = new Calculator();
+
+	private MasterBook masterBook;
+	private PricingTarget pricingTarget;
+	private Order bidOrder;
+
+	@Setup
+	public void setUp() {
+		masterBook = BenchmarkData.book(levels, depth, ORDERS_PER_LEVEL, new int[] { target });
+		pricingTarget = masterBook.getPricingTargets()[0];
+		bidOrder = BenchmarkData.addOrder("x", OrderSide.B, BenchmarkData.MID_PRICE, 1);
+	}
+
+	@Benchmark
+	public CalculatorResult calculate() {
+		return calculator.calculate(masterBook, pricingTarget, bidOrder);
+	}
+}
@@ -0,0 +1,90 @@
+package stocks.solver.raul;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link MasterBook#updateBookStructures(Order)} for adds and reduces against books of different depths.
+ * Adds and reduces change the book, so each iteration starts from a freshly built book and times a batch of
+ * orders.
+ * @author Raul
+ *
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20, batchSize = MasterBookBenchmark.BATCH_SIZE)
+@Measurement(iterations = 20, batchSize = MasterBookBenchmark.BATCH_SIZE)
+@Fork(1)
+@State(Scope.Thread)
+public class MasterBookBenchmark {
+
+	static final int BATCH_SIZE = 10000;
+
+	private static final int ORDERS_PER_LEVEL = 10;
+
+	// Number of price levels on each side of the book
+	@Param({ "10", "100", "1000" })
+	public int depth;
+
+	@Param({ "TREE", "LADDER", "FENWICK" })
+	public PriceLevelsType levels;
+
+	private MasterBook masterBook;
+
+	private Order[] addOrders;
+	private Order[] reduceOrders;
+
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUpOrders() {
+		addOrders = new Order[BATCH_SIZE];
+		reduceOrders = new Order[BATCH_SIZE];
+
+		for(int i = 0; i < BATCH_SIZE; i++){
+			// Adds land on the existing levels, alternating sides
+			int level = i % depth;
+			if(i % 2 == 0){
+				addOrders[i] = BenchmarkData.addOrder("n" + Integer.toString(i, 36), OrderSide.B,
+						BenchmarkData.MID_PRICE - level, BenchmarkData.SHARES_PER_ORDER);
+			} else {
+				addOrders[i] = BenchmarkData.addOrder("n" + Integer.toString(i, 36), OrderSide.S,
+						BenchmarkData.MID_PRICE + 1 + level, BenchmarkData.SHARES_PER_ORDER);
+			}
+
+			// Reduces of a single share spread over every resting order, so none of them is used up
+			int order = i / 2;
+			OrderSide side = i % 2 == 0 ? OrderSide.B : OrderSide.S;
+			reduceOrders[i] = BenchmarkData.reduceOrder(BenchmarkData.restingOrderId(side, order % depth,
+					(order / depth) % ORDERS_PER_LEVEL), 1);
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void setUpBook() {
+		masterBook = BenchmarkData.book(levels, depth, ORDERS_PER_LEVEL, new int[] { 200 });
+		next = 0;
+	}
+
+	@Benchmark
+	public UpdateBookResult add() throws ReduceMarketLookupException {
+		return masterBook.updateBookStructures(addOrders[next++]);
+	}
+
+	@Benchmark
+	public UpdateBookResult reduce() throws ReduceMarketLookupException {
+		return masterBook.updateBookStructures(reduceOrders[next++]);
+	}
+}
@@ -0,0 +1,107 @@
+package stocks.solver.raul;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks turning a line of input into an {@link Order}, by splitting the line as the solver first did and by
+ * decoding its bytes with {@link OrderDecoder}, against reading the same order from a {@link BinaryFeed}
+ * @author Raul
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OrderParsingBenchmark {
+
+	private static final int MAX_LINES = 100000;
+
+	@Param({ BenchmarkData.SYNTHETIC, BenchmarkData.REPLAY })
+	public String source;
+
+	private String[] lines;
+
+	// The same lines one after the other in a buffer, as the line readers give them to the decoder
+	private ByteBuffer buffer;
+	private int[] lineStarts;
+	private int[] lineEnds;
+
+	private final OrderDecoder orderDecoder = new OrderDecoder();
+	private final Order reusableOrder = new Order();
+
+	private int next = 0;
+
+	// The same lines converted to a binary feed, started over whenever it runs out
+	private byte[] binaryFeed;
+	private BinaryOrderDecoder binaryOrderDecoder;
+
+	@Setup
+	public void setUp() throws Exception {
+		List<String> lineList = BenchmarkData.lines(source, MAX_LINES);
+		lines = lineList.toArray(new String[lineList.size()]);
+
+		StringBuilder sb = new StringBuilder();
+		lineStarts = new int[lines.length];
+		lineEnds = new int[lines.length];
+		for(int i = 0; i < lines.length; i++){
+			lineStarts[i] = sb.length();
+			sb.append(lines[i]);
+			lineEnds[i] = sb.length();
+			sb.append('\n');
+		}
+		buffer = ByteBuffer.wrap(sb.toString().getBytes(Charset.defaultCharset()));
+
+		ByteArrayOutputStream written = new ByteArrayOutputStream();
+		BinaryFeedConverter.convert(new ByteLineReader(new ByteArrayInputStream(buffer.array())),
+				new BinaryOrderEncoder(Channels.newChannel(written)));
+		binaryFeed = written.toByteArray();
+		binaryOrderDecoder = new BinaryOrderDecoder(Channels.newChannel(new ByteArrayInputStream(binaryFeed)));
+	}
+
+	private int nextLine(){
+		int line = next;
+		next = next + 1 == lines.length ? 0 : next + 1;
+		return line;
+	}
+
+	@Benchmark
+	public Order splitLine() throws ParsingException {
+		return new Order(lines[nextLine()].split("\\s+"));
+	}
+
+	@Benchmark
+	public Order decodeBytes() throws ParsingException {
+		int line = nextLine();
+		return orderDecoder.decode(buffer, lineStarts[line], lineEnds[line], reusableOrder);
+	}
+
+	@Benchmark
+	public Order decodeBinary() throws ParsingException, IOException {
+		if(!binaryOrderDecoder.next(reusableOrder)){
+			binaryOrderDecoder = new BinaryOrderDecoder(Channels.newChannel(new ByteArrayInputStream(binaryFeed)));
+			binaryOrderDecoder.next(reusableOrder);
+		}
+		return reusableOrder;
+	}
+}
@@ -0,0 +1,99 @@
+package stocks.solver.raul;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks applying a whole market log to a fresh book, first the book updates alone and then with the
+ * calculations and output of a {@link PricingEngine}
+ * @author Raul
+ *
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class ReplayBenchmark {
+
+	private static final int MAX_LINES = 1000000;
+
+	private static final WritableByteChannel DISCARD = new WritableByteChannel() {
+		@Override
+		public int write(ByteBuffer src) {
+			int length = src.remaining();
+			src.position(src.limit());
+			return length;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+		}
+	};
+
+	@Param({ BenchmarkData.SYNTHETIC, BenchmarkData.REPLAY })
+	public String source;
+
+	@Param({ "TREE", "LADDER", "FENWICK" })
+	public PriceLevelsType levels;
+
+	private Order[] orders;
+
+	private MasterBook masterBook;
+
+	@Setup(Level.Trial)
+	public void setUpOrders() throws Exception {
+		orders = BenchmarkData.orders(BenchmarkData.lines(source, MAX_LINES));
+	}
+
+	@Setup(Level.Invocation)
+	public void setUpBook() {
+		masterBook = new MasterBook(new int[] { 200 }, levels, false);
+	}
+
+	@Benchmark
+	public MasterBook updateBook() {
+		for(Order order : orders){
+			try {
+				masterBook.updateBookStructures(order);
+			} catch (ReduceMarketLookupException e) {
+				// Skipped, as the solver does
+			}
+		}
+		return masterBook;
+	}
+
+	@Benchmark
+	public MasterBook price() throws IOException {
+		PricingEngine pricingEngine = new PricingEngine(masterBook, new OutputSink[] { new OutputSink(DISCARD, FlushPolicy.DEFAULT, false) });
+		for(Order order : orders){
+			try {
+				pricingEngine.process(order);
+			} catch (ReduceMarketLookupException e) {
+				// Skipped, as the solver does
+			}
+		}
+		return masterBook;
+	}
+}
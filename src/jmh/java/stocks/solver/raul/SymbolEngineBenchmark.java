@@ -0,0 +1,94 @@
+package stocks.solver.raul;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks pricing many symbols at once, a fixed pool of shard threads against a thread per symbol, replaying the
+ * same input spread over a number of symbols
+ * @author Raul
+ *
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class SymbolEngineBenchmark {
+
+	private static final int MAX_LINES = 1000000;
+
+	private static final int[] TARGETS = { 200 };
+
+	private static final WritableByteChannel DISCARD = new WritableByteChannel() {
+		@Override
+		public int write(ByteBuffer src) {
+			int length = src.remaining();
+			src.position(src.limit());
+			return length;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+		}
+	};
+
+	@Param({ BenchmarkData.SYNTHETIC, BenchmarkData.REPLAY })
+	public String source;
+
+	@Param({ "100", "10000" })
+	public int symbols;
+
+	private byte[] input;
+
+	@Setup(Level.Trial)
+	public void setUpInput() throws Exception {
+		List<String> lines = BenchmarkData.symbolLines(BenchmarkData.lines(source, MAX_LINES), symbols);
+
+		StringBuilder sb = new StringBuilder();
+		for(String line : lines){
+			sb.append(line).append('\n');
+		}
+		input = sb.toString().getBytes(Charset.defaultCharset());
+	}
+
+	private OutputSink[] outputs(){
+		return new OutputSink[] { new OutputSink(DISCARD, FlushPolicy.DEFAULT, false) };
+	}
+
+	@Benchmark
+	public void sharded() throws IOException {
+		new ShardedEngine(TARGETS, PriceLevelsType.TREE, false, Runtime.getRuntime().availableProcessors(), outputs())
+				.run(new ByteLineReader(new ByteArrayInputStream(input)), new OrderDecoder(new SymbolTable()));
+	}
+
+	@Benchmark
+	public void threadPerSymbol() throws IOException {
+		new VirtualThreadEngine(TARGETS, PriceLevelsType.TREE, false, outputs())
+				.run(new ByteLineReader(new ByteArrayInputStream(input)), new OrderDecoder(new SymbolTable()));
+	}
+}
@@ -0,0 +1,100 @@
+package stocks.solver.raul;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes results out on a dedicated thread.  The pricing thread publishes each result to a {@link ResultRing} and
+ * carries on, the writer thread formats the results and writes them in the order they were published, so slow
+ * output holds up pricing only once the ring is full.
+ * @author Raul
+ *
+ */
+public class AsyncResultWriter {
+
+	static final int DEFAULT_CAPACITY = 64 * 1024;
+
+	private final PricingTarget[] pricingTargets;
+	private final ResultRing resultRing;
+	private final Thread writerThread;
+
+	// Set by the writer thread if it could not write, after which it stops
+	private volatile IOException writeFailure = null;
+
+	/**
+	 * Constructor for AsyncResultWriter, starts the writer thread
+	 * @param pricingTargets Targets whose results will be written, in the book's order.  The writer thread takes over
+	 * writing their output.
+	 * @param capacity Number of results the ring holds, a power of two
+	 */
+	public AsyncResultWriter(PricingTarget[] pricingTargets, int capacity){
+		this.pricingTargets = pricingTargets;
+		this.resultRing = new ResultRing(capacity);
+		this.writerThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeResults();
+			}
+		}, "result-writer");
+		this.writerThread.setDaemon(true);
+		this.writerThread.start();
+	}
+
+	/**
+	 * Publishes a result to be written, waiting while the ring is full
+	 * @param pricingTarget Target of the result
+	 * @param calcResult Result to write
+	 * @throws IOException Thrown if the writer thread has failed to write
+	 */
+	void publish(PricingTarget pricingTarget, CalculatorResult calcResult) throws IOException{
+		while(!resultRing.offer(pricingTarget.getIndex(), calcResult)){
+			checkWriteFailure();
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * Waits for every published result to be written and stops the writer thread
+	 * @throws IOException Thrown if the writer thread failed to write
+	 */
+	void finish() throws IOException{
+		resultRing.finish();
+		LockSupport.unpark(writerThread);
+		EngineThreads.join(writerThread);
+
+		checkWriteFailure();
+	}
+
+	private void checkWriteFailure() throws IOException{
+		if(writeFailure != null){
+			throw writeFailure;
+		}
+	}
+
+	/**
+	 * Body of the writer thread, runs until finished and every result is written
+	 */
+	private void writeResults(){
+		CalculatorResult calcResult = new CalculatorResult();
+		int emptyPolls = 0;
+
+		try {
+			while(true){
+				// Read before polling, once finished an empty poll means nothing more will come
+				boolean finished = resultRing.isFinished();
+				int targetIndex = resultRing.poll(calcResult);
+
+				if(targetIndex >= 0){
+					pricingTargets[targetIndex].writeResult(calcResult);
+					emptyPolls = 0;
+				} else if(finished){
+					return;
+				} else {
+					EngineThreads.idle(++emptyPolls);
+				}
+			}
+		} catch (IOException e) {
+			writeFailure = e;
+		}
+	}
+}
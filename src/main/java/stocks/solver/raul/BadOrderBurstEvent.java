@@ -0,0 +1,41 @@
+package stocks.solver.raul;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a burst of orders that could not be applied, from the first to the last of them, see
+ * {@link BadOrderBursts}
+ * @author Raul
+ *
+ */
+@Name("stocks.solver.raul.BadOrderBurst")
+@Label("Bad Order Burst")
+@Category("Book Order Solver")
+@Description("Many orders that could not be parsed or reduced orders not in the market within a second")
+@StackTrace(false)
+public class BadOrderBurstEvent extends jdk.jfr.Event {
+
+	@Label("Parsing Errors")
+	int parsingErrors;
+
+	@Label("Unknown Reduces")
+	@Description("Reduces of orders not in the market")
+	int unknownReduces;
+
+	@Label("Target")
+	@Description("Largest target of the book")
+	int target;
+
+	@Label("Bid Price Levels")
+	int bidPriceLevels;
+
+	@Label("Ask Price Levels")
+	int askPriceLevels;
+
+	@Label("Live Orders")
+	int liveOrders;
+}
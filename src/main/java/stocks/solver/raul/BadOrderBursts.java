@@ -0,0 +1,92 @@
+package stocks.solver.raul;
+
+/**
+ * Spots bursts of orders that cannot be applied, orders that fail to parse and reduces of orders not in the market,
+ * and records each burst as a {@link BadOrderBurstEvent}.  Bad orders are counted in windows of a second from the
+ * first bad order of the window, and a window with at least BURST_SIZE of them is a burst.  Only bad orders are
+ * looked at, so the good ones cost nothing.
+ * @author Raul
+ *
+ */
+public class BadOrderBursts {
+
+	static final int BURST_SIZE = 10;
+
+	private static final long WINDOW = 1000000000L;
+
+	private final MasterBook masterBook;
+
+	// Start of the current window, counts are 0 when there is none
+	private long windowStart;
+	private int parsingErrors = 0;
+	private int unknownReduces = 0;
+	// Event for the current window, null if no recording wants it
+	private BadOrderBurstEvent event;
+
+	/**
+	 * Constructor for BadOrderBursts
+	 * @param masterBook Book the orders are for
+	 */
+	public BadOrderBursts(MasterBook masterBook){
+		this.masterBook = masterBook;
+	}
+
+	/**
+	 * Counts an order that could not be parsed
+	 */
+	public void parsingError(){
+		startWindow();
+		parsingErrors++;
+		endAtLastBadOrder();
+	}
+
+	/**
+	 * Counts a reduce of an order not in the market
+	 */
+	public void unknownReduce(){
+		startWindow();
+		unknownReduces++;
+		endAtLastBadOrder();
+	}
+
+	/**
+	 * Closes the current window, recording it if it is a burst
+	 */
+	public void finish(){
+		if(event != null && parsingErrors + unknownReduces >= BURST_SIZE){
+			FlightEvents.commitBadOrderBurst(event, masterBook, parsingErrors, unknownReduces);
+		}
+
+		event = null;
+		parsingErrors = 0;
+		unknownReduces = 0;
+	}
+
+	/**
+	 * Starts a window with this bad order, closing the current window if it is over
+	 */
+	private void startWindow(){
+		long now = System.nanoTime();
+		if(parsingErrors + unknownReduces > 0 && now - windowStart < WINDOW){
+			return;
+		}
+
+		finish();
+		windowStart = now;
+		event = FlightEvents.beginBadOrderBurst();
+	}
+
+	private void endAtLastBadOrder(){
+		if(event != null){
+			event.end();
+		}
+	}
+
+	int getParsingErrors() {
+		return parsingErrors;
+	}
+
+	int getUnknownReduces() {
+		return unknownReduces;
+	}
+}
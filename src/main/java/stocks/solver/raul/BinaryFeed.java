@@ -0,0 +1,53 @@
+package stocks.solver.raul;
+
+/**
+ * Layout of the binary order feed, a compact fixed width alternative to the text input that needs no parsing.  A
+ * feed starts with an 8 byte header, the int MAGIC followed by the int VERSION, then holds one record per order, all
+ * values big endian:
+ * <pre>
+ *  0  long timestamp
+ *  8  byte action, ADD, REDUCE or INTERN
+ *  9  long order id key
+ * 17  byte side, B or S for adds and 0 for reduces
+ * 18  long price in ticks, 0 for reduces
+ * 26  int size
+ * </pre>
+ * Order ids of up to 8 ASCII characters are packed into the key as by {@link OrderIndex#key(String)}.  Any other id
+ * is given a number with the top bit set, which is used as its key, by an INTERN record placed before the first
+ * order using it.  An INTERN record has the number as its key and the length of the id in bytes as its size, and is
+ * followed by the id in UTF-8.  A number may be given again and then stands for the new id from there on: writers
+ * free the number of an id once no order with it is left in the market and give it to the next id interned, so a
+ * reader never holds more ids than there are live orders with them, and a journal starts interning over at a mark.
+ * <p>
+ * An action of 0, END, marks the end of a feed written into a file allocated ahead of its records, as
+ * {@link OrderJournal} does.  Anything after it is ignored, as is a trailing part of a record that is all zeros.
+ * @author Raul
+ *
+ */
+public final class BinaryFeed {
+
+	// "BOOK" in ASCII
+	static final int MAGIC = 0x424F4F4B;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 8;
+
+	static final int RECORD_SIZE = 30;
+
+	static final byte ADD = 'A';
+	static final byte REDUCE = 'R';
+	static final byte INTERN = 'I';
+	static final byte END = 0;
+
+	static final byte BID = 'B';
+	static final byte ASK = 'S';
+	static final byte NO_SIDE = 0;
+
+	// Top bit of the key of an interned order id
+	static final long INTERNED = Long.MIN_VALUE;
+
+	// Longest order id an INTERN record may carry, anything longer is taken to be a corrupt feed
+	static final int MAX_INTERNED_LENGTH = 64 * 1024;
+
+	private BinaryFeed(){
+	}
+}
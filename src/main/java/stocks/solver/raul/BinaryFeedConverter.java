@@ -0,0 +1,67 @@
+package stocks.solver.raul;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Converts input in the text format to the {@link BinaryFeed} format, so archived days can be replayed without
+ * parsing.  Bad lines are logged and left out, the same way the solver skips them.
+ * @author Raul
+ *
+ */
+public class BinaryFeedConverter {
+
+	private static final Logger log = Logger.getLogger(BinaryFeedConverter.class.getName());
+
+	static final String USAGE = "usage: text-input-file binary-output-file";
+
+	/**
+	 * @param args Text input file followed by the binary file to write
+	 * @throws IOException Thrown if either file cannot be read or written
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length != 2){
+			System.out.println(USAGE);
+			return;
+		}
+
+		int orders = convert(new MappedFileLineReader(Paths.get(args[0])), new BinaryOrderEncoder(FileChannel.open(
+				Paths.get(args[1]), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)));
+		log.log(Level.INFO, "Converted " + orders + " orders");
+	}
+
+	/**
+	 * Converts every line of input, closing both the input and the encoder
+	 * @param lineSource Text input
+	 * @param binaryOrderEncoder Where to write the orders
+	 * @return Number of orders written
+	 * @throws IOException Thrown if reading or writing fails
+	 */
+	static int convert(LineSource lineSource, BinaryOrderEncoder binaryOrderEncoder) throws IOException{
+		OrderDecoder orderDecoder = new OrderDecoder();
+		Order reusableOrder = new Order();
+		int orders = 0;
+
+		try {
+			while(lineSource.nextLine() && lineSource.getLineLength() != 0){
+				try {
+					binaryOrderEncoder.write(orderDecoder.decode(lineSource.getBuffer(), lineSource.getLineStart(), lineSource.getLineEnd(), reusableOrder));
+					orders++;
+				} catch (ParsingException e) {
+					log.log(Level.SEVERE, "Bad market order, skipping it", e);
+				} catch(NumberFormatException nfe){
+					log.log(Level.SEVERE, "Bad timestamp in input, skipping it", nfe);
+				}
+			}
+		} finally {
+			lineSource.close();
+			binaryOrderEncoder.close();
+		}
+
+		return orders;
+	}
+}
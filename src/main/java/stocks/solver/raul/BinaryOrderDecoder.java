@@ -0,0 +1,195 @@
+package stocks.solver.raul;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads orders from a channel in the {@link BinaryFeed} format.  Records are decoded straight from a reusable
+ * buffer into a reusable Order, so replaying a feed needs no parsing and allocates nothing but interned ids.
+ * @author Raul
+ *
+ */
+public class BinaryOrderDecoder implements Closeable {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final ReadableByteChannel channel;
+	private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+	// Interned order ids, indexed by their number, no more than the writer had in use at once
+	private final List<String> internedIds = new ArrayList<String>();
+
+	private boolean endOfInput = false;
+
+	/**
+	 * Constructor for BinaryOrderDecoder, reads and checks the feed header
+	 * @param channel Channel to read from, closed along with the decoder
+	 * @throws IOException Thrown if the channel cannot be read or is not a binary feed
+	 */
+	public BinaryOrderDecoder(ReadableByteChannel channel) throws IOException{
+		this(channel, true);
+	}
+
+	/**
+	 * Constructor for BinaryOrderDecoder
+	 * @param channel Channel to read from, closed along with the decoder
+	 * @param readHeader False if the channel is already past the header, as when reading from part way through
+	 * @throws IOException Thrown if the channel cannot be read or is not a binary feed
+	 */
+	BinaryOrderDecoder(ReadableByteChannel channel, boolean readHeader) throws IOException{
+		this.channel = channel;
+		buffer.flip();
+
+		if(!readHeader){
+			return;
+		}
+
+		if(!fill(BinaryFeed.HEADER_SIZE) || buffer.getInt() != BinaryFeed.MAGIC){
+			throw new IOException("Not a binary order feed");
+		}
+
+		int version = buffer.getInt();
+		if(version != BinaryFeed.VERSION){
+			throw new IOException("Unsupported binary order feed version: " + version);
+		}
+	}
+
+	/**
+	 * Decodes the next order.  A bad record is skipped over by the exception, so decoding can carry on with the
+	 * next call.
+	 * @param order Order to decode into, its previous contents are overwritten
+	 * @return false at the end of the feed
+	 * @throws ParsingException Thrown on a record with a bad action or side
+	 * @throws IOException Thrown if reading fails or the feed ends part way through a record
+	 */
+	public boolean next(Order order) throws ParsingException, IOException{
+		while(true){
+			if(!fill(BinaryFeed.RECORD_SIZE)){
+				if(buffer.hasRemaining() && !isZeros()){
+					throw new EOFException("Binary order feed ends part way through a record");
+				}
+				return false;
+			}
+
+			long timestamp = buffer.getLong();
+			byte action = buffer.get();
+			long key = buffer.getLong();
+			byte side = buffer.get();
+			long price = buffer.getLong();
+			int size = buffer.getInt();
+
+			if(action == BinaryFeed.END){
+				// Rest of a file allocated ahead of its records, see OrderJournal
+				endOfInput = true;
+				buffer.position(buffer.limit());
+				return false;
+			}
+
+			if(action == BinaryFeed.INTERN){
+				readInternedId(key, size);
+				continue;
+			}
+
+			order.setTimestamp(timestamp);
+			order.setSize(size);
+
+			if(key < 0){
+				int number = (int) (key & ~BinaryFeed.INTERNED);
+				if(number >= internedIds.size()){
+					throw new ParsingException("Binary order record with an unknown interned id: " + number);
+				}
+				order.setOrderId(internedIds.get(number));
+			} else {
+				order.setOrderKey(key);
+			}
+
+			if(action == BinaryFeed.ADD){
+				if(side != BinaryFeed.BID && side != BinaryFeed.ASK){
+					throw new ParsingException("Binary order record with a bad side: " + side);
+				}
+				order.setOrderAction(OrderAction.ADD);
+				order.setSide(side == BinaryFeed.BID ? OrderSide.B : OrderSide.S);
+				order.setPrice(price);
+			} else if(action == BinaryFeed.REDUCE){
+				order.setOrderAction(OrderAction.REDUCE);
+				order.setSide(null);
+				order.setPrice(0);
+			} else {
+				throw new ParsingException("Binary order record with a bad action: " + action);
+			}
+
+			return true;
+		}
+	}
+
+	private void readInternedId(long key, int length) throws IOException{
+		int number = (int) (key & ~BinaryFeed.INTERNED);
+		// A number given again replaces its id, freed by the writer or after an OrderJournal mark
+		if(key >= 0 || number > internedIds.size() || length < 0 || length > BinaryFeed.MAX_INTERNED_LENGTH){
+			throw new IOException("Corrupt binary order feed, bad interned id record");
+		}
+
+		if(buffer.capacity() < length){
+			ByteBuffer larger = ByteBuffer.allocateDirect(length);
+			larger.put(buffer);
+			larger.flip();
+			buffer = larger;
+		}
+		if(!fill(length)){
+			throw new EOFException("Binary order feed ends part way through an interned id");
+		}
+
+		byte[] idBytes = new byte[length];
+		buffer.get(idBytes);
+		if(number == internedIds.size()){
+			internedIds.add(new String(idBytes, UTF_8));
+		} else {
+			internedIds.set(number, new String(idBytes, UTF_8));
+		}
+	}
+
+	/**
+	 * @return True if the rest of the buffer is zeros, the end of a file allocated ahead of its records
+	 */
+	private boolean isZeros(){
+		for(int i = buffer.position(); i < buffer.limit(); i++){
+			if(buffer.get(i) != 0){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reads until at least the given number of bytes are buffered
+	 * @return false if the input ended first
+	 */
+	private boolean fill(int bytes) throws IOException{
+		while(buffer.remaining() < bytes){
+			if(endOfInput){
+				return false;
+			}
+
+			buffer.compact();
+			if(channel.read(buffer) < 0){
+				endOfInput = true;
+			}
+			buffer.flip();
+		}
+
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException{
+		channel.close();
+	}
+}
@@ -0,0 +1,133 @@
+package stocks.solver.raul;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Writes orders to a channel in the {@link BinaryFeed} format
+ * @author Raul
+ *
+ */
+public class BinaryOrderEncoder implements Closeable {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final WritableByteChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+	// Key given to each interned order id, see BinaryFeed
+	private final InternedIds internedIds = new InternedIds();
+
+	/**
+	 * Constructor for BinaryOrderEncoder, writes the feed header
+	 * @param channel Channel to write to, closed along with the encoder
+	 * @throws IOException Thrown if the header cannot be written
+	 */
+	public BinaryOrderEncoder(WritableByteChannel channel) throws IOException{
+		this.channel = channel;
+		buffer.putInt(BinaryFeed.MAGIC).putInt(BinaryFeed.VERSION);
+	}
+
+	/**
+	 * Writes an order, preceded by an INTERN record if it has an id that does not pack into a key and has no number,
+	 * either never seen or seen only on orders that are gone
+	 * @param order Order to write
+	 * @throws ParsingException Thrown for an add without a bid or ask side, nothing is written
+	 * @throws IOException Thrown if writing fails
+	 */
+	public void write(Order order) throws ParsingException, IOException{
+		byte side = BinaryFeed.NO_SIDE;
+		if(order.getOrderAction().equals(OrderAction.ADD)){
+			if(order.getSide().equals(OrderSide.B)){
+				side = BinaryFeed.BID;
+			} else if(order.getSide().equals(OrderSide.S)){
+				side = BinaryFeed.ASK;
+			} else {
+				throw new ParsingException("Bad market order: " + order.toString());
+			}
+		}
+
+		long key = order.getOrderKey();
+
+		// Packed keys are positive, everything else is hashed by OrderIndex and needs interning
+		if(key < 0){
+			key = intern(order.getOrderId());
+		}
+
+		ensureRemaining(BinaryFeed.RECORD_SIZE);
+		buffer.putLong(order.getTimestamp())
+			  .put(order.getOrderAction().equals(OrderAction.ADD) ? BinaryFeed.ADD : BinaryFeed.REDUCE)
+			  .putLong(key)
+			  .put(side)
+			  .putLong(order.getOrderAction().equals(OrderAction.ADD) ? order.getPrice() : 0)
+			  .putInt(order.getSize());
+
+		if(key < 0){
+			internedIds.written(order);
+		}
+	}
+
+	private long intern(String orderId) throws IOException{
+		long key = internedIds.key(orderId);
+		if(key != InternedIds.NONE){
+			return key;
+		}
+
+		key = internedIds.intern(orderId);
+
+		byte[] idBytes = orderId.getBytes(UTF_8);
+		ensureRemaining(BinaryFeed.RECORD_SIZE);
+		buffer.putLong(0)
+			  .put(BinaryFeed.INTERN)
+			  .putLong(key)
+			  .put(BinaryFeed.NO_SIDE)
+			  .putLong(0)
+			  .putInt(idBytes.length);
+
+		// Ids longer than the buffer are written in pieces
+		for(int offset = 0; offset < idBytes.length; ){
+			ensureRemaining(1);
+			int length = Math.min(buffer.remaining(), idBytes.length - offset);
+			buffer.put(idBytes, offset, length);
+			offset += length;
+		}
+
+		return key;
+	}
+
+	private void ensureRemaining(int bytes) throws IOException{
+		if(buffer.remaining() < bytes){
+			drain();
+		}
+	}
+
+	private void drain() throws IOException{
+		buffer.flip();
+		while(buffer.hasRemaining()){
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Writes out anything still buffered
+	 * @throws IOException Thrown if writing fails
+	 */
+	public void flush() throws IOException{
+		drain();
+	}
+
+	@Override
+	public void close() throws IOException{
+		try {
+			drain();
+		} finally {
+			channel.close();
+		}
+	}
+}
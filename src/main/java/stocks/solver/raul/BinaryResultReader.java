@@ -0,0 +1,108 @@
+package stocks.solver.raul;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Renders {@link BinaryResults} output back into the text output format, for example to diff it against expected
+ * text output
+ * @author Raul
+ *
+ */
+public class BinaryResultReader {
+
+	static final String USAGE = "usage: binary-results-file";
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Writes the text of a binary results file to standard out
+	 * @param args Binary results file
+	 * @throws IOException Thrown if the file cannot be read or is not binary results
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length != 1){
+			System.out.println(USAGE);
+			return;
+		}
+
+		OutputSink outputSink = OutputSink.toStandardOut(FlushPolicy.DEFAULT);
+		try {
+			render(FileChannel.open(Paths.get(args[0]), StandardOpenOption.READ), outputSink);
+		} finally {
+			outputSink.close();
+		}
+	}
+
+	/**
+	 * Writes every record as a line of text, closing the channel
+	 * @param channel Binary results to read
+	 * @param outputSink Text sink to write to
+	 * @return Number of records read
+	 * @throws IOException Thrown if reading or writing fails, or the input is not binary results
+	 */
+	static int render(ReadableByteChannel channel, OutputSink outputSink) throws IOException{
+		ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		CalculatorResult calcResult = new CalculatorResult();
+		boolean endOfInput = false;
+		boolean headerRead = false;
+		int records = 0;
+
+		try {
+			while(true){
+				if(!endOfInput && buffer.remaining() > 0 && channel.read(buffer) < 0){
+					endOfInput = true;
+				}
+				buffer.flip();
+
+				if(!headerRead){
+					if(buffer.remaining() < BinaryResults.HEADER_SIZE){
+						if(endOfInput){
+							throw new IOException("Not binary results");
+						}
+						buffer.compact();
+						continue;
+					}
+					if(buffer.getInt() != BinaryResults.MAGIC){
+						throw new IOException("Not binary results");
+					}
+					int version = buffer.getInt();
+					if(version != BinaryResults.VERSION){
+						throw new IOException("Unsupported binary results version: " + version);
+					}
+					headerRead = true;
+				}
+
+				while(buffer.remaining() >= BinaryResults.RECORD_SIZE){
+					long timestamp = buffer.getLong();
+					OrderSide side = buffer.get() == 'S' ? OrderSide.S : OrderSide.B;
+					byte flags = buffer.get();
+					long amount = buffer.getLong();
+
+					if((flags & BinaryResults.NOT_AVAILABLE) != 0){
+						calcResult.setNotAvailable(timestamp, side);
+					} else {
+						calcResult.setAmount(timestamp, side, amount);
+					}
+					calcResult.writeTo(outputSink);
+					records++;
+				}
+
+				if(endOfInput){
+					if(buffer.hasRemaining()){
+						throw new EOFException("Binary results end part way through a record");
+					}
+					return records;
+				}
+				buffer.compact();
+			}
+		} finally {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package stocks.solver.raul;
+
+/**
+ * Layout of the binary output, fixed width result records for consumers that would otherwise parse the text output
+ * back into numbers.  Output starts with an 8 byte header, the int MAGIC followed by the int VERSION, then holds one
+ * record per result written, all values big endian:
+ * <pre>
+ *  0  long timestamp
+ *  8  byte side, S for a profit or B for a cost
+ *  9  byte flags, NOT_AVAILABLE set for a result of NA
+ * 10  long amount in ticks, 0 for NA
+ * </pre>
+ * Records are only written where the text output would have a line, see {@link BinaryResultReader} to get that
+ * text back.
+ * @author Raul
+ *
+ */
+public final class BinaryResults {
+
+	// "BKRS" in ASCII
+	static final int MAGIC = 0x424B5253;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 8;
+
+	static final int RECORD_SIZE = 18;
+
+	static final byte NOT_AVAILABLE = 1;
+
+	private BinaryResults(){
+	}
+}
@@ -0,0 +1,164 @@
+package stocks.solver.raul;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Periodic snapshot of a {@link MasterBook} to a local file, so a pricer that dies part way through the day can
+ * restart from the latest snapshot instead of replaying the whole day.  A snapshot holds the offset in the input
+ * of the next line to read, the length of every output at that point, the offset to carry on an
+ * {@link OrderJournal} from, the state of every target, including the last results written, and the live orders.  Price levels and totals are rebuilt from the live orders.
+ * <p>
+ * Snapshots are written to a temporary file that then replaces the previous snapshot, so there is always a whole
+ * snapshot to restart from.
+ * @author Raul
+ *
+ */
+public class BookCheckpoint {
+
+	// "BKCP" in ASCII
+	static final int MAGIC = 0x424B4350;
+	static final int VERSION = 2;
+
+	static final int DEFAULT_INTERVAL = 100000;
+
+	private final Path file;
+	private final Path tempFile;
+	// Lines of input between snapshots
+	private final int interval;
+
+	// Journal marked with each snapshot, null if orders are not journaled
+	private OrderJournal journal;
+
+	private int linesSinceSnapshot = 0;
+
+	// Where to resume, as of the last restore
+	private long inputOffset = 0;
+	private long[] outputOffsets = new long[0];
+	private long journalOffset = 0;
+
+	/**
+	 * Constructor for BookCheckpoint
+	 * @param file Snapshot file
+	 * @param interval Number of lines of input between snapshots
+	 */
+	public BookCheckpoint(Path file, int interval){
+		this.file = file;
+		this.tempFile = Paths.get(file.toString() + ".tmp");
+		this.interval = interval;
+	}
+
+	/**
+	 * @return True if there is a snapshot to restore
+	 */
+	public boolean exists(){
+		return Files.exists(file);
+	}
+
+	/**
+	 * Counts a line of input as processed, taking a snapshot every interval lines
+	 * @param masterBook Book the line was applied to
+	 * @param lineReader Input, positioned on the line just processed
+	 * @param outputs Outputs of the book's targets, in the same order
+	 * @throws IOException Thrown if the snapshot cannot be written
+	 */
+	public void lineProcessed(MasterBook masterBook, MappedFileLineReader lineReader, OutputSink[] outputs) throws IOException{
+		if(++linesSinceSnapshot >= interval){
+			write(masterBook, lineReader.getOffset(), outputs);
+			linesSinceSnapshot = 0;
+		}
+	}
+
+	/**
+	 * Takes a snapshot, writing out everything the outputs have buffered first so their lengths match the book, and
+	 * marking the journal if there is one
+	 * @param masterBook Book to snapshot
+	 * @param nextInputOffset Offset in the input of the next line to read
+	 * @param outputs Outputs of the book's targets, in the same order
+	 * @throws IOException Thrown if the snapshot cannot be written
+	 */
+	public void write(MasterBook masterBook, long nextInputOffset, OutputSink[] outputs) throws IOException{
+		for(OutputSink output : outputs){
+			output.flush();
+		}
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(nextInputOffset);
+			out.writeInt(outputs.length);
+			for(OutputSink output : outputs){
+				out.writeLong(output.getBytesWritten());
+			}
+			out.writeLong(journal != null ? journal.mark() : 0);
+			masterBook.writeState(out);
+		} finally {
+			out.close();
+		}
+
+		Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Loads the snapshot into a new, empty book with the same targets, after which the offsets to resume from are
+	 * available
+	 * @param masterBook Book to load into
+	 * @throws IOException Thrown if the snapshot cannot be read or is for other targets
+	 */
+	public void restore(MasterBook masterBook) throws IOException{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+		try {
+			if(in.readInt() != MAGIC){
+				throw new IOException("Not a book checkpoint: " + file);
+			}
+			int version = in.readInt();
+			if(version != VERSION){
+				throw new IOException("Unsupported book checkpoint version: " + version);
+			}
+
+			inputOffset = in.readLong();
+			outputOffsets = new long[in.readInt()];
+			for(int i = 0; i < outputOffsets.length; i++){
+				outputOffsets[i] = in.readLong();
+			}
+			journalOffset = in.readLong();
+			masterBook.readState(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * @return Offset in the input of the next line to read, as of the last restore
+	 */
+	long getInputOffset() {
+		return inputOffset;
+	}
+
+	/**
+	 * @return Offset to carry on the journal from, as of the last restore, 0 if the snapshot was taken without one
+	 */
+	long getJournalOffset() {
+		return journalOffset;
+	}
+
+	/**
+	 * @param index Position of the output's target in the book's targets
+	 * @return Length of the output, as of the last restore
+	 */
+	long getOutputOffset(int index) {
+		return outputOffsets[index];
+	}
+
+	void setJournal(OrderJournal journal) {
+		this.journal = journal;
+	}
+}
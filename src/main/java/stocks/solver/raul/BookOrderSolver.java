@@ -1,15 +1,15 @@
 package stocks.solver.raul;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.text.DecimalFormat;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -25,106 +25,241 @@ public class BookOrderSolver {
 	
 	/**
 	 * Main function to take in a target size
-	 * @param args Contains target size variable
+	 * @param args Contains target size variable, or a comma separated list of them, followed by any options
 	 * @throws IOException
 	 */
 	public static void main(String[] args) throws IOException {
 		Charset charset;
-		BufferedWriter bufferedWriter = null;
 		
 		if (args.length == 0) {
-			System.out.println("usage: input target-size");
+			System.out.println(SolverOptions.USAGE);
 			return;
 		}
 		
-		int target;
+		SolverOptions options;
 		
 		try{
-			target = Integer.valueOf(args[0]);	
+			options = SolverOptions.parse(args);
 		} catch(NumberFormatException nfe){
 			log.log(Level.SEVERE, "Bad target input, cannot continue", nfe);
 			return;
+		} catch(IllegalArgumentException iae){
+			System.out.println(iae.getMessage());
+			System.out.println(SolverOptions.USAGE);
+			return;
 		}
 		
-		MasterBook masterBook = new MasterBook(target);
+		int[] targets = options.getTargets();
+		OutputSink[] outputs = new OutputSink[targets.length];
+		LineSource lineReader = null;
+		BinaryOrderDecoder binaryDecoder = null;
+		PricingEngine pricingEngine = null;
+		OrderJournal journal = null;
+		StageMetrics stageMetrics = null;
+		EngineStats engineStats = null;
+		BadOrderBursts badOrderBursts = null;
+		// Standard in, telling the engine when it has nothing to read
+		IdleInputStream standardIn = new IdleInputStream(System.in);
 		
 		try{			
-			String previousBidsResultNoTimestamp = "";
-			String previousAsksResultNoTimestamp = "";
-			boolean canStartBidCalc = false;
-			boolean canStartAskCalc = false;
+			// A restart loads the latest snapshot first, it says where the input and outputs carry on from
+			BookCheckpoint checkpoint = null;
+			MasterBook restoredBook = null;
+			if(options.getCheckpointFile() != null){
+				checkpoint = new BookCheckpoint(options.getCheckpointFile(), options.getCheckpointInterval());
+				if(options.isRestore() && checkpoint.exists()){
+					restoredBook = new MasterBook(targets, options.getPriceLevelsType(), options.isIncremental());
+					checkpoint.restore(restoredBook);
+				}
+			}
 			
-			BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(System.in));
-			String input;
-			Long timestamp;
+			// A restart carries on the journal from the snapshot, anything journaled after it is replayed again
+			if(options.getJournalFile() != null && restoredBook != null){
+				if(checkpoint.getJournalOffset() == 0){
+					throw new IOException("Checkpoint was taken without a journal, cannot carry on journaling from it");
+				}
+				journal = OrderJournal.resume(options.getJournalFile(), options.getJournalForceInterval(), checkpoint.getJournalOffset());
+			} else if(options.getJournalFile() != null){
+				journal = new OrderJournal(options.getJournalFile(), options.getJournalForceInterval());
+			}
+			if(checkpoint != null){
+				checkpoint.setJournal(journal);
+			}
 			
-			Calculator calculator = new Calculator();
+			// One output per target when writing to files, otherwise the single target goes to standard out
+			for(int i = 0; i < targets.length; i++){
+				if(options.getOutputPrefix() != null && restoredBook != null){
+					outputs[i] = OutputSink.resumeFile(Paths.get(options.getOutputPrefix() + "." + targets[i]), options.getFlushPolicy(), options.isBinaryOutput(), checkpoint.getOutputOffset(i));
+				} else if(options.getOutputPrefix() != null){
+					outputs[i] = OutputSink.toFile(Paths.get(options.getOutputPrefix() + "." + targets[i]), options.getFlushPolicy(), options.isBinaryOutput());
+				} else if(options.isRawStandardOut()){
+					outputs[i] = OutputSink.toStandardOutDescriptor(options.getFlushPolicy(), options.isBinaryOutput());
+				} else {
+					outputs[i] = OutputSink.toStandardOut(options.getFlushPolicy(), options.isBinaryOutput());
+				}
+			}
+			if(options.isBinary()){
+				if(options.getInputFile() != null){
+					binaryDecoder = new BinaryOrderDecoder(FileChannel.open(options.getInputFile(), StandardOpenOption.READ));
+				} else {
+					binaryDecoder = new BinaryOrderDecoder(Channels.newChannel(standardIn));
+				}
+			} else if(options.getInputFile() != null){
+				lineReader = MappedFileLineReader.resumeAt(options.getInputFile(), restoredBook != null ? checkpoint.getInputOffset() : 0);
+			} else {
+				lineReader = new ByteLineReader(standardIn);
+			}
+			// Input with a symbol column needs the symbols interned as it is decoded
+			OrderDecoder orderDecoder = options.isSymbols() ? new OrderDecoder(new SymbolTable()) : new OrderDecoder();
 			
-			while( (input=bufferedReader.readLine()) != null && input.length() != 0){
-				String[] parts = input.split("\\s+");
-				
-				Order order;
-				try {
-					timestamp = Long.valueOf(parts[0]);
-					order = new Order(parts);
-
-					// Need to set the side explicitly for reduce orders
-					if(order.getOrderAction().equals(OrderAction.REDUCE)){
-						if(masterBook.getLiveMarketBids().containsKey(order.getOrderId())){
-							order.setSide(masterBook.getLiveMarketBids().get(order.getOrderId()).getSide());
-						} else if(masterBook.getLiveMarketAsks().containsKey(order.getOrderId())){
-							order.setSide(masterBook.getLiveMarketAsks().get(order.getOrderId()).getSide());
-						} else{
-							throw new ReduceMarketLookupException("Cannot find order to reduce: " + order.toString());
-						}
-					}
-					
-					UpdateBookResult updateBookResult = masterBook.updateBookStructures(order);
-					
-					if(masterBook.getTotalBidSize() >= target && canStartBidCalc == false){
-						canStartBidCalc = true;
+			if(options.isSymbols() && options.isVirtualThreads() && !VirtualThreadEngine.isVirtual()){
+				log.log(Level.WARNING, "Virtual threads are not available, sharding symbols across " + options.getShards() + " threads instead");
+			}
+			
+			if(options.isSymbols() && options.isVirtualThreads() && VirtualThreadEngine.isVirtual()){
+				// Every symbol has its own book and thread, each writes its own results
+				new VirtualThreadEngine(targets, options.getPriceLevelsType(), options.isIncremental(), outputs).run(lineReader, orderDecoder);
+			} else if(options.isSymbols()){
+				// Every symbol has its own book, results are written by the engine's writer thread
+				new ShardedEngine(targets, options.getPriceLevelsType(), options.isIncremental(), options.getShards(), outputs).run(lineReader, orderDecoder);
+			} else if(options.isSplit()){
+				// Each side has its own book, results are written by the engine's merge stage
+				new SideSplitEngine(targets, options.getPriceLevelsType(), options.isIncremental(), outputs).run(lineReader, orderDecoder);
+			} else {
+				MasterBook masterBook = restoredBook != null ? restoredBook : new MasterBook(targets, options.getPriceLevelsType(), options.isIncremental());
+				// The pipeline's last stage is writing results asynchronously
+				pricingEngine = new PricingEngine(masterBook, outputs, options.isAsync() || options.isPipeline());
+				if(options.isMetrics()){
+					stageMetrics = new StageMetrics(options.getMetricsInterval());
+					pricingEngine.setStageMetrics(stageMetrics);
+				}
+				if(options.isCounters() || options.isJmx()){
+					engineStats = new EngineStats(masterBook, EngineStats.DEFAULT_PUBLISH_INTERVAL);
+					if(options.isJmx()){
+						engineStats.register();
 					}
-					
-					if(masterBook.getTotalAskSize() >= target && canStartAskCalc == false){
-						canStartAskCalc = true;
+					if(options.isJmx() && !options.isPipeline()){
+						// Orders read but not yet published are published while waiting on a quiet feed
+						final EngineStats idleStats = engineStats;
+						standardIn.setIdleAction(new Runnable() {
+							@Override
+							public void run() {
+								idleStats.inputIdle();
+							}
+						});
 					}
+				}
+				badOrderBursts = new BadOrderBursts(masterBook);
+				
+				if(options.isBinary()){
+					Order order = new Order();
+					boolean more = true;
 					
-					if(canStartBidCalc && order.getSide().equals(OrderSide.B) && updateBookResult.recalculateProfit()){
-							CalculatorResult calcResult = calculator.calculate(masterBook, target, order);
-							String stringToWrite = calcResult.getCompleteOutputResult();
-							// Only output unique calculations, IE, don't output the same result twice
-							if(!previousBidsResultNoTimestamp.equals(calcResult.getOutputResultNoTimestamp())){
-								System.out.print(stringToWrite);
-								System.out.print("\n");
+					while(more){
+						try {
+							long parseStart = stageMetrics != null ? System.nanoTime() : 0;
+							more = binaryDecoder.next(order);
+							if(more){
+								if(stageMetrics != null){
+									stageMetrics.record(StageMetrics.Stage.PARSE, System.nanoTime() - parseStart);
+								}
+								pricingEngine.process(order);
+								if(journal != null){
+									journal.append(order);
+								}
 							}
-							
-				   		  previousBidsResultNoTimestamp = calcResult.getOutputResultNoTimestamp();
+						} catch (ParsingException e) {
+							log.log(Level.SEVERE, "Bad market order, skipping it", e);
+							badOrderBursts.parsingError();
+						} catch (ReduceMarketLookupException e) {
+							log.log(Level.SEVERE, "Bad market reduction order, skipping it", e);
+							badOrderBursts.unknownReduce();
+						}
+						
+						if(more && stageMetrics != null){
+							stageMetrics.orderDone();
+						}
+						if(more && engineStats != null){
+							engineStats.orderDone();
+						}
 					}
-					
-					if(canStartAskCalc && order.getSide().equals(OrderSide.S) && updateBookResult.recalculateCost()){
-							CalculatorResult calcResult = calculator.calculate(masterBook, target, order);
-							String stringToWrite = calcResult.getCompleteOutputResult();
-							// Only output unique calculations, IE, don't output the same result twice
-					   		if(!previousAsksResultNoTimestamp.equals(calcResult.getOutputResultNoTimestamp())){
-					   			System.out.print(stringToWrite);
-								System.out.print("\n");
-					   		}				   		
-				   		  previousAsksResultNoTimestamp = calcResult.getOutputResultNoTimestamp();
+				} else if(options.isPipeline()){
+					new OrderPipeline(OrderPipeline.DEFAULT_CAPACITY).run(lineReader, orderDecoder, pricingEngine);
+				} else {
+					// Nothing keeps hold of an order once it is processed, so one Order is decoded into for every line
+					Order reusableOrder = new Order();
+				
+					while(lineReader.nextLine() && lineReader.getLineLength() != 0){
+						Order order;
+						try {
+							long parseStart = stageMetrics != null ? System.nanoTime() : 0;
+							order = orderDecoder.decode(lineReader.getBuffer(), lineReader.getLineStart(), lineReader.getLineEnd(), reusableOrder);
+							if(stageMetrics != null){
+								stageMetrics.record(StageMetrics.Stage.PARSE, System.nanoTime() - parseStart);
+							}
+							pricingEngine.process(order);
+							if(journal != null){
+								// Only orders that were applied, reduces have their side by now
+								journal.append(order);
+							}
+						} catch (ParsingException e) {
+							log.log(Level.SEVERE, "Bad market order, skipping it", e);
+							badOrderBursts.parsingError();
+						} catch(NumberFormatException nfe){
+							log.log(Level.SEVERE, "Bad timestamp in input, skipping it", nfe);
+							badOrderBursts.parsingError();
+						} catch (ReduceMarketLookupException e) {
+							log.log(Level.SEVERE, "Bad market reduction order, skipping it", e);
+							badOrderBursts.unknownReduce();
+						}
+						// Will assume on bad market input, to just skip that order.  This would need to be agreed upon by the team.
+						
+						if(stageMetrics != null){
+							stageMetrics.orderDone();
+						}
+						if(engineStats != null){
+							engineStats.orderDone();
+						}
+						if(checkpoint != null){
+							// Checkpoints are only taken reading a file, see SolverOptions
+							checkpoint.lineProcessed(masterBook, (MappedFileLineReader) lineReader, outputs);
+						}
 					}
-				} catch (ParsingException e) {
-					log.log(Level.SEVERE, "Bad market order, skipping it", e);
-				} catch(NumberFormatException nfe){
-					log.log(Level.SEVERE, "Bad timestamp in input, skipping it", nfe);
-				} catch (ReduceMarketLookupException e) {
-					log.log(Level.SEVERE, "Bad market reduction order, skipping it", e);
 				}
-				// Will assume on bad market input, to just skip that order.  This would need to be agreed upon by the team.
 			}
 		} catch(IOException io){
 			io.printStackTrace();
 		} finally {
-			if(bufferedWriter != null){
-				bufferedWriter.flush();				
+			if(lineReader != null){
+				lineReader.close();
+			}
+			if(binaryDecoder != null){
+				binaryDecoder.close();
+			}
+			if(pricingEngine != null){
+				pricingEngine.finish();
+			}
+			if(journal != null){
+				journal.close();
+			}
+			if(stageMetrics != null){
+				stageMetrics.finish();
+			}
+			if(badOrderBursts != null){
+				badOrderBursts.finish();
+			}
+			if(engineStats != null){
+				engineStats.publish();
+				if(options.isCounters()){
+					log.log(Level.INFO, engineStats.report());
+				}
+				engineStats.unregister();
+			}
+			// End of input, whatever the flush policy anything still buffered is written out
+			for(OutputSink output : outputs){
+				if(output != null){
+					output.close();
+				}
 			}
 		}
 	}
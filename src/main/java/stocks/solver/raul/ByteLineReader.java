@@ -0,0 +1,153 @@
+package stocks.solver.raul;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads raw input bytes and splits them into lines without decoding them into Strings.  Lines are terminated
+ * the same way as {@link java.io.BufferedReader#readLine()}: by a line feed, a carriage return or a carriage
+ * return followed by a line feed.
+ * @author Raul
+ *
+ */
+public class ByteLineReader implements LineSource {
+
+	private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	private final InputStream inputStream;
+
+	private byte[] buffer;
+	private ByteBuffer byteBuffer;
+
+	// Valid bytes in the buffer are between position and limit
+	private int position = 0;
+	private int limit = 0;
+
+	private int lineStart = 0;
+	private int lineEnd = 0;
+
+	// Set when the last line ended on a carriage return, a line feed right after it belongs to the same terminator
+	private boolean skipLineFeed = false;
+	private boolean endOfInput = false;
+
+	/**
+	 * Constructor for ByteLineReader
+	 * @param inputStream Stream to read lines from
+	 */
+	public ByteLineReader(InputStream inputStream){
+		this(inputStream, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Constructor for ByteLineReader
+	 * @param inputStream Stream to read lines from
+	 * @param bufferSize Initial size of the read buffer, will grow if a single line does not fit
+	 */
+	public ByteLineReader(InputStream inputStream, int bufferSize){
+		this.inputStream = inputStream;
+		this.buffer = new byte[bufferSize];
+		this.byteBuffer = ByteBuffer.wrap(buffer);
+	}
+
+	@Override
+	public boolean nextLine() throws IOException{
+		int scan = position;
+
+		while(true){
+			while(scan < limit){
+				byte b = buffer[scan];
+
+				if(skipLineFeed){
+					skipLineFeed = false;
+					if(b == '\n'){
+						position++;
+						scan++;
+						continue;
+					}
+				}
+
+				if(b == '\n' || b == '\r'){
+					lineStart = position;
+					lineEnd = scan;
+					position = scan + 1;
+					skipLineFeed = (b == '\r');
+					return true;
+				}
+				scan++;
+			}
+
+			if(endOfInput){
+				// Last line of input may not have a terminator
+				if(position < limit){
+					lineStart = position;
+					lineEnd = limit;
+					position = limit;
+					return true;
+				}
+				return false;
+			}
+
+			scan = fill(scan);
+		}
+	}
+
+	/**
+	 * Moves the unconsumed bytes to the front of the buffer, growing it if needed, then reads more input
+	 * @param scan Current scan position
+	 * @return Scan position adjusted to the moved buffer contents
+	 * @throws IOException
+	 */
+	private int fill(int scan) throws IOException{
+		int pending = limit - position;
+
+		if(pending == buffer.length){
+			byte[] grownBuffer = new byte[buffer.length * 2];
+			System.arraycopy(buffer, position, grownBuffer, 0, pending);
+			buffer = grownBuffer;
+			byteBuffer = ByteBuffer.wrap(buffer);
+		} else if(position > 0){
+			System.arraycopy(buffer, position, buffer, 0, pending);
+		}
+
+		scan = scan - position;
+		position = 0;
+		limit = pending;
+
+		int read = inputStream.read(buffer, limit, buffer.length - limit);
+		if(read < 0){
+			endOfInput = true;
+		} else {
+			limit += read;
+		}
+
+		return scan;
+	}
+
+	@Override
+	public ByteBuffer getBuffer() {
+		return byteBuffer;
+	}
+
+	@Override
+	public int getLineStart() {
+		return lineStart;
+	}
+
+	@Override
+	public int getLineEnd() {
+		return lineEnd;
+	}
+
+	@Override
+	public int getLineLength() {
+		return lineEnd - lineStart;
+	}
+
+	/**
+	 * The stream belongs to the caller, closing the reader leaves it open
+	 */
+	@Override
+	public void close() {
+	}
+}
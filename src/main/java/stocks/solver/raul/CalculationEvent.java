@@ -0,0 +1,47 @@
+package stocks.solver.raul;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight recorder event for a walk of the price levels by {@link Calculator} that took longer than the threshold,
+ * see {@link FlightEvents}
+ * @author Raul
+ *
+ */
+@Name("stocks.solver.raul.Calculation")
+@Label("Slow Calculation")
+@Category("Book Order Solver")
+@Description("Walk of the price levels for a profit or cost calculation that took longer than the threshold")
+@Threshold("100 us")
+@StackTrace(false)
+public class CalculationEvent extends jdk.jfr.Event {
+
+	@Label("Order Timestamp")
+	long orderTimestamp;
+
+	@Label("Side")
+	@Description("Side of the book walked, B for a profit and S for a cost")
+	String side;
+
+	@Label("Target")
+	@Description("Largest target filled by the walk")
+	int target;
+
+	@Label("Targets")
+	@Description("Number of targets filled by the walk")
+	int targets;
+
+	@Label("Bid Price Levels")
+	int bidPriceLevels;
+
+	@Label("Ask Price Levels")
+	int askPriceLevels;
+
+	@Label("Live Orders")
+	int liveOrders;
+}
@@ -1,12 +1,5 @@
 package stocks.solver.raul;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.text.DecimalFormat;
-import java.text.NumberFormat;
-import java.util.Iterator;
-import java.util.Map;
-
 /**
  * Class that contains a calculation function to process the profit or loss for a {@link MasterBook} object and target.
  * @author Raul
@@ -14,115 +7,105 @@ import java.util.Map;
  */
 public class Calculator {
 	
+	private final PricingTarget[] singleTarget = new PricingTarget[1];
+	private final CalculatorResult[] singleResult = { new CalculatorResult() };
+	
+	// Targets and fills for the shared walk of the price levels, grown as needed
+	private int[] fillTargets = new int[0];
+	private FillResult[] fillResults = new FillResult[0];
+	
 	/**
 	 * Function to calculate profit or cost
 	 * @param masterBook MasterBook containing market structures on which to perform the calculation
-	 * @param target Target size for the calculation
+	 * @param pricingTarget Target for the calculation
 	 * @param order	Latest market order on which to operate
 	 * @return CalculatorResult containing the required output for caller
 	 */
-	public CalculatorResult calculate(MasterBook masterBook, int target, Order order){
-		
-		NumberFormat formatter = new DecimalFormat("#0.00");
-		CalculatorResult calculatorResult = new CalculatorResult();
-		Map<Double, PriceLevelShares> priceLevels = null;
-		
-		String profitOrCostString = "";
-		String resultNoTimestamp = "";
-		
-		double calculatedResultDouble = 0;
-		// The BigDecimal version of profitOrCost will be used for final formatting, using 
-		// the double version for calculations since operations on primitive double is much faster
-		// than on BigDecimal
-		BigDecimal calculatedResultBigDecimal = BigDecimal.ZERO;
-		
-		StringBuilder sb = new StringBuilder();		
+	public CalculatorResult calculate(MasterBook masterBook, PricingTarget pricingTarget, Order order){
+		singleTarget[0] = pricingTarget;
+		calculate(masterBook, singleTarget, 1, order, singleResult);
+		return(singleResult[0]);
+	}
+	
+	/**
+	 * Function to calculate profit or cost for several targets with a single walk of the price levels
+	 * @param masterBook MasterBook containing market structures on which to perform the calculation
+	 * @param pricingTargets Targets for the calculation, smallest first
+	 * @param count Number of targets to calculate
+	 * @param order	Latest market order on which to operate
+	 * @param calculatorResults CalculatorResult for each target, overwritten with the required output
+	 */
+	public void calculate(MasterBook masterBook, PricingTarget[] pricingTargets, int count, Order order, CalculatorResult[] calculatorResults){
 		
-		int remainingShares = target;				
-		boolean doneWithCalc = false;
+		PriceLevels priceLevels = null;
+		int totalSize = 0;
 		
-		if(order.getSide().equals(order.getSide().B)) {
+		if(order.getSide().equals(OrderSide.B)) {
 			priceLevels = masterBook.getBidPriceLevels();
-		} else if(order.getSide().equals(order.getSide().S)) {
-			priceLevels = masterBook.getAskPriceLevels();			
+			totalSize = masterBook.getTotalBidSize();
+		} else if(order.getSide().equals(OrderSide.S)) {
+			priceLevels = masterBook.getAskPriceLevels();
+			totalSize = masterBook.getTotalAskSize();
 		}
 		
-		// Not enough shares to calculate result, return NA
-		if(order.getSide().equals(order.getSide().B) && masterBook.getTotalBidSize() < target){
-			resultNoTimestamp = "S NA";
-			calculatorResult.setOutputResultNoTimestamp(resultNoTimestamp);
-			calculatorResult.setCompleteOutputResult(order.getTimestamp() + " " + resultNoTimestamp);
-			return(calculatorResult);
-		} else if(order.getSide().equals(order.getSide().S) && masterBook.getTotalAskSize() < target){
-			resultNoTimestamp = "B NA";
-			calculatorResult.setOutputResultNoTimestamp(resultNoTimestamp);
-			calculatorResult.setCompleteOutputResult(order.getTimestamp() + " " + resultNoTimestamp);
-			return(calculatorResult);
+		if(fillTargets.length < count){
+			growFills(count);
 		}
-
-		if(order.getSide().equals(order.getSide().B)){
-			masterBook.getBidPriceLevelsUsed().clear();					
-		} else if(order.getSide().equals(order.getSide().S)){
-			masterBook.getAskPriceLevelsUsed().clear();
+		
+		// Targets are smallest first, so the ones there are enough shares for come first
+		int fillCount = 0;
+		while(fillCount < count && pricingTargets[fillCount].getTarget() <= totalSize){
+			fillTargets[fillCount] = pricingTargets[fillCount].getTarget();
+			fillCount++;
 		}
 		
-		// Walk priceLevels until target shares filled
-		Iterator iterPriceLevels = priceLevels.entrySet().iterator();
-		while(iterPriceLevels.hasNext()){
-			Map.Entry<Double, PriceLevelShares> entry = (Map.Entry<Double, PriceLevelShares>) iterPriceLevels.next();
-			double currentPriceAtLevel = entry.getKey();
-			PriceLevelShares priceLevelShares = entry.getValue();
-			
-			Integer sharesAtPriceLevel = priceLevelShares.totalShares;
-			
-			if(sharesAtPriceLevel >= remainingShares){
-				calculatedResultDouble += remainingShares * currentPriceAtLevel;
-				
-				if(order.getSide().equals(order.getSide().B)){
-					masterBook.setLowestBidPriceUsed(currentPriceAtLevel);
-					masterBook.getBidPriceLevelsUsed().put(entry.getKey(), entry.getValue());
-				} else if(order.getSide().equals(order.getSide().S)){
-					masterBook.setHighestAskPriceUsed(currentPriceAtLevel);					
-					masterBook.getAskPriceLevelsUsed().put(entry.getKey(), entry.getValue());
-				}					
-
-				priceLevelShares.sharesUsedInLastCalc = remainingShares; 
-				
-				doneWithCalc = true;
-				
-				break;
-			} else {
-				calculatedResultDouble += sharesAtPriceLevel * currentPriceAtLevel;
-
-				remainingShares = remainingShares - sharesAtPriceLevel;
-				priceLevelShares.sharesUsedInLastCalc = sharesAtPriceLevel;
-				
-				if(order.getSide().equals(order.getSide().B)){
-					masterBook.getBidPriceLevelsUsed().put(entry.getKey(), entry.getValue());
-				} else if(order.getSide().equals(order.getSide().S)){
-					masterBook.getAskPriceLevelsUsed().put(entry.getKey(), entry.getValue());
-				}
-			}			
-			
-			if(doneWithCalc){
-				break;
+		// Walk priceLevels until target shares filled.  Prices are in ticks so the result is an exact number of 
+		// ticks, no rounding needed
+		if(fillCount > 0){
+			CalculationEvent calculationEvent = FlightEvents.beginCalculation();
+			priceLevels.fill(fillTargets, fillCount, fillResults);
+			if(calculationEvent != null){
+				FlightEvents.endCalculation(calculationEvent, masterBook, order, fillTargets[fillCount - 1], fillCount);
 			}
 		}
-
-		calculatedResultBigDecimal = new BigDecimal(calculatedResultDouble);
-		calculatedResultBigDecimal = calculatedResultBigDecimal.setScale(2, RoundingMode.HALF_UP);
-
-		sb.append(order.getSide().getOppositeSide(order.getSide()).toString());
-		sb.append(" ");
-		sb.append(formatter.format(calculatedResultBigDecimal));
-		resultNoTimestamp = sb.toString();
-		sb.insert(0, " ");
-		sb.insert(0, order.getTimestamp());
-		profitOrCostString = sb.toString();
 		
-		calculatorResult.setOutputResultNoTimestamp(resultNoTimestamp);
-		calculatorResult.setCompleteOutputResult(profitOrCostString);
+		for(int i = 0; i < count; i++){
+			calculatorResults[i].setSequence(order.getSequence());
+			calculatorResults[i].setSymbol(order.getSymbol());
+			if(i < fillCount){
+				filledResult(pricingTargets[i], order, fillResults[i], calculatorResults[i]);
+			} else {
+				notAvailableResult(order, calculatorResults[i]);
+			}
+		}
+	}
+	
+	/**
+	 * Not enough shares to calculate result, return NA
+	 */
+	private void notAvailableResult(Order order, CalculatorResult calculatorResult){
+		calculatorResult.setNotAvailable(order.getTimestamp(), order.getSide().getOppositeSide(order.getSide()));
+	}
+	
+	/**
+	 * Records the levels used by a fill for its target and sets the result
+	 */
+	private void filledResult(PricingTarget pricingTarget, Order order, FillResult fillResult, CalculatorResult calculatorResult){
+		if(order.getSide().equals(OrderSide.B)){
+			pricingTarget.setLowestBidPriceLevelUsed(fillResult.lastPriceUsed, fillResult.sharesUsedAtLastPrice);
+		} else if(order.getSide().equals(OrderSide.S)){
+			pricingTarget.setHighestAskPriceLevelUsed(fillResult.lastPriceUsed, fillResult.sharesUsedAtLastPrice);
+		}
 
-		return(calculatorResult);		
+		calculatorResult.setAmount(order.getTimestamp(), order.getSide().getOppositeSide(order.getSide()), fillResult.amount);
+	}
+	
+	private void growFills(int count){
+		fillTargets = new int[count];
+		FillResult[] grownFillResults = new FillResult[count];
+		for(int i = 0; i < count; i++){
+			grownFillResults[i] = i < fillResults.length ? fillResults[i] : new FillResult();
+		}
+		fillResults = grownFillResults;
 	}
 }
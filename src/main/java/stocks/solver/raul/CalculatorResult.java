@@ -1,25 +1,131 @@
 package stocks.solver.raul;
 
+import java.io.IOException;
+
 /**
- * Class to hold output from calculation done in {@link Calculator}
+ * Class to hold output from calculation done in {@link Calculator}.  A CalculatorResult is reused for every
+ * calculation.  It keeps the result as plain values, timestamp, side and amount in ticks or NA, and only formats
+ * them when written, building the output in place and encoding it straight into an {@link OutputSink} so no
+ * Strings are needed.
  * @author Raul
  *
  */
 public class CalculatorResult {
-	
-	private String outputResultNoTimestamp;
-	private String completeOutputResult;
-	
-	String getOutputResultNoTimestamp() {
-		return outputResultNoTimestamp;
+
+	private long timestamp;
+	// Position in the input of the order that caused the result, see Order
+	private long sequence;
+	// Instrument of the order that caused the result, null for input without a symbol column
+	private String symbol;
+	// Side of the result, IE S for a profit from selling into the bids
+	private OrderSide side;
+	// False when there were not enough shares for the target, IE NA
+	private boolean available;
+	// Profit or cost in ticks, see Prices
+	private long amount;
+
+	// Complete output, timestamp first, as of the last call to format
+	private final StringBuilder output = new StringBuilder(64);
+	// Index in output where the result without the timestamp starts
+	private int resultStart;
+
+	/**
+	 * Sets a profit or cost
+	 * @param timestamp Timestamp of the order that caused the result
+	 * @param side Side of the result
+	 * @param amount Profit or cost in ticks
+	 */
+	void setAmount(long timestamp, OrderSide side, long amount){
+		this.timestamp = timestamp;
+		this.side = side;
+		this.available = true;
+		this.amount = amount;
+	}
+
+	/**
+	 * Sets a result of NA
+	 * @param timestamp Timestamp of the order that caused the result
+	 * @param side Side of the result
+	 */
+	void setNotAvailable(long timestamp, OrderSide side){
+		this.timestamp = timestamp;
+		this.side = side;
+		this.available = false;
+		this.amount = 0;
+	}
+
+	/**
+	 * Formats the output from the result values
+	 */
+	void format(){
+		output.setLength(0);
+		output.append(timestamp).append(' ');
+		if(symbol != null){
+			output.append(symbol).append(' ');
+		}
+		resultStart = output.length();
+
+		output.append(side.toString());
+		output.append(" ");
+		if(available){
+			Prices.appendTicks(output, amount);
+		} else {
+			output.append("NA");
+		}
+	}
+
+	/**
+	 * Writes the result, as a line of text or as a {@link BinaryResults} record depending on the sink
+	 * @param outputSink Sink to write to
+	 * @throws IOException Thrown if the sink fails to write
+	 */
+	void writeTo(OutputSink outputSink) throws IOException{
+		if(outputSink.isBinary()){
+			outputSink.writeRecord(timestamp, side, available, amount);
+		} else {
+			format();
+			outputSink.writeLine(output);
+		}
+	}
+
+	long getTimestamp() {
+		return timestamp;
+	}
+
+	long getSequence() {
+		return sequence;
+	}
+
+	void setSequence(long sequence) {
+		this.sequence = sequence;
+	}
+
+	String getSymbol() {
+		return symbol;
+	}
+
+	void setSymbol(String symbol) {
+		this.symbol = symbol;
 	}
-	void setOutputResultNoTimestamp(String outputResultNoTimestamp) {
-		this.outputResultNoTimestamp = outputResultNoTimestamp;
+
+	OrderSide getSide() {
+		return side;
+	}
+
+	boolean isAvailable() {
+		return available;
+	}
+
+	long getAmount() {
+		return amount;
+	}
+
+	String getOutputResultNoTimestamp() {
+		format();
+		return output.substring(resultStart);
 	}
 	String getCompleteOutputResult() {
-		return completeOutputResult;
+		format();
+		return output.toString();
 	}
-	void setCompleteOutputResult(String completeOutputResult) {
-		this.completeOutputResult = completeOutputResult;
-	}	
 }
@@ -0,0 +1,303 @@
+package stocks.solver.raul;
+
+import java.lang.management.ManagementFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Statistics of an engine for other threads to read, at the end of the run or live over JMX: throughput, the depth
+ * and best prices of the book, the last results written and the {@link RecalculationCounters}.  The thread applying
+ * orders keeps its counters in plain fields and publishes a copy of them, an immutable snapshot that readers take
+ * from a volatile field, every so often while busy and whenever its input goes idle.  Readers never touch the book
+ * or the counters in use, so they take no locks and cannot slow the engine down.  A snapshot keeps the time it was
+ * taken, so on a quiet feed readers still see how old it is and the throughput falling away.
+ * @author Raul
+ *
+ */
+public class EngineStats implements EngineStatsMXBean {
+
+	private static final Logger log = Logger.getLogger(EngineStats.class.getName());
+
+	static final String OBJECT_NAME = "stocks.solver.raul:type=EngineStats";
+
+	static final long DEFAULT_PUBLISH_INTERVAL = 1000000000L;
+
+	// Orders between looking at the clock for a publish
+	private static final int PUBLISH_CHECK_ORDERS = 4096;
+
+	private final MasterBook masterBook;
+	// Nanoseconds between snapshots
+	private final long publishInterval;
+
+	private long orders = 0;
+
+	private volatile Snapshot snapshot;
+
+	private ObjectName registeredName;
+
+	/**
+	 * Constructor for EngineStats, publishes a first snapshot
+	 * @param masterBook Book the engine applies orders to
+	 * @param publishInterval Nanoseconds between snapshots
+	 */
+	public EngineStats(MasterBook masterBook, long publishInterval){
+		this.masterBook = masterBook;
+		this.publishInterval = publishInterval;
+		this.snapshot = new Snapshot(masterBook, 0, System.nanoTime(), null);
+	}
+
+	/**
+	 * Counts an order as handled, publishing a snapshot if one is due.  Only called by the thread applying orders.
+	 */
+	public void orderDone(){
+		if(++orders % PUBLISH_CHECK_ORDERS == 0 && System.nanoTime() - snapshot.time >= publishInterval){
+			publish();
+		}
+	}
+
+	/**
+	 * Publishes a snapshot if any order was handled since the last one, the engine has nothing else to do while it
+	 * waits for input.  Only called by the thread applying orders.
+	 */
+	public void inputIdle(){
+		if(orders != snapshot.orders){
+			publish();
+		}
+	}
+
+	/**
+	 * Publishes a snapshot of the statistics as they are now.  Only called by the thread applying orders.
+	 */
+	public void publish(){
+		snapshot = new Snapshot(masterBook, orders, System.nanoTime(), snapshot);
+	}
+
+	/**
+	 * Registers with the platform MBean server under OBJECT_NAME.  Failing to register is logged, the engine
+	 * runs just the same.
+	 */
+	public void register(){
+		try {
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+			registeredName = name;
+		} catch (JMException e) {
+			log.log(Level.SEVERE, "Cannot register engine statistics over JMX, carrying on without", e);
+		}
+	}
+
+	/**
+	 * Undoes register, if it succeeded
+	 */
+	public void unregister(){
+		if(registeredName == null){
+			return;
+		}
+
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+		} catch (JMException e) {
+			log.log(Level.WARNING, "Cannot unregister engine statistics", e);
+		}
+		registeredName = null;
+	}
+
+	/**
+	 * @return Counters of the latest snapshot as text, one line for the orders then one per target and side
+	 */
+	public String report(){
+		Snapshot current = snapshot;
+		StringBuilder report = new StringBuilder(512);
+		report.append("Orders: ").append(current.bidAdds).append(" bid adds, ").append(current.askAdds).append(" ask adds, ")
+			  .append(current.bidReduces).append(" bid reduces, ").append(current.askReduces).append(" ask reduces, ")
+			  .append(current.unknownReduces).append(" unknown reduces");
+
+		for(RecalculationCounters counters : current.targetCounters){
+			report.append(System.lineSeparator()).append(counters.describe(RecalculationCounters.PROFIT));
+			report.append(System.lineSeparator()).append(counters.describe(RecalculationCounters.COST));
+		}
+
+		return report.toString();
+	}
+
+	@Override
+	public long getOrders() {
+		return snapshot.orders;
+	}
+
+	@Override
+	public long getOrdersPerSecond() {
+		Snapshot current = snapshot;
+		long now = System.nanoTime();
+		if(now - current.time <= publishInterval){
+			return StageMetrics.ordersPerSecond(current.orders - current.previousOrders, current.time - current.previousTime);
+		}
+		// Nothing published for a while, the feed is quiet so the orders of the last snapshot are spread up to now
+		return StageMetrics.ordersPerSecond(current.orders - current.previousOrders, now - current.previousTime);
+	}
+
+	@Override
+	public long getSnapshotAgeMillis() {
+		return (System.nanoTime() - snapshot.time) / 1000000L;
+	}
+
+	@Override
+	public int getLiveBids() {
+		return snapshot.liveBids;
+	}
+
+	@Override
+	public int getLiveAsks() {
+		return snapshot.liveAsks;
+	}
+
+	@Override
+	public int getBidPriceLevels() {
+		return snapshot.bidPriceLevels;
+	}
+
+	@Override
+	public int getAskPriceLevels() {
+		return snapshot.askPriceLevels;
+	}
+
+	@Override
+	public int getTotalBidSize() {
+		return snapshot.totalBidSize;
+	}
+
+	@Override
+	public int getTotalAskSize() {
+		return snapshot.totalAskSize;
+	}
+
+	@Override
+	public String getBestBid() {
+		return snapshot.bestBid;
+	}
+
+	@Override
+	public String getBestAsk() {
+		return snapshot.bestAsk;
+	}
+
+	@Override
+	public int[] getTargets() {
+		return snapshot.targets.clone();
+	}
+
+	@Override
+	public String[] getLastProfits() {
+		return snapshot.lastProfits.clone();
+	}
+
+	@Override
+	public String[] getLastCosts() {
+		return snapshot.lastCosts.clone();
+	}
+
+	@Override
+	public long getBidAdds() {
+		return snapshot.bidAdds;
+	}
+
+	@Override
+	public long getAskAdds() {
+		return snapshot.askAdds;
+	}
+
+	@Override
+	public long getBidReduces() {
+		return snapshot.bidReduces;
+	}
+
+	@Override
+	public long getAskReduces() {
+		return snapshot.askReduces;
+	}
+
+	@Override
+	public long getUnknownReduces() {
+		return snapshot.unknownReduces;
+	}
+
+	@Override
+	public RecalculationCounters[] getTargetCounters() {
+		return snapshot.targetCounters.clone();
+	}
+
+	/**
+	 * Copy of the statistics at one point in time, never changed once made
+	 */
+	private static final class Snapshot {
+		private final long orders;
+		// System.nanoTime when taken
+		private final long time;
+		private final long previousOrders;
+		private final long previousTime;
+		private final int liveBids;
+		private final int liveAsks;
+		private final int bidPriceLevels;
+		private final int askPriceLevels;
+		private final int totalBidSize;
+		private final int totalAskSize;
+		private final String bestBid;
+		private final String bestAsk;
+		private final int[] targets;
+		private final String[] lastProfits;
+		private final String[] lastCosts;
+		private final long bidAdds;
+		private final long askAdds;
+		private final long bidReduces;
+		private final long askReduces;
+		private final long unknownReduces;
+		private final RecalculationCounters[] targetCounters;
+
+		private Snapshot(MasterBook masterBook, long orders, long time, Snapshot previous){
+			this.orders = orders;
+			this.time = time;
+			this.previousOrders = previous != null ? previous.orders : orders;
+			this.previousTime = previous != null ? previous.time : time;
+			this.liveBids = masterBook.getLiveOrders().bidCount();
+			this.liveAsks = masterBook.getLiveOrders().askCount();
+			this.bidPriceLevels = masterBook.getBidPriceLevels().size();
+			this.askPriceLevels = masterBook.getAskPriceLevels().size();
+			this.totalBidSize = masterBook.getTotalBidSize();
+			this.totalAskSize = masterBook.getTotalAskSize();
+			this.bestBid = price(masterBook.getBidPriceLevels().bestPrice());
+			this.bestAsk = price(masterBook.getAskPriceLevels().bestPrice());
+			this.bidAdds = masterBook.getBidAdds();
+			this.askAdds = masterBook.getAskAdds();
+			this.bidReduces = masterBook.getBidReduces();
+			this.askReduces = masterBook.getAskReduces();
+			this.unknownReduces = masterBook.getUnknownReduces();
+
+			PricingTarget[] pricingTargets = masterBook.getPricingTargets();
+			this.targets = new int[pricingTargets.length];
+			this.lastProfits = new String[pricingTargets.length];
+			this.lastCosts = new String[pricingTargets.length];
+			this.targetCounters = new RecalculationCounters[pricingTargets.length];
+			for(int i = 0; i < pricingTargets.length; i++){
+				PricingTarget pricingTarget = pricingTargets[i];
+				targets[i] = pricingTarget.getTarget();
+				lastProfits[i] = result(pricingTarget.isProfitWritten(), pricingTarget.isPreviousProfitAvailable(), pricingTarget.getPreviousProfit());
+				lastCosts[i] = result(pricingTarget.isCostWritten(), pricingTarget.isPreviousCostAvailable(), pricingTarget.getPreviousCost());
+				targetCounters[i] = new RecalculationCounters(pricingTarget.getCounters());
+			}
+		}
+
+		private static String price(long ticks){
+			return ticks == PriceLevels.NO_PRICE ? null : Prices.format(ticks);
+		}
+
+		private static String result(boolean written, boolean available, long amount){
+			if(!written){
+				return null;
+			}
+			return available ? Prices.format(amount) : "NA";
+		}
+	}
+}
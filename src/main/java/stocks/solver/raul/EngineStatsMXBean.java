@@ -0,0 +1,79 @@
+package stocks.solver.raul;
+
+/**
+ * Live view of a running engine over JMX, see {@link EngineStats}
+ * @author Raul
+ *
+ */
+public interface EngineStatsMXBean {
+
+	/**
+	 * @return Orders handled, including any that could not be applied
+	 */
+	long getOrders();
+
+	/**
+	 * @return Orders handled per second between the last two snapshots, or from the one before the last up to now
+	 * once the last is older than the publish interval
+	 */
+	long getOrdersPerSecond();
+
+	/**
+	 * @return Milliseconds since the snapshot the other attributes come from was taken
+	 */
+	long getSnapshotAgeMillis();
+
+	int getLiveBids();
+
+	int getLiveAsks();
+
+	int getBidPriceLevels();
+
+	int getAskPriceLevels();
+
+	int getTotalBidSize();
+
+	int getTotalAskSize();
+
+	/**
+	 * @return Highest bid price, null if there are no bids
+	 */
+	String getBestBid();
+
+	/**
+	 * @return Lowest ask price, null if there are no asks
+	 */
+	String getBestAsk();
+
+	int[] getTargets();
+
+	/**
+	 * @return Last profit written for each target, in the order of getTargets, NA if there were not enough shares
+	 * and null if none has been written
+	 */
+	String[] getLastProfits();
+
+	/**
+	 * @return Last cost written for each target, in the order of getTargets, NA if there were not enough shares and
+	 * null if none has been written
+	 */
+	String[] getLastCosts();
+
+	long getBidAdds();
+
+	long getAskAdds();
+
+	long getBidReduces();
+
+	long getAskReduces();
+
+	/**
+	 * @return Reduces of orders that were not in the market
+	 */
+	long getUnknownReduces();
+
+	/**
+	 * @return Recalculation counters of every target
+	 */
+	RecalculationCounters[] getTargetCounters();
+}
@@ -0,0 +1,109 @@
+package stocks.solver.raul;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Steps shared by the engines that hand orders and results between threads: how a thread waits when it finds
+ * nothing to do in a ring, how a thread and its failure are waited for, and how a line is decoded with bad orders
+ * skipped.
+ * @author Raul
+ *
+ */
+final class EngineThreads {
+
+	private static final Logger log = Logger.getLogger(EngineThreads.class.getName());
+
+	// Empty polls spent spinning before an idle thread starts parking between polls
+	static final int SPINS_BEFORE_PARK = 100;
+	static final long PARK_NANOS = 50000;
+
+	private EngineThreads(){
+	}
+
+	/**
+	 * Waits after a poll found nothing, yielding for the first polls in a row then parking between them
+	 * @param emptyPolls Empty polls in a row, this one included
+	 */
+	static void idle(int emptyPolls){
+		if(emptyPolls < SPINS_BEFORE_PARK){
+			Thread.yield();
+		} else {
+			LockSupport.parkNanos(PARK_NANOS);
+		}
+	}
+
+	/**
+	 * Waits for the oldest published sequence of a ring, consumer only
+	 * @param sequencer Ring to take from
+	 * @return Sequence to take, RingSequencer.NONE once the producer has finished and everything has been taken
+	 */
+	static long take(RingSequencer sequencer){
+		int emptyPolls = 0;
+
+		while(true){
+			// Read before looking, once finished an empty look means nothing more will come
+			boolean finished = sequencer.isFinished();
+			long sequence = sequencer.tryTake();
+			if(sequence != RingSequencer.NONE || finished){
+				return sequence;
+			}
+			idle(++emptyPolls);
+		}
+	}
+
+	/**
+	 * Waits for a thread to end, carrying on through interrupts and interrupting the caller afterwards if any came
+	 * @param thread Thread to wait for
+	 */
+	static void join(Thread thread){
+		boolean interrupted = false;
+		while(thread.isAlive()){
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if(interrupted){
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Throws, on the calling thread, a failure caught on another thread
+	 * @param failure What the other thread caught
+	 * @throws IOException The failure itself, if it was reading or writing that failed
+	 */
+	static void throwFailure(Throwable failure) throws IOException{
+		if(failure instanceof IOException){
+			throw (IOException) failure;
+		} else if(failure instanceof RuntimeException){
+			throw (RuntimeException) failure;
+		} else if(failure instanceof Error){
+			throw (Error) failure;
+		}
+		throw new IllegalStateException(failure);
+	}
+
+	/**
+	 * Decodes the current line of the input, logging a bad order instead
+	 * @param lineSource Input, on the line to decode
+	 * @param orderDecoder Decoder for the input
+	 * @param reusableOrder Order to decode into
+	 * @return Decoded order, see {@link OrderDecoder#decode}, or null if the line is a bad order to skip
+	 */
+	static Order decode(LineSource lineSource, OrderDecoder orderDecoder, Order reusableOrder){
+		try {
+			return orderDecoder.decode(lineSource.getBuffer(), lineSource.getLineStart(), lineSource.getLineEnd(), reusableOrder);
+		} catch (ParsingException e) {
+			log.log(Level.SEVERE, "Bad market order, skipping it", e);
+		} catch(NumberFormatException nfe){
+			log.log(Level.SEVERE, "Bad timestamp in input, skipping it", nfe);
+		}
+		// Will assume on bad market input, to just skip that order, as the single threaded loop does
+		return null;
+	}
+}
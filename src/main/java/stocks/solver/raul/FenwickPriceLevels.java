@@ -0,0 +1,367 @@
+package stocks.solver.raul;
+
+/**
+ * {@link PriceLevels} indexed by Fenwick trees of cumulative shares and cumulative notional (shares times price),
+ * keyed by the tick offset from a base price and ordered from the best price.  Filling a target is a single
+ * descent of the trees, so it takes logarithmic time whatever the depth of the book.
+ * <p>
+ * A side whose prices come to span more than MAX_CAPACITY ticks moves its levels to {@link TreePriceLevels} and
+ * stays there, as {@link LadderPriceLevels} does.
+ * @author Raul
+ *
+ */
+public class FenwickPriceLevels implements PriceLevels {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	// Largest number of ticks between the lowest and highest price the trees will hold, 160MB of shares and trees
+	static final int MAX_CAPACITY = 1 << 23;
+
+	private static final int NO_INDEX = -1;
+
+	private final boolean highestFirst;
+
+	// Shares at each price level, indexed by the tick offset from basePrice
+	private int[] shares = new int[INITIAL_CAPACITY];
+
+	// Fenwick trees over positions ordered from the best price, 1 based
+	private long[] cumulativeShares = new long[INITIAL_CAPACITY + 1];
+	private long[] cumulativeNotional = new long[INITIAL_CAPACITY + 1];
+
+	// Price in ticks at offset 0
+	private long basePrice = 0;
+
+	// Indices of the lowest and highest price levels with shares, NO_INDEX when empty
+	private int lowestIndex = NO_INDEX;
+	private int highestIndex = NO_INDEX;
+
+	private int size = 0;
+
+	// Levels once the prices have spanned too many ticks for the trees, null until then
+	private PriceLevels spilled;
+
+	/**
+	 * Constructor for FenwickPriceLevels
+	 * @param highestFirst True to walk from the highest price (bids), false to walk from the lowest (asks)
+	 */
+	public FenwickPriceLevels(boolean highestFirst){
+		this.highestFirst = highestFirst;
+	}
+
+	@Override
+	public void addShares(long price, int sharesToAdd){
+		if(spilled != null){
+			spilled.addShares(price, sharesToAdd);
+			return;
+		}
+
+		long offset = price - basePrice;
+
+		if(offset < 0 || offset >= shares.length){
+			makeRoom(price);
+			if(spilled != null){
+				spilled.addShares(price, sharesToAdd);
+				return;
+			}
+			offset = price - basePrice;
+		}
+
+		int index = (int) offset;
+
+		if(shares[index] == 0){
+			size++;
+			if(lowestIndex == NO_INDEX || index < lowestIndex){
+				lowestIndex = index;
+			}
+			if(highestIndex == NO_INDEX || index > highestIndex){
+				highestIndex = index;
+			}
+		}
+		shares[index] += sharesToAdd;
+
+		update(position(index), sharesToAdd, price);
+	}
+
+	@Override
+	public int reduceShares(long price, int sharesToRemove){
+		if(spilled != null){
+			return spilled.reduceShares(price, sharesToRemove);
+		}
+
+		int index = (int) (price - basePrice);
+		int sharesLeft = shares[index] - sharesToRemove;
+		shares[index] = sharesLeft;
+
+		// No shares left at this level, move the occupied range inwards past any empty levels
+		if(sharesLeft == 0){
+			size--;
+			if(size == 0){
+				lowestIndex = NO_INDEX;
+				highestIndex = NO_INDEX;
+			} else if(index == lowestIndex){
+				while(shares[lowestIndex] == 0){
+					lowestIndex++;
+				}
+			} else if(index == highestIndex){
+				while(shares[highestIndex] == 0){
+					highestIndex--;
+				}
+			}
+		}
+
+		update(position(index), -sharesToRemove, price);
+
+		return sharesLeft;
+	}
+
+	@Override
+	public int getShares(long price){
+		if(spilled != null){
+			return spilled.getShares(price);
+		}
+
+		long offset = price - basePrice;
+
+		if(offset < 0 || offset >= shares.length){
+			return 0;
+		}
+		return shares[(int) offset];
+	}
+
+	@Override
+	public int size(){
+		if(spilled != null){
+			return spilled.size();
+		}
+		return size;
+	}
+
+	@Override
+	public long bestPrice(){
+		if(spilled != null){
+			return spilled.bestPrice();
+		}
+		if(size == 0){
+			return NO_PRICE;
+		}
+		// First position with any shares
+		return basePrice + index(lastPositionWithSharesAtMost(0) + 1);
+	}
+
+	@Override
+	public long nextWorsePrice(long price){
+		if(spilled != null){
+			return spilled.nextWorsePrice(price);
+		}
+
+		int capacity = shares.length;
+		long position = position(price);
+
+		if(position >= capacity){
+			return NO_PRICE;
+		}
+
+		// Next level is the first position where the cumulative shares go past those up to the given price
+		long sharesUpTo = position < 1 ? 0 : prefixShares((int) position);
+		if(sharesUpTo == prefixShares(capacity)){
+			return NO_PRICE;
+		}
+		return basePrice + index(lastPositionWithSharesAtMost(sharesUpTo) + 1);
+	}
+
+	@Override
+	public long nextBetterPrice(long price){
+		if(spilled != null){
+			return spilled.nextBetterPrice(price);
+		}
+
+		int capacity = shares.length;
+		long position = position(price);
+
+		if(position <= 1){
+			return NO_PRICE;
+		}
+
+		// Previous level is the first position where the cumulative shares reach those before the given price
+		long sharesBefore = prefixShares((int) Math.min(position - 1, capacity));
+		if(sharesBefore == 0){
+			return NO_PRICE;
+		}
+		return basePrice + index(lastPositionWithSharesAtMost(sharesBefore - 1) + 1);
+	}
+
+	/**
+	 * @return Cumulative shares from the best price up to and including a position
+	 */
+	private long prefixShares(int position){
+		long sum = 0;
+		for(int i = position; i > 0; i -= i & -i){
+			sum += cumulativeShares[i];
+		}
+		return sum;
+	}
+
+	/**
+	 * @return Last position whose cumulative shares are at most the given amount, 0 if there is none
+	 */
+	private int lastPositionWithSharesAtMost(long sharesLimit){
+		int capacity = shares.length;
+		int position = 0;
+		long sharesBefore = 0;
+
+		for(int step = Integer.highestOneBit(capacity); step > 0; step >>= 1){
+			int next = position + step;
+			if(next <= capacity && sharesBefore + cumulativeShares[next] <= sharesLimit){
+				position = next;
+				sharesBefore += cumulativeShares[next];
+			}
+		}
+		return position;
+	}
+
+	@Override
+	public void fill(int target, FillResult fillResult){
+		if(spilled != null){
+			spilled.fill(target, fillResult);
+			return;
+		}
+
+		int capacity = shares.length;
+		int position = 0;
+		long sharesBefore = 0;
+		long notionalBefore = 0;
+
+		// Find the last position where the cumulative shares are still below target, the next one is the last
+		// price level needed for the fill
+		for(int step = Integer.highestOneBit(capacity); step > 0; step >>= 1){
+			int next = position + step;
+			if(next <= capacity && sharesBefore + cumulativeShares[next] < target){
+				position = next;
+				sharesBefore += cumulativeShares[next];
+				notionalBefore += cumulativeNotional[next];
+			}
+		}
+
+		long lastPriceUsed = basePrice + index(position + 1);
+		int sharesUsedAtLastPrice = (int) (target - sharesBefore);
+
+		fillResult.amount = notionalBefore + sharesUsedAtLastPrice * lastPriceUsed;
+		fillResult.lastPriceUsed = lastPriceUsed;
+		fillResult.sharesUsedAtLastPrice = sharesUsedAtLastPrice;
+	}
+
+	/**
+	 * Adds a change in shares at a position to both trees
+	 */
+	private void update(int position, int sharesChange, long price){
+		long notionalChange = sharesChange * price;
+		int capacity = shares.length;
+
+		for(int i = position; i <= capacity; i += i & -i){
+			cumulativeShares[i] += sharesChange;
+			cumulativeNotional[i] += notionalChange;
+		}
+	}
+
+	/**
+	 * @param price Price in ticks, may be outside of the levels
+	 * @return Tree position the price has or would have, 1 for the best possible price
+	 */
+	private long position(long price){
+		long offset = price - basePrice;
+		return highestFirst ? shares.length - offset : offset + 1;
+	}
+
+	/**
+	 * @param index Tick offset from basePrice
+	 * @return Tree position, 1 for the best possible price
+	 */
+	private int position(int index){
+		return highestFirst ? shares.length - index : index + 1;
+	}
+
+	/**
+	 * @param position Tree position
+	 * @return Tick offset from basePrice
+	 */
+	private int index(int position){
+		return highestFirst ? shares.length - position : position - 1;
+	}
+
+	/**
+	 * Re-centers the levels so that they cover both the occupied levels and a new price, growing them if the span
+	 * would take more than half of the capacity.  The trees are rebuilt from the shares.  Spills the levels to a
+	 * tree instead if the capacity would have to grow past MAX_CAPACITY.
+	 * @param price Price in ticks that needs to fit
+	 */
+	private void makeRoom(long price){
+		int capacity = shares.length;
+
+		if(size == 0){
+			// Trees of an empty side are all zeros already
+			basePrice = price - capacity / 2;
+			return;
+		}
+
+		long lowestPrice = Math.min(basePrice + lowestIndex, price);
+		long highestPrice = Math.max(basePrice + highestIndex, price);
+		long span = highestPrice - lowestPrice + 1;
+
+		while(span * 2 > capacity){
+			if(capacity >= MAX_CAPACITY){
+				spill();
+				return;
+			}
+			capacity = capacity * 2;
+		}
+
+		long newBasePrice = lowestPrice - (capacity - span) / 2;
+		int[] oldShares = shares;
+		int occupied = highestIndex - lowestIndex + 1;
+		int newLowestIndex = (int) (basePrice + lowestIndex - newBasePrice);
+
+		shares = new int[capacity];
+		cumulativeShares = new long[capacity + 1];
+		cumulativeNotional = new long[capacity + 1];
+		System.arraycopy(oldShares, lowestIndex, shares, newLowestIndex, occupied);
+		highestIndex = newLowestIndex + occupied - 1;
+		lowestIndex = newLowestIndex;
+		basePrice = newBasePrice;
+
+		// Linear time build, each occupied level starts off its position and each node passes its sum on to its parent
+		for(int index = lowestIndex; index <= highestIndex; index++){
+			int position = position(index);
+			cumulativeShares[position] += shares[index];
+			cumulativeNotional[position] += shares[index] * (basePrice + index);
+		}
+		// Positions before the first occupied one only hold zeros
+		for(int position = Math.min(position(lowestIndex), position(highestIndex)); position <= capacity; position++){
+			int parent = position + (position & -position);
+			if(parent <= capacity){
+				cumulativeShares[parent] += cumulativeShares[position];
+				cumulativeNotional[parent] += cumulativeNotional[position];
+			}
+		}
+	}
+
+	/**
+	 * Moves every level to a tree, which takes over from the Fenwick trees for good
+	 */
+	private void spill(){
+		PriceLevels treePriceLevels = new TreePriceLevels(highestFirst);
+		for(int index = lowestIndex; index <= highestIndex; index++){
+			if(shares[index] != 0){
+				treePriceLevels.addShares(basePrice + index, shares[index]);
+			}
+		}
+
+		spilled = treePriceLevels;
+		shares = null;
+		cumulativeShares = null;
+		cumulativeNotional = null;
+	}
+
+	boolean isSpilled() {
+		return spilled != null;
+	}
+}
@@ -0,0 +1,16 @@
+package stocks.solver.raul;
+
+/**
+ * Class to hold the outcome of walking {@link PriceLevels} to fill a target number of shares
+ * @author Raul
+ *
+ */
+public class FillResult {
+
+	// Sum of shares times price over the levels used, in ticks
+	long amount = 0;
+
+	// Worst price level needed for the fill and how many of its shares were used
+	long lastPriceUsed = 0;
+	int sharesUsedAtLastPrice = 0;
+}
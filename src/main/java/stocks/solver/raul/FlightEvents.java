@@ -0,0 +1,150 @@
+package stocks.solver.raul;
+
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Java Flight Recorder events for the slow paths of the engine, to line up latency outliers with GC and the shape
+ * of the book in Mission Control: {@link CalculationEvent}, {@link PriceLevelGrowthEvent} and
+ * {@link BadOrderBurstEvent}.  Nothing is allocated unless a recording has the event enabled, so with recording
+ * off each event costs a check of a flag.
+ * @author Raul
+ *
+ */
+public final class FlightEvents {
+
+	// Event types, looked up once the flight recorder has started as looking them up starts it
+	private static EventType calculation;
+	private static EventType priceLevelGrowth;
+	private static EventType badOrderBurst;
+
+	private FlightEvents(){
+	}
+
+	/**
+	 * Starts timing a walk of the price levels
+	 * @return Event to pass to endCalculation, null if no recording wants it
+	 */
+	static CalculationEvent beginCalculation(){
+		if(!isRecording()){
+			return null;
+		}
+		if(calculation == null){
+			calculation = EventType.getEventType(CalculationEvent.class);
+		}
+		if(!calculation.isEnabled()){
+			return null;
+		}
+
+		CalculationEvent event = new CalculationEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Ends timing a walk of the price levels, committing the event if the walk took longer than the threshold
+	 * @param event Event given by beginCalculation
+	 * @param masterBook Book walked
+	 * @param order Order that caused the calculation
+	 * @param target Largest target filled
+	 * @param targets Number of targets filled
+	 */
+	static void endCalculation(CalculationEvent event, MasterBook masterBook, Order order, int target, int targets){
+		event.end();
+		if(!event.shouldCommit()){
+			return;
+		}
+
+		event.orderTimestamp = order.getTimestamp();
+		event.side = order.getSide().toString();
+		event.target = target;
+		event.targets = targets;
+		event.bidPriceLevels = masterBook.getBidPriceLevels().size();
+		event.askPriceLevels = masterBook.getAskPriceLevels().size();
+		event.liveOrders = masterBook.getLiveOrders().size();
+		event.commit();
+	}
+
+	/**
+	 * Records a side of the book reaching a new power of two price levels
+	 * @param masterBook Book that grew
+	 * @param order Add order that grew it
+	 */
+	static void priceLevelsGrew(MasterBook masterBook, Order order){
+		if(!isRecording()){
+			return;
+		}
+		if(priceLevelGrowth == null){
+			priceLevelGrowth = EventType.getEventType(PriceLevelGrowthEvent.class);
+		}
+		if(!priceLevelGrowth.isEnabled()){
+			return;
+		}
+
+		PriceLevelGrowthEvent event = new PriceLevelGrowthEvent();
+		event.orderTimestamp = order.getTimestamp();
+		event.side = order.getSide().toString();
+		event.target = largestTarget(masterBook);
+		event.bidPriceLevels = masterBook.getBidPriceLevels().size();
+		event.askPriceLevels = masterBook.getAskPriceLevels().size();
+		event.liveOrders = masterBook.getLiveOrders().size();
+		event.commit();
+	}
+
+	/**
+	 * Starts timing a burst of bad orders
+	 * @return Event to pass to endBadOrderBurst, null if no recording wants it
+	 */
+	static BadOrderBurstEvent beginBadOrderBurst(){
+		if(!isRecording()){
+			return null;
+		}
+		if(badOrderBurst == null){
+			badOrderBurst = EventType.getEventType(BadOrderBurstEvent.class);
+		}
+		if(!badOrderBurst.isEnabled()){
+			return null;
+		}
+
+		BadOrderBurstEvent event = new BadOrderBurstEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Commits a burst of bad orders, timed from the first to the last
+	 * @param event Event given by beginBadOrderBurst, with its end set at the last bad order
+	 * @param masterBook Book the orders were for
+	 * @param parsingErrors Orders that could not be parsed
+	 * @param unknownReduces Reduces of orders not in the market
+	 */
+	static void commitBadOrderBurst(BadOrderBurstEvent event, MasterBook masterBook, int parsingErrors, int unknownReduces){
+		if(!event.shouldCommit()){
+			return;
+		}
+
+		event.parsingErrors = parsingErrors;
+		event.unknownReduces = unknownReduces;
+		event.target = largestTarget(masterBook);
+		event.bidPriceLevels = masterBook.getBidPriceLevels().size();
+		event.askPriceLevels = masterBook.getAskPriceLevels().size();
+		event.liveOrders = masterBook.getLiveOrders().size();
+		event.commit();
+	}
+
+	/**
+	 * @return Whether the flight recorder has been started, by a recording from the command line, jcmd or a
+	 * Recording, and so may want events
+	 */
+	private static boolean isRecording(){
+		return FlightRecorder.isInitialized();
+	}
+
+	private static int largestTarget(MasterBook masterBook){
+		int largest = 0;
+		for(PricingTarget pricingTarget : masterBook.getPricingTargets()){
+			largest = Math.max(largest, pricingTarget.getTarget());
+		}
+		return largest;
+	}
+}
@@ -0,0 +1,74 @@
+package stocks.solver.raul;
+
+/**
+ * When an {@link OutputSink} drains its buffered output: once a number of bytes is buffered, after a number of
+ * results, or only when the buffer is full and at the end of input
+ * @author Raul
+ *
+ */
+public class FlushPolicy {
+
+	enum Trigger {
+		BYTES,
+		EVENTS,
+		END
+	}
+
+	static final int DEFAULT_BYTES = 64 * 1024;
+
+	static final FlushPolicy DEFAULT = new FlushPolicy(Trigger.BYTES, DEFAULT_BYTES);
+
+	private final Trigger trigger;
+	// Bytes or results to buffer before draining, unused for END
+	private final int threshold;
+
+	/**
+	 * Constructor for FlushPolicy
+	 * @param trigger What decides when to drain
+	 * @param threshold Number of bytes or results to buffer before draining
+	 */
+	FlushPolicy(Trigger trigger, int threshold){
+		if(trigger != Trigger.END && threshold < 1){
+			throw new IllegalArgumentException("Flush threshold must be at least 1: " + threshold);
+		}
+		this.trigger = trigger;
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Parses a flush policy from the command line
+	 * @param policy One of bytes:count, events:count or end
+	 * @return Parsed policy
+	 * @throws IllegalArgumentException Thrown on an unknown policy or a bad count
+	 */
+	static FlushPolicy getFlushPolicy(String policy){
+		if(policy.equals("end")){
+			return new FlushPolicy(Trigger.END, 0);
+		}
+
+		int separator = policy.indexOf(':');
+		if(separator < 0){
+			throw new IllegalArgumentException("Unknown flush policy: " + policy);
+		}
+
+		Trigger trigger = Trigger.valueOf(policy.substring(0, separator).toUpperCase());
+		if(trigger == Trigger.END){
+			throw new IllegalArgumentException("Unknown flush policy: " + policy);
+		}
+
+		try{
+			return new FlushPolicy(trigger, Integer.parseInt(policy.substring(separator + 1)));
+		} catch(NumberFormatException nfe){
+			// Not left as a NumberFormatException, which would be reported as a bad target
+			throw new IllegalArgumentException("Bad flush count: " + policy);
+		}
+	}
+
+	Trigger getTrigger() {
+		return trigger;
+	}
+
+	int getThreshold() {
+		return threshold;
+	}
+}
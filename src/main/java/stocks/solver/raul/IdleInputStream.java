@@ -0,0 +1,38 @@
+package stocks.solver.raul;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream that runs an action on the reading thread before a read that would wait for more input, so the
+ * reader can use the time it would spend blocked.  Readers only read once they have used up what they already
+ * read, so by then every order before the wait has been handled.
+ * @author Raul
+ *
+ */
+class IdleInputStream extends FilterInputStream {
+
+	// Run before a read finding nothing available, null to never look
+	private Runnable idleAction;
+
+	/**
+	 * Constructor for IdleInputStream
+	 * @param inputStream Stream to read from
+	 */
+	IdleInputStream(InputStream inputStream){
+		super(inputStream);
+	}
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) throws IOException{
+		if(idleAction != null && in.available() == 0){
+			idleAction.run();
+		}
+		return in.read(bytes, offset, length);
+	}
+
+	void setIdleAction(Runnable idleAction) {
+		this.idleAction = idleAction;
+	}
+}
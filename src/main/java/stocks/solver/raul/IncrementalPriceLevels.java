@@ -0,0 +1,171 @@
+package stocks.solver.raul;
+
+/**
+ * {@link PriceLevels} that keeps the fill of one target up to date as shares are added and reduced, instead of
+ * walking the levels again for every calculation.  Each change adjusts the running amount by its own shares and
+ * only moves the last price level used when shares have to be given up or found at the edge of the fill.
+ * @author Raul
+ *
+ */
+public class IncrementalPriceLevels implements PriceLevels {
+
+	private final PriceLevels priceLevels;
+	private final boolean highestFirst;
+	private final int target;
+
+	private long totalShares = 0;
+
+	// Fill of the target as of the latest change, only kept while there are enough shares to fill the target
+	private boolean fillValid = false;
+	private final FillResult currentFill = new FillResult();
+
+	/**
+	 * Constructor for IncrementalPriceLevels
+	 * @param priceLevels Price levels that hold the shares
+	 * @param highestFirst True if the highest price is best (bids), false if the lowest is (asks)
+	 * @param target Number of shares to keep the fill for
+	 */
+	public IncrementalPriceLevels(PriceLevels priceLevels, boolean highestFirst, int target){
+		this.priceLevels = priceLevels;
+		this.highestFirst = highestFirst;
+		this.target = target;
+	}
+
+	@Override
+	public void addShares(long price, int shares){
+		priceLevels.addShares(price, shares);
+		totalShares += shares;
+
+		if(!fillValid || !isBetter(price, currentFill.lastPriceUsed)){
+			// Shares at or behind the last price used are not needed for the fill
+			return;
+		}
+
+		// Added shares push the same number of shares out of the fill, starting from its worst price
+		currentFill.amount += shares * price;
+		giveUpShares(shares);
+	}
+
+	@Override
+	public int reduceShares(long price, int shares){
+		int sharesLeft = priceLevels.reduceShares(price, shares);
+		totalShares -= shares;
+
+		if(!fillValid){
+			return sharesLeft;
+		}
+
+		if(totalShares < target){
+			fillValid = false;
+		} else if(isBetter(price, currentFill.lastPriceUsed)){
+			// Every share at a better price is in the fill, replace the ones reduced
+			currentFill.amount -= shares * price;
+			findShares(shares);
+		} else if(price == currentFill.lastPriceUsed && sharesLeft < currentFill.sharesUsedAtLastPrice){
+			int missingShares = currentFill.sharesUsedAtLastPrice - sharesLeft;
+			currentFill.amount -= missingShares * price;
+			currentFill.sharesUsedAtLastPrice = sharesLeft;
+			findShares(missingShares);
+		}
+
+		return sharesLeft;
+	}
+
+	/**
+	 * Removes shares from the worst end of the fill, moving to better price levels as levels are used up
+	 */
+	private void giveUpShares(int shares){
+		int sharesToGiveUp = shares;
+
+		while(sharesToGiveUp > 0){
+			if(currentFill.sharesUsedAtLastPrice > sharesToGiveUp){
+				currentFill.sharesUsedAtLastPrice -= sharesToGiveUp;
+				currentFill.amount -= sharesToGiveUp * currentFill.lastPriceUsed;
+				return;
+			}
+
+			// Whole level drops out of the fill, the next better level is then used in full
+			currentFill.amount -= currentFill.sharesUsedAtLastPrice * currentFill.lastPriceUsed;
+			sharesToGiveUp -= currentFill.sharesUsedAtLastPrice;
+			currentFill.lastPriceUsed = priceLevels.nextBetterPrice(currentFill.lastPriceUsed);
+			currentFill.sharesUsedAtLastPrice = priceLevels.getShares(currentFill.lastPriceUsed);
+		}
+	}
+
+	/**
+	 * Adds shares to the worst end of the fill, first from what is left at the last price used and then from
+	 * worse price levels
+	 */
+	private void findShares(int shares){
+		int sharesToFind = shares;
+
+		while(true){
+			int sharesAvailable = priceLevels.getShares(currentFill.lastPriceUsed) - currentFill.sharesUsedAtLastPrice;
+			int sharesTaken = Math.min(sharesAvailable, sharesToFind);
+
+			currentFill.sharesUsedAtLastPrice += sharesTaken;
+			currentFill.amount += sharesTaken * currentFill.lastPriceUsed;
+			sharesToFind -= sharesTaken;
+
+			if(sharesToFind == 0){
+				return;
+			}
+
+			currentFill.lastPriceUsed = priceLevels.nextWorsePrice(currentFill.lastPriceUsed);
+			currentFill.sharesUsedAtLastPrice = 0;
+		}
+	}
+
+	/**
+	 * @return True if price is better than otherPrice for this side of the market
+	 */
+	private boolean isBetter(long price, long otherPrice){
+		return highestFirst ? price > otherPrice : price < otherPrice;
+	}
+
+	@Override
+	public int getShares(long price){
+		return priceLevels.getShares(price);
+	}
+
+	@Override
+	public int size(){
+		return priceLevels.size();
+	}
+
+	@Override
+	public long bestPrice(){
+		return priceLevels.bestPrice();
+	}
+
+	@Override
+	public long nextWorsePrice(long price){
+		return priceLevels.nextWorsePrice(price);
+	}
+
+	@Override
+	public long nextBetterPrice(long price){
+		return priceLevels.nextBetterPrice(price);
+	}
+
+	/**
+	 * Gives the fill kept up to date for this target, other targets, or a target that could not be filled since the
+	 * last walk, are walked from the best price
+	 */
+	@Override
+	public void fill(int target, FillResult fillResult){
+		if(target != this.target){
+			priceLevels.fill(target, fillResult);
+			return;
+		}
+
+		if(!fillValid){
+			priceLevels.fill(target, currentFill);
+			fillValid = true;
+		}
+
+		fillResult.amount = currentFill.amount;
+		fillResult.lastPriceUsed = currentFill.lastPriceUsed;
+		fillResult.sharesUsedAtLastPrice = currentFill.sharesUsedAtLastPrice;
+	}
+}
@@ -0,0 +1,94 @@
+package stocks.solver.raul;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Numbers given by a writer of a {@link BinaryFeed} to the order ids that do not pack into a key.  The writer
+ * follows the live orders with such ids as the book would, and once no order with an id is left its number is freed
+ * and given to the next id interned.  The numbers in use, and the table a reader keeps of them, then never outnumber
+ * the live orders with interned ids however long the feed.
+ * @author Raul
+ *
+ */
+final class InternedIds {
+
+	// Key of an id that is not interned
+	static final long NONE = 0;
+
+	// Key given to each id in use
+	private final Map<String, Long> keys = new HashMap<String, Long>();
+	// Live orders with an interned id, keyed as in the book
+	private final OrderIndex liveOrders = new OrderIndex();
+
+	// Freed numbers, the last freed given first
+	private int[] freeNumbers = new int[16];
+	private int freeCount = 0;
+	// Lowest number never given
+	private int nextNumber = 0;
+
+	/**
+	 * @param orderId Order id that does not pack into a key
+	 * @return Key of the id, NONE if it needs interning
+	 */
+	long key(String orderId){
+		Long key = keys.get(orderId);
+		return key != null ? key : NONE;
+	}
+
+	/**
+	 * Gives a number to an id that is not interned, a freed one if there is any
+	 * @param orderId Order id that does not pack into a key
+	 * @return Key of the id, to write in the INTERN record and the records of its orders
+	 */
+	long intern(String orderId){
+		int number = freeCount > 0 ? freeNumbers[--freeCount] : nextNumber++;
+		long key = BinaryFeed.INTERNED | number;
+		keys.put(orderId, key);
+		return key;
+	}
+
+	/**
+	 * Follows an order written with an interned id, freeing the number of the id if no order with it is left
+	 * @param order Order with an id that does not pack into a key, after its record is written
+	 */
+	void written(Order order){
+		if(order.getOrderAction().equals(OrderAction.ADD)){
+			liveOrders.put(order);
+			return;
+		}
+
+		int slot = liveOrders.find(order);
+		if(slot != OrderIndex.NOT_FOUND){
+			// As the book reduces, never by more than the order has
+			liveOrders.reduce(slot, Math.min(liveOrders.getSize(slot), order.getSize()));
+		}
+		// A reduce of an order not in the market leaves nothing behind either
+		if(liveOrders.find(order) == OrderIndex.NOT_FOUND){
+			free(order.getOrderId());
+		}
+	}
+
+	private void free(String orderId){
+		Long key = keys.remove(orderId);
+		if(key == null){
+			return;
+		}
+
+		if(freeCount == freeNumbers.length){
+			freeNumbers = Arrays.copyOf(freeNumbers, freeCount * 2);
+		}
+		freeNumbers[freeCount++] = (int) (key & ~BinaryFeed.INTERNED);
+	}
+
+	/**
+	 * Forgets every number given, so the records from here on can be read on their own.  The live orders are still
+	 * followed, as the book still has them, so an id interned again is freed once its orders are gone.
+	 */
+	void clear(){
+		keys.clear();
+		freeCount = 0;
+		nextNumber = 0;
+	}
+}
@@ -0,0 +1,132 @@
+package stocks.solver.raul;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Rebuilds a book from an {@link OrderJournal}, either from the start of the journal or from a
+ * {@link BookCheckpoint} and the part of the journal after it, writing out the results as the solver did.  Journaled
+ * orders were all applied when they were written and need no parsing, so a run is reproduced exactly and as fast as
+ * the book can take the orders.
+ * @author Raul
+ *
+ */
+public class JournalReplay {
+
+	private static final Logger log = Logger.getLogger(JournalReplay.class.getName());
+
+	static final String USAGE = "usage: journal-file target-size[,target-size...] [-out output-prefix] [-checkpoint file]";
+
+	/**
+	 * @param args Journal file and the targets of the run, followed by any options
+	 * @throws IOException Thrown if the journal or checkpoint cannot be read, or an output cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length < 2){
+			System.out.println(USAGE);
+			return;
+		}
+
+		Path journalFile = Paths.get(args[0]);
+		String[] targetParts = args[1].split(",");
+		int[] targets = new int[targetParts.length];
+		String outputPrefix = null;
+		Path checkpointFile = null;
+
+		try{
+			for(int i = 0; i < targetParts.length; i++){
+				targets[i] = Integer.valueOf(targetParts[i]);
+			}
+
+			for(int i = 2; i < args.length; i += 2){
+				if(i + 1 >= args.length){
+					throw new IllegalArgumentException("Missing value for option: " + args[i]);
+				} else if(args[i].equals("-out")){
+					outputPrefix = args[i + 1];
+				} else if(args[i].equals("-checkpoint")){
+					checkpointFile = Paths.get(args[i + 1]);
+				} else {
+					throw new IllegalArgumentException("Unknown option: " + args[i]);
+				}
+			}
+
+			if(targets.length > 1 && outputPrefix == null){
+				throw new IllegalArgumentException("Multiple targets need an output prefix");
+			}
+		} catch(IllegalArgumentException iae){
+			// Includes a bad target size
+			System.out.println(iae.getMessage());
+			System.out.println(USAGE);
+			return;
+		}
+
+		MasterBook masterBook = new MasterBook(targets, PriceLevelsType.TREE, false);
+		long journalOffset = 0;
+		if(checkpointFile != null){
+			BookCheckpoint checkpoint = new BookCheckpoint(checkpointFile, BookCheckpoint.DEFAULT_INTERVAL);
+			checkpoint.restore(masterBook);
+			journalOffset = checkpoint.getJournalOffset();
+			if(journalOffset == 0){
+				throw new IOException("Checkpoint " + checkpointFile + " was taken without a journal");
+			}
+		}
+
+		OutputSink[] outputs = new OutputSink[targets.length];
+		try {
+			for(int i = 0; i < targets.length; i++){
+				if(outputPrefix != null){
+					outputs[i] = OutputSink.toFile(Paths.get(outputPrefix + "." + targets[i]), FlushPolicy.DEFAULT);
+				} else {
+					outputs[i] = OutputSink.toStandardOut(FlushPolicy.DEFAULT);
+				}
+			}
+
+			long start = System.nanoTime();
+			int orders = replay(OrderJournal.read(journalFile, journalOffset), new PricingEngine(masterBook, outputs));
+			log.log(Level.INFO, "Replayed " + orders + " orders in " + (System.nanoTime() - start) / 1000000 + "ms");
+		} finally {
+			for(OutputSink output : outputs){
+				if(output != null){
+					output.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Applies every order left in a journal, closing the decoder
+	 * @param binaryDecoder Journal to read, see {@link OrderJournal#read(Path, long)}
+	 * @param pricingEngine Engine of the book to rebuild
+	 * @return Number of orders applied
+	 * @throws IOException Thrown if reading the journal or writing a result fails
+	 */
+	static int replay(BinaryOrderDecoder binaryDecoder, PricingEngine pricingEngine) throws IOException{
+		Order order = new Order();
+		int orders = 0;
+
+		try {
+			boolean more = true;
+			while(more){
+				try {
+					more = binaryDecoder.next(order);
+					if(more){
+						pricingEngine.process(order);
+						orders++;
+					}
+				} catch (ParsingException e) {
+					log.log(Level.SEVERE, "Bad journal record, skipping it", e);
+				} catch (ReduceMarketLookupException e) {
+					// Only applied orders are journaled, so this is a journal that does not go with the book
+					log.log(Level.SEVERE, "Journaled reduction of an order not in the book, skipping it", e);
+				}
+			}
+		} finally {
+			binaryDecoder.close();
+		}
+
+		return orders;
+	}
+}
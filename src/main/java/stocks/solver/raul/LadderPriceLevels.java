@@ -0,0 +1,322 @@
+package stocks.solver.raul;
+
+/**
+ * {@link PriceLevels} kept in a contiguous array of shares indexed by the tick offset from a base price.  The
+ * array grows and re-centers itself around the prices in use, and the lowest and highest occupied indices are
+ * maintained so that walking from the best price is a linear scan over the array.
+ * <p>
+ * A side whose prices come to span more than MAX_CAPACITY ticks moves its levels to {@link TreePriceLevels} and
+ * stays there, so a far off price is priced the same as by the tree, only slower.
+ * @author Raul
+ *
+ */
+public class LadderPriceLevels implements PriceLevels {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	// Largest number of ticks between the lowest and highest price the ladder will hold, 256MB of shares
+	static final int MAX_CAPACITY = 1 << 26;
+
+	private static final int NO_INDEX = -1;
+
+	private final boolean highestFirst;
+
+	private int[] shares = new int[INITIAL_CAPACITY];
+
+	// Price in ticks of the level at index 0
+	private long basePrice = 0;
+
+	// Indices of the lowest and highest price levels with shares, NO_INDEX when empty
+	private int lowestIndex = NO_INDEX;
+	private int highestIndex = NO_INDEX;
+
+	private int size = 0;
+
+	// Levels once the prices have spanned too many ticks for the ladder, null until then
+	private PriceLevels spilled;
+
+	/**
+	 * Constructor for LadderPriceLevels
+	 * @param highestFirst True to walk from the highest price (bids), false to walk from the lowest (asks)
+	 */
+	public LadderPriceLevels(boolean highestFirst){
+		this.highestFirst = highestFirst;
+	}
+
+	@Override
+	public void addShares(long price, int sharesToAdd){
+		if(spilled != null){
+			spilled.addShares(price, sharesToAdd);
+			return;
+		}
+
+		long offset = price - basePrice;
+
+		if(offset < 0 || offset >= shares.length){
+			makeRoom(price);
+			if(spilled != null){
+				spilled.addShares(price, sharesToAdd);
+				return;
+			}
+			offset = price - basePrice;
+		}
+
+		int index = (int) offset;
+
+		if(shares[index] == 0){
+			size++;
+			if(lowestIndex == NO_INDEX || index < lowestIndex){
+				lowestIndex = index;
+			}
+			if(highestIndex == NO_INDEX || index > highestIndex){
+				highestIndex = index;
+			}
+		}
+
+		shares[index] += sharesToAdd;
+	}
+
+	@Override
+	public int reduceShares(long price, int sharesToRemove){
+		if(spilled != null){
+			return spilled.reduceShares(price, sharesToRemove);
+		}
+
+		int index = (int) (price - basePrice);
+		int sharesLeft = shares[index] - sharesToRemove;
+		shares[index] = sharesLeft;
+
+		// No shares left at this level, move the occupied range inwards past any empty levels
+		if(sharesLeft == 0){
+			size--;
+			if(size == 0){
+				lowestIndex = NO_INDEX;
+				highestIndex = NO_INDEX;
+			} else if(index == lowestIndex){
+				while(shares[lowestIndex] == 0){
+					lowestIndex++;
+				}
+			} else if(index == highestIndex){
+				while(shares[highestIndex] == 0){
+					highestIndex--;
+				}
+			}
+		}
+
+		return sharesLeft;
+	}
+
+	@Override
+	public int getShares(long price){
+		if(spilled != null){
+			return spilled.getShares(price);
+		}
+
+		long offset = price - basePrice;
+
+		if(offset < 0 || offset >= shares.length){
+			return 0;
+		}
+		return shares[(int) offset];
+	}
+
+	@Override
+	public int size(){
+		if(spilled != null){
+			return spilled.size();
+		}
+		return size;
+	}
+
+	@Override
+	public long bestPrice(){
+		if(spilled != null){
+			return spilled.bestPrice();
+		}
+		if(size == 0){
+			return NO_PRICE;
+		}
+		return basePrice + (highestFirst ? highestIndex : lowestIndex);
+	}
+
+	@Override
+	public long nextWorsePrice(long price){
+		if(spilled != null){
+			return spilled.nextWorsePrice(price);
+		}
+		return highestFirst ? nextLowerPrice(price) : nextHigherPrice(price);
+	}
+
+	@Override
+	public long nextBetterPrice(long price){
+		if(spilled != null){
+			return spilled.nextBetterPrice(price);
+		}
+		return highestFirst ? nextHigherPrice(price) : nextLowerPrice(price);
+	}
+
+	/**
+	 * @return Highest price level below the given price, or NO_PRICE
+	 */
+	private long nextLowerPrice(long price){
+		if(size == 0){
+			return NO_PRICE;
+		}
+
+		long offset = Math.min(price - basePrice - 1, highestIndex);
+		for(long index = offset; index >= lowestIndex; index--){
+			if(shares[(int) index] != 0){
+				return basePrice + index;
+			}
+		}
+		return NO_PRICE;
+	}
+
+	/**
+	 * @return Lowest price level above the given price, or NO_PRICE
+	 */
+	private long nextHigherPrice(long price){
+		if(size == 0){
+			return NO_PRICE;
+		}
+
+		long offset = Math.max(price - basePrice + 1, lowestIndex);
+		for(long index = offset; index <= highestIndex; index++){
+			if(shares[(int) index] != 0){
+				return basePrice + index;
+			}
+		}
+		return NO_PRICE;
+	}
+
+	@Override
+	public void fill(int target, FillResult fillResult){
+		if(spilled != null){
+			spilled.fill(target, fillResult);
+			return;
+		}
+
+		int remainingShares = target;
+		fillResult.amount = 0;
+
+		int step = highestFirst ? -1 : 1;
+		int index = highestFirst ? highestIndex : lowestIndex;
+
+		while(true){
+			int sharesAtPriceLevel = shares[index];
+
+			if(sharesAtPriceLevel != 0){
+				long currentPriceAtLevel = basePrice + index;
+
+				if(sharesAtPriceLevel >= remainingShares){
+					fillResult.amount += remainingShares * currentPriceAtLevel;
+					fillResult.lastPriceUsed = currentPriceAtLevel;
+					fillResult.sharesUsedAtLastPrice = remainingShares;
+					return;
+				}
+
+				fillResult.amount += sharesAtPriceLevel * currentPriceAtLevel;
+				remainingShares = remainingShares - sharesAtPriceLevel;
+			}
+			index += step;
+		}
+	}
+
+	@Override
+	public void fill(int[] targets, int count, FillResult[] fillResults){
+		if(spilled != null){
+			spilled.fill(targets, count, fillResults);
+			return;
+		}
+
+		int targetIndex = 0;
+		long sharesBefore = 0;
+		long amountBefore = 0;
+
+		int step = highestFirst ? -1 : 1;
+		int index = highestFirst ? highestIndex : lowestIndex;
+
+		while(true){
+			int sharesAtPriceLevel = shares[index];
+
+			if(sharesAtPriceLevel != 0){
+				long currentPriceAtLevel = basePrice + index;
+
+				// Every target that runs out at this level is filled here, the rest carry on to the next level
+				while(targetIndex < count && sharesBefore + sharesAtPriceLevel >= targets[targetIndex]){
+					FillResult fillResult = fillResults[targetIndex];
+					int remainingShares = (int) (targets[targetIndex] - sharesBefore);
+					fillResult.amount = amountBefore + remainingShares * currentPriceAtLevel;
+					fillResult.lastPriceUsed = currentPriceAtLevel;
+					fillResult.sharesUsedAtLastPrice = remainingShares;
+					targetIndex++;
+				}
+
+				if(targetIndex == count){
+					return;
+				}
+
+				sharesBefore += sharesAtPriceLevel;
+				amountBefore += sharesAtPriceLevel * currentPriceAtLevel;
+			}
+			index += step;
+		}
+	}
+
+	/**
+	 * Re-centers the array so that it covers both the occupied levels and a new price, growing it if the span
+	 * would take more than half of the array.  Spills the levels to a tree instead if the array would have to grow
+	 * past MAX_CAPACITY.
+	 * @param price Price in ticks that needs to fit
+	 */
+	private void makeRoom(long price){
+		int capacity = shares.length;
+
+		if(size == 0){
+			basePrice = price - capacity / 2;
+			return;
+		}
+
+		long lowestPrice = Math.min(basePrice + lowestIndex, price);
+		long highestPrice = Math.max(basePrice + highestIndex, price);
+		long span = highestPrice - lowestPrice + 1;
+
+		while(span * 2 > capacity){
+			if(capacity >= MAX_CAPACITY){
+				spill();
+				return;
+			}
+			capacity = capacity * 2;
+		}
+
+		long newBasePrice = lowestPrice - (capacity - span) / 2;
+		int[] newShares = new int[capacity];
+		int occupied = highestIndex - lowestIndex + 1;
+		int newLowestIndex = (int) (basePrice + lowestIndex - newBasePrice);
+		System.arraycopy(shares, lowestIndex, newShares, newLowestIndex, occupied);
+
+		shares = newShares;
+		highestIndex = newLowestIndex + occupied - 1;
+		lowestIndex = newLowestIndex;
+		basePrice = newBasePrice;
+	}
+
+	/**
+	 * Moves every level to a tree, which takes over from the ladder for good
+	 */
+	private void spill(){
+		PriceLevels treePriceLevels = new TreePriceLevels(highestFirst);
+		for(int index = lowestIndex; index <= highestIndex; index++){
+			if(shares[index] != 0){
+				treePriceLevels.addShares(basePrice + index, shares[index]);
+			}
+		}
+
+		spilled = treePriceLevels;
+		shares = null;
+	}
+
+	boolean isSpilled() {
+		return spilled != null;
+	}
+}
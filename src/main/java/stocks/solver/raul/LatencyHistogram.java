@@ -0,0 +1,116 @@
+package stocks.solver.raul;
+
+/**
+ * Histogram of latencies in nanoseconds with log sized buckets, in the style of HdrHistogram.  Every power of two is
+ * split into SUB_BUCKETS linear buckets, so any recorded value is known to within about 3% whatever its size, from
+ * nanoseconds to hours, in a fixed array of counts.  Recording is a few shifts and an increment, and allocates
+ * nothing.
+ * @author Raul
+ *
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	// Values below SUB_BUCKETS have a bucket each, then SUB_BUCKETS for every power of two up to 2^62
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final long[] counts = new long[BUCKETS];
+
+	private long count = 0;
+	private long max = 0;
+
+	/**
+	 * Records one latency
+	 * @param nanos Latency in nanoseconds, negative values are taken as 0
+	 */
+	public void record(long nanos){
+		long value = Math.max(nanos, 0);
+		counts[bucket(value)]++;
+		count++;
+		if(value > max){
+			max = value;
+		}
+	}
+
+	/**
+	 * @return Bucket holding a value
+	 */
+	static int bucket(long value){
+		if(value < SUB_BUCKETS){
+			return (int) value;
+		}
+
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return ((shift + 1) << SUB_BUCKET_BITS) + (int) (value >>> shift) - SUB_BUCKETS;
+	}
+
+	/**
+	 * @return Highest value that falls in a bucket
+	 */
+	static long highestValue(int bucket){
+		if(bucket < SUB_BUCKETS){
+			return bucket;
+		}
+
+		int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+		long lowest = (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+
+	/**
+	 * @param percentile Percentile to find, from 0 to 100
+	 * @return Latency in nanoseconds that the given percentage of recorded latencies are at or below, to within the
+	 * precision of the buckets and never more than the max, 0 if nothing has been recorded
+	 */
+	public long getValueAtPercentile(double percentile){
+		if(count == 0){
+			return 0;
+		}
+
+		// Rank of the value, at least the first
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+
+		for(int bucket = 0; bucket < BUCKETS; bucket++){
+			seen += counts[bucket];
+			if(seen >= rank){
+				return Math.min(highestValue(bucket), max);
+			}
+		}
+
+		return max;
+	}
+
+	/**
+	 * Adds all the latencies recorded in another histogram to this one
+	 * @param other Histogram to add
+	 */
+	public void add(LatencyHistogram other){
+		for(int bucket = 0; bucket < BUCKETS; bucket++){
+			counts[bucket] += other.counts[bucket];
+		}
+		count += other.count;
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * Forgets every recorded latency
+	 */
+	public void reset(){
+		for(int bucket = 0; bucket < BUCKETS; bucket++){
+			counts[bucket] = 0;
+		}
+		count = 0;
+		max = 0;
+	}
+
+	long getCount() {
+		return count;
+	}
+
+	long getMax() {
+		return max;
+	}
+}
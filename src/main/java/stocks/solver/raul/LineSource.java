@@ -0,0 +1,32 @@
+package stocks.solver.raul;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Source of raw input lines for {@link OrderDecoder}.  A line is a region of a byte buffer that is only valid
+ * until the next call to {@link #nextLine()}.
+ * @author Raul
+ *
+ */
+public interface LineSource extends Closeable {
+
+	/**
+	 * Advance to the next line of input
+	 * @return false if there is no more input
+	 * @throws IOException
+	 */
+	boolean nextLine() throws IOException;
+
+	/**
+	 * @return Buffer holding the current line
+	 */
+	ByteBuffer getBuffer();
+
+	int getLineStart();
+
+	int getLineEnd();
+
+	int getLineLength();
+}
@@ -0,0 +1,183 @@
+package stocks.solver.raul;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads lines from a file by memory mapping it in sliding windows, lines are handed out as regions of the mapped
+ * buffer so the bytes never get copied into the heap.  Line terminators are handled like {@link ByteLineReader}.
+ * @author Raul
+ *
+ */
+public class MappedFileLineReader implements LineSource {
+
+	private static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+	private final FileChannel fileChannel;
+	private final long fileSize;
+
+	private int windowSize;
+	private MappedByteBuffer window;
+
+	// File offset of the first byte of the current window
+	private long windowOffset = 0;
+
+	// Valid bytes in the window are between position and limit
+	private int position = 0;
+	private int limit = 0;
+
+	private int lineStart = 0;
+	private int lineEnd = 0;
+
+	private boolean skipLineFeed = false;
+
+	/**
+	 * Constructor for MappedFileLineReader
+	 * @param path File to read lines from
+	 * @throws IOException
+	 */
+	public MappedFileLineReader(Path path) throws IOException{
+		this(path, DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * Constructor for MappedFileLineReader
+	 * @param path File to read lines from
+	 * @param windowSize Number of bytes mapped at a time, will grow if a single line does not fit
+	 * @throws IOException
+	 */
+	public MappedFileLineReader(Path path, int windowSize) throws IOException{
+		this(path, windowSize, 0);
+	}
+
+	/**
+	 * Opens a file part way through, to carry on reading where an earlier reader left off
+	 * @param path File to read lines from
+	 * @param startOffset Offset of the first line to read, as given by {@link #getOffset()}
+	 * @return Reader starting at the offset
+	 * @throws IOException
+	 */
+	public static MappedFileLineReader resumeAt(Path path, long startOffset) throws IOException{
+		return new MappedFileLineReader(path, DEFAULT_WINDOW_SIZE, startOffset);
+	}
+
+	private MappedFileLineReader(Path path, int windowSize, long startOffset) throws IOException{
+		this.fileChannel = FileChannel.open(path, StandardOpenOption.READ);
+		this.fileSize = fileChannel.size();
+		this.windowSize = windowSize;
+
+		if(startOffset > fileSize){
+			throw new IOException("Offset " + startOffset + " is past the end of " + path);
+		}
+
+		// Window starts on the byte before, a carriage return there means a line feed next belongs to it
+		if(startOffset > 0){
+			map(startOffset - 1);
+			skipLineFeed = window.get(0) == '\r';
+			position = 1;
+		} else {
+			map(0);
+		}
+	}
+
+	@Override
+	public boolean nextLine() throws IOException{
+		int scan = position;
+
+		while(true){
+			while(scan < limit){
+				byte b = window.get(scan);
+
+				if(skipLineFeed){
+					skipLineFeed = false;
+					if(b == '\n'){
+						position++;
+						scan++;
+						continue;
+					}
+				}
+
+				if(b == '\n' || b == '\r'){
+					lineStart = position;
+					lineEnd = scan;
+					position = scan + 1;
+					skipLineFeed = (b == '\r');
+					return true;
+				}
+				scan++;
+			}
+
+			if(windowOffset + limit >= fileSize){
+				// Last line of the file may not have a terminator
+				if(position < limit){
+					lineStart = position;
+					lineEnd = limit;
+					position = limit;
+					return true;
+				}
+				return false;
+			}
+
+			// Current line runs past the window, slide the window up to the start of the line
+			int pending = limit - position;
+			if(pending == windowSize){
+				windowSize = windowSize * 2;
+			}
+			map(windowOffset + position);
+			scan = pending;
+		}
+	}
+
+	/**
+	 * Maps the next window of the file
+	 * @param offset File offset the window starts at
+	 * @throws IOException
+	 */
+	private void map(long offset) throws IOException{
+		long size = Math.min(windowSize, fileSize - offset);
+
+		window = fileChannel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+		windowOffset = offset;
+		position = 0;
+		limit = (int) size;
+	}
+
+	/**
+	 * @return Offset in the file just past the current line and its terminator, where reading would start again
+	 */
+	public long getOffset() {
+		return windowOffset + position;
+	}
+
+	@Override
+	public ByteBuffer getBuffer() {
+		return window;
+	}
+
+	@Override
+	public int getLineStart() {
+		return lineStart;
+	}
+
+	@Override
+	public int getLineEnd() {
+		return lineEnd;
+	}
+
+	@Override
+	public int getLineLength() {
+		return lineEnd - lineStart;
+	}
+
+	/**
+	 * Closes the file, the last mapped window is released once it is garbage collected
+	 */
+	@Override
+	public void close() throws IOException {
+		fileChannel.close();
+	}
+}
@@ -1,9 +1,8 @@
 package stocks.solver.raul;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.TreeMap;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 /**
  * Class containing all the needed data structures to represent the market and functions to maintain them
@@ -11,43 +10,92 @@ import java.util.TreeMap;
  *
  */
 public class MasterBook {
-	// Maps represent all current bids or asks in the market
-	private Map<String, Order> liveMarketBids = new HashMap<String, Order>();
-	private Map<String, Order> liveMarketAsks = new HashMap<String, Order>();
-	
-	// Maps to maintain the market prices and the number of shares total and used (in latest calculation) at each price
-	// Want bids sorted from highest to lowest and asks sorted from lowest to highest
-	private Map<Double, PriceLevelShares> bidPriceLevels = new TreeMap<Double, PriceLevelShares>(Collections.reverseOrder());
-	private Map<Double, PriceLevelShares> askPriceLevels = new TreeMap<Double, PriceLevelShares>();
-
-	// Maps to maintain which price levels are used for profit/cost calculation.  Primarily used to determine whether or not a 
-	// profit/cost calculation is really needed after a reduce order.
-	private Map<Double, PriceLevelShares> bidPriceLevelsUsed = new HashMap<Double, PriceLevelShares>();
-	private Map<Double, PriceLevelShares> askPriceLevelsUsed = new HashMap<Double, PriceLevelShares>();
-	
-	private double lowestBidPriceUsed = 0.0;
-	private double highestAskPriceUsed = Double.MAX_VALUE;
+	// Price levels on a side for its first growth event, see FlightEvents
+	static final int FIRST_PRICE_LEVELS_GROWTH = 64;
+
+	// All current bids and asks in the market
+	private OrderIndex liveOrders = new OrderIndex();
 	
+	// Market prices and the number of shares total at each price
+	// Want bids walked from highest to lowest and asks walked from lowest to highest
+	private PriceLevels bidPriceLevels;
+	private PriceLevels askPriceLevels;
+
 	private int totalBidSize = 0;
 	private int totalAskSize = 0;
+
+	// Orders applied by side and action, and reduces of orders not in the market
+	private long bidAdds = 0;
+	private long askAdds = 0;
+	private long bidReduces = 0;
+	private long askReduces = 0;
+	private long unknownReduces = 0;
+
+	// Price levels a side has to pass for its next growth event, doubled each time it is passed
+	private int bidPriceLevelsGrowth = FIRST_PRICE_LEVELS_GROWTH;
+	private int askPriceLevelsGrowth = FIRST_PRICE_LEVELS_GROWTH;
 	
-	private int target = -1;
+	// Targets being priced against this book, each keeps its own state for deciding on recalculations
+	private PricingTarget[] pricingTargets;
 	
 	/**
 	 * Constructor for MasterBook
 	 * @param target Number of target shares
 	 */
 	public MasterBook(int target){
-		this.setTarget(target);
+		this(target, PriceLevelsType.TREE);
+	}
+
+	/**
+	 * Constructor for MasterBook
+	 * @param target Number of target shares
+	 * @param priceLevelsType Implementation to use for the bid and ask price levels
+	 */
+	public MasterBook(int target, PriceLevelsType priceLevelsType){
+		this(target, priceLevelsType, false);
+	}
+
+	/**
+	 * Constructor for MasterBook
+	 * @param target Number of target shares
+	 * @param priceLevelsType Implementation to use for the bid and ask price levels
+	 * @param incremental True to keep the profit and cost fills up to date on every order instead of walking the
+	 * price levels for each calculation
+	 */
+	public MasterBook(int target, PriceLevelsType priceLevelsType, boolean incremental){
+		this(new int[] { target }, priceLevelsType, incremental);
+	}
+
+	/**
+	 * Constructor for MasterBook priced against several targets at once
+	 * @param targets Numbers of target shares
+	 * @param priceLevelsType Implementation to use for the bid and ask price levels
+	 * @param incremental True to keep the profit and cost fills up to date on every order instead of walking the
+	 * price levels for each calculation
+	 */
+	public MasterBook(int[] targets, PriceLevelsType priceLevelsType, boolean incremental){
+		this.bidPriceLevels = priceLevelsType.create(OrderSide.B);
+		this.askPriceLevels = priceLevelsType.create(OrderSide.S);
+		this.pricingTargets = new PricingTarget[targets.length];
+
+		for(int i = 0; i < targets.length; i++){
+			pricingTargets[i] = new PricingTarget(targets[i], i);
+
+			// Each target keeps its own fill, fills for other targets are passed down to the next wrapper
+			if(incremental){
+				this.bidPriceLevels = new IncrementalPriceLevels(bidPriceLevels, true, targets[i]);
+				this.askPriceLevels = new IncrementalPriceLevels(askPriceLevels, false, targets[i]);
+			}
+		}
 	}
 	
 	/**
-	 * Function will update bid or ask priceLevels map based on a market order to add shares
+	 * Function will update bid or ask priceLevels based on a market order to add shares
 	 * @param order Incoming order on which to operate.
 	 */
 	private void updatePriceLevelsViaAdd(Order order){
 
-		Map<Double, PriceLevelShares> priceLevels = null;
+		PriceLevels priceLevels = null;
 		
 		if(order.getSide().equals(OrderSide.B)){
 			priceLevels = bidPriceLevels;
@@ -55,36 +103,45 @@ public class MasterBook {
 			priceLevels = askPriceLevels;
 		}
 
-		PriceLevelShares priceLevelShares = priceLevels.get(order.getPrice());
-		
-		if(priceLevelShares != null){
-			priceLevelShares.addShares(order.getSize());
-		} else{
-			priceLevelShares = new PriceLevelShares();
-			priceLevelShares.addShares(order.getSize());
-			priceLevels.put(order.getPrice(), priceLevelShares);	
+		priceLevels.addShares(order.getPrice(), order.getSize());
+	}
+
+	/**
+	 * Records a side of the book reaching a new power of two price levels, to show the book growing in a flight
+	 * recording
+	 * @param order Add order just applied
+	 */
+	private void checkPriceLevelsGrowth(Order order){
+		if(order.getSide().equals(OrderSide.B)){
+			if(bidPriceLevels.size() >= bidPriceLevelsGrowth){
+				while(bidPriceLevels.size() >= bidPriceLevelsGrowth){
+					bidPriceLevelsGrowth *= 2;
+				}
+				FlightEvents.priceLevelsGrew(this, order);
+			}
+		} else if(order.getSide().equals(OrderSide.S)){
+			if(askPriceLevels.size() >= askPriceLevelsGrowth){
+				while(askPriceLevels.size() >= askPriceLevelsGrowth){
+					askPriceLevelsGrowth *= 2;
+				}
+				FlightEvents.priceLevelsGrew(this, order);
+			}
 		}
 	}
 	
 	/**
-	 * Will maintain liveMarketMap and priceLevels map
+	 * Will maintain liveOrders and priceLevels
 	 * @param orderRequest Order on which to operate
-	 * @param liveMarketMap Bids or asks live market map
-	 * @param priceLevelSharesMap Bid or ask price levels map
+	 * @param slot Slot in liveOrders of the order to reduce
+	 * @param priceLevels Bid or ask price levels
+	 * @return Shares left at the price level of the reduced order, 0 if the level was removed
 	 */
-	private void processReduction(Order orderRequest, Map<String, Order> liveMarketMap, Map<Double, PriceLevelShares> priceLevelSharesMap){	
-		Order orderToReduce = liveMarketMap.get(orderRequest.getOrderId());
-		
-		int shareReduction;
-		
-		if(orderToReduce.getSize() <= orderRequest.getSize()){
-			shareReduction = orderToReduce.getSize();
-			liveMarketMap.remove(orderRequest.getOrderId());
-		} else {
-			shareReduction = orderRequest.getSize();			
-		}
+	private int processReduction(Order orderRequest, int slot, PriceLevels priceLevels){	
+		// Price has to be read before the reduction, which may remove the order
+		long price = liveOrders.getPrice(slot);
+		int shareReduction = Math.min(liveOrders.getSize(slot), orderRequest.getSize());
 
-		orderToReduce.reduceOrder(shareReduction);
+		liveOrders.reduce(slot, shareReduction);
 
 		if(orderRequest.getSide().equals(OrderSide.B)){
 			setTotalBidSize(totalBidSize - shareReduction);			
@@ -92,164 +149,154 @@ public class MasterBook {
 			setTotalAskSize(totalAskSize - shareReduction);
 		}
 		
-		PriceLevelShares priceLevelShares = priceLevelSharesMap.get(orderToReduce.getPrice());
-		priceLevelShares.reduceShares(shareReduction);
-		
-		// No shares left at this PriceLevelShares, remove it
-		if(priceLevelShares.totalShares == 0){
-			priceLevelSharesMap.remove(orderToReduce.getPrice());
-		}
+		return priceLevels.reduceShares(price, shareReduction);
 	}
 	
 	/**
-	 * Function to maintain the data structures for the market.
+	 * Function to maintain the data structures for the market.  Whether a profit or cost calculation needs to be
+	 * done is left in the UpdateBookResult of each {@link PricingTarget}.  The side of a reduce order is set from
+	 * the order it reduces.
 	 * @param orderRequest Incoming order on which to operate
-	 * @return UpdateBookResult Object to let caller know whether a profit or cost calculation needs to be done.
+	 * @return UpdateBookResult of the first target, to let caller know whether a profit or cost calculation needs to be done.
+	 * @throws ReduceMarketLookupException Thrown if a reduce order is for an order not in the market
 	 */
-	public UpdateBookResult updateBookStructures(Order orderRequest){
+	public UpdateBookResult updateBookStructures(Order orderRequest) throws ReduceMarketLookupException{
 	
-		UpdateBookResult updateBookResult = new UpdateBookResult();
+		for(PricingTarget pricingTarget : pricingTargets){
+			pricingTarget.getUpdateBookResult().reset();
+		}
 		
 		if(orderRequest.getOrderAction().equals(OrderAction.ADD)){
 			updatePriceLevelsViaAdd(orderRequest);
+			liveOrders.put(orderRequest);
+			checkPriceLevelsGrowth(orderRequest);
 			
 			if(orderRequest.getSide().equals(OrderSide.B)){
-				liveMarketBids.put(orderRequest.getOrderId(), orderRequest);
 				
+				bidAdds++;
 				int priorBidSize = totalBidSize;
 				setTotalBidSize(totalBidSize + orderRequest.getSize());
 
-				//  Latest order's price is better than the lowest bid price used, there is more profit to be made
-				if(orderRequest.getPrice() > lowestBidPriceUsed){
-					updateBookResult.setRecalculateProfit(true);
-				}			
-								
-				// Shares added to market put us at or over target where before we were below target, must recalculate profit
-				if(priorBidSize < target && totalBidSize >= target){
-					updateBookResult.setRecalculateProfit(true);
+				for(PricingTarget pricingTarget : pricingTargets){
+					pricingTarget.checkBidAdd(orderRequest.getPrice(), priorBidSize, totalBidSize);
 				}
 			} else if(orderRequest.getSide().equals(OrderSide.S)){
-				liveMarketAsks.put(orderRequest.getOrderId(), orderRequest);
-				
+				askAdds++;
 				int priorAskSize = totalAskSize;
 				setTotalAskSize(totalAskSize + orderRequest.getSize());
 
-				//  Latest order's price is better than the highest ask price used, there is money to be saved
-				if(orderRequest.getPrice() < highestAskPriceUsed){
-					updateBookResult.setRecalculateCost(true);	
-				}
-				
-				// Shares added to market put us at or over target where before we were below target, must recalculate cost
-				if(priorAskSize < target && totalAskSize >= target){
-					updateBookResult.setRecalculateCost(true);
+				for(PricingTarget pricingTarget : pricingTargets){
+					pricingTarget.checkAskAdd(orderRequest.getPrice(), priorAskSize, totalAskSize);
 				}
 			}
 		} else if(orderRequest.getOrderAction().equals(OrderAction.REDUCE)){
 			// Must ensure the order to reduce actually exists in the market!
-			if(liveMarketBids.containsKey(orderRequest.getOrderId())){
-				Order orderToReduce = liveMarketBids.get(orderRequest.getOrderId());
-				processReduction(orderRequest, liveMarketBids, bidPriceLevels);
-
-				// Reduction in market order *may* cause a recalculation in profit to occur
-				if(orderToReduce.getPrice() >= lowestBidPriceUsed){				
-					if(orderToReduce.getPrice() == lowestBidPriceUsed){
-						PriceLevelShares priceLevelSharesAtOrder = bidPriceLevelsUsed.get(orderToReduce.getPrice());
-						// Reduction order will cause lowest bid price level used to not have enough shares between it and
-						// all the other price levels above to fulfill the target, must recalculate profit.  Otherwise
-						// no recalculation needed.
-						if(priceLevelSharesAtOrder.totalShares < priceLevelSharesAtOrder.sharesUsedInLastCalc){
-							updateBookResult.setRecalculateProfit(true);
-						}						
-					} else{
-						updateBookResult.setRecalculateProfit(true);						
-					}
-				}
-			} else if(liveMarketAsks.containsKey(orderRequest.getOrderId())){
-				Order orderToReduce = liveMarketAsks.get(orderRequest.getOrderId());
-				processReduction(orderRequest, liveMarketAsks, askPriceLevels);
-
-				// Reduction in market order *may* cause a recalculation in cost to occur
-				if(orderToReduce.getPrice() <= highestAskPriceUsed){					
-					if(orderToReduce.getPrice() ==  highestAskPriceUsed){
-						PriceLevelShares priceLevelAtOrder = askPriceLevelsUsed.get(orderToReduce.getPrice());
-						// Reduction order will cause highest ask price level used to not have enough shares between it and
-						// all the other price levels below it to fulfill the target, must recalculate cost.  Otherwise
-						// no recalculation needed.
-						if(priceLevelAtOrder.totalShares < priceLevelAtOrder.sharesUsedInLastCalc){
-							updateBookResult.setRecalculateCost(true);
-						}						
-					} else{
-						updateBookResult.setRecalculateCost(true);						
-					}					
-				}			
+			int slot = liveOrders.find(orderRequest);
+			if(slot == OrderIndex.NOT_FOUND){
+				unknownReduces++;
+				throw new ReduceMarketLookupException("Cannot find order to reduce: " + orderRequest.toString());
 			}
-		}
-		
-		return(updateBookResult);
-	}
-
-	Map<String, Order> getLiveMarketBids() {
-		return liveMarketBids;
-	}
-
-	void setLiveMarketBids(Map<String, Order> liveMarketBids) {
-		this.liveMarketBids = liveMarketBids;
-	}
 
-	Map<String, Order> getLiveMarketAsks() {
-		return liveMarketAsks;
-	}
-
-	void setLiveMarketAsks(Map<String, Order> liveMarketAsks) {
-		this.liveMarketAsks = liveMarketAsks;
-	}
+			long price = liveOrders.getPrice(slot);
+			orderRequest.setSide(liveOrders.getSide(slot));
 
-	Map<Double, PriceLevelShares> getBidPriceLevels() {
-		return bidPriceLevels;
-	}
+			if(orderRequest.getSide().equals(OrderSide.B)){
+				bidReduces++;
+				int sharesLeftAtPrice = processReduction(orderRequest, slot, bidPriceLevels);
 
-	void setBidPriceLevels(Map<Double, PriceLevelShares> bidPriceLevels) {
-		this.bidPriceLevels = bidPriceLevels;
-	}
+				for(PricingTarget pricingTarget : pricingTargets){
+					pricingTarget.checkBidReduce(price, sharesLeftAtPrice);
+				}
+			} else if(orderRequest.getSide().equals(OrderSide.S)){
+				askReduces++;
+				int sharesLeftAtPrice = processReduction(orderRequest, slot, askPriceLevels);
 
-	Map<Double, PriceLevelShares> getAskPriceLevels() {
-		return askPriceLevels;
+				for(PricingTarget pricingTarget : pricingTargets){
+					pricingTarget.checkAskReduce(price, sharesLeftAtPrice);
+				}
+			}
+		}
+		
+		return(pricingTargets[0].getUpdateBookResult());
 	}
 
-	void setAskPriceLevels(Map<Double, PriceLevelShares> askPriceLevels) {
-		this.askPriceLevels = askPriceLevels;
-	}
+	/**
+	 * Writes the state of the book, for a {@link BookCheckpoint}.  Price levels and totals are not written, they
+	 * are the sums of the live orders.
+	 * @param out Where to write
+	 * @throws IOException Thrown if writing fails
+	 */
+	void writeState(DataOutput out) throws IOException{
+		out.writeInt(pricingTargets.length);
+		for(PricingTarget pricingTarget : pricingTargets){
+			out.writeInt(pricingTarget.getTarget());
+			pricingTarget.writeState(out);
+		}
 
-	Map<Double, PriceLevelShares> getBidPriceLevelsUsed() {
-		return bidPriceLevelsUsed;
-	}
+		out.writeInt(liveOrders.size());
+		for(int slot = 0; slot < liveOrders.capacity(); slot++){
+			if(!liveOrders.isLive(slot)){
+				continue;
+			}
 
-	void setBidPriceLevelsUsed(Map<Double, PriceLevelShares> bidPriceLevelsUsed) {
-		this.bidPriceLevelsUsed = bidPriceLevelsUsed;
+			out.writeLong(liveOrders.getKey(slot));
+			if(liveOrders.getKey(slot) < 0){
+				out.writeUTF(liveOrders.getLongId(slot));
+			}
+			out.writeBoolean(liveOrders.getSide(slot).equals(OrderSide.B));
+			out.writeLong(liveOrders.getPrice(slot));
+			out.writeInt(liveOrders.getSize(slot));
+		}
 	}
 
-	Map<Double, PriceLevelShares> getAskPriceLevelsUsed() {
-		return askPriceLevelsUsed;
-	}
+	/**
+	 * Reads back the state written by writeState into a new, empty book with the same targets
+	 * @param in Where to read from
+	 * @throws IOException Thrown if reading fails or the state is for other targets
+	 */
+	void readState(DataInput in) throws IOException{
+		int targetCount = in.readInt();
+		if(targetCount != pricingTargets.length){
+			throw new IOException("Book state is for " + targetCount + " targets, not " + pricingTargets.length);
+		}
 
-	void setAskPriceLevelsUsed(Map<Double, PriceLevelShares> askPriceLevelsUsed) {
-		this.askPriceLevelsUsed = askPriceLevelsUsed;
-	}
+		for(PricingTarget pricingTarget : pricingTargets){
+			int target = in.readInt();
+			if(target != pricingTarget.getTarget()){
+				throw new IOException("Book state is for target " + target + ", not " + pricingTarget.getTarget());
+			}
+			pricingTarget.readState(in);
+		}
 
-	double getLowestBidPriceUsed() {
-		return lowestBidPriceUsed;
+		int orderCount = in.readInt();
+		for(int i = 0; i < orderCount; i++){
+			long key = in.readLong();
+			String longId = key < 0 ? in.readUTF() : null;
+			OrderSide side = in.readBoolean() ? OrderSide.B : OrderSide.S;
+			long price = in.readLong();
+			int size = in.readInt();
+
+			liveOrders.put(key, longId, side, price, size);
+			if(side.equals(OrderSide.B)){
+				bidPriceLevels.addShares(price, size);
+				totalBidSize += size;
+			} else {
+				askPriceLevels.addShares(price, size);
+				totalAskSize += size;
+			}
+		}
 	}
 
-	void setLowestBidPriceUsed(double lowestBidPriceUsed) {
-		this.lowestBidPriceUsed = lowestBidPriceUsed;
+	OrderIndex getLiveOrders() {
+		return liveOrders;
 	}
 
-	double getHighestAskPriceUsed() {
-		return highestAskPriceUsed;
+	PriceLevels getBidPriceLevels() {
+		return bidPriceLevels;
 	}
 
-	void setHighestAskPriceUsed(double highestAskPriceUsed) {
-		this.highestAskPriceUsed = highestAskPriceUsed;
+	PriceLevels getAskPriceLevels() {
+		return askPriceLevels;
 	}
 
 	int getTotalBidSize() {
@@ -268,14 +315,27 @@ public class MasterBook {
 		this.totalAskSize = totalAskSize;
 	}
 
+	long getBidAdds() {
+		return bidAdds;
+	}
 
+	long getAskAdds() {
+		return askAdds;
+	}
 
-	int getTarget() {
-		return target;
+	long getBidReduces() {
+		return bidReduces;
 	}
 
-	void setTarget(int target) {
-		this.target = target;
+	long getAskReduces() {
+		return askReduces;
+	}
+
+	long getUnknownReduces() {
+		return unknownReduces;
+	}
+
+	PricingTarget[] getPricingTargets() {
+		return pricingTargets;
 	}
-	
 }
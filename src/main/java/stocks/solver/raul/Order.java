@@ -10,10 +10,24 @@ public class Order {
 	private long timestamp;
 	private OrderAction orderAction;
 	private String orderId;
+	// Key of the order id in an OrderIndex, the id String is only built on demand for ids packed into the key
+	private long orderKey;
 	private OrderSide side;
-	private double price;
-	private Integer size;
-	
+	// Price in ticks, see Prices
+	private long price;
+	private int size;
+	// Position of the order in the input, only set when orders are split between threads
+	private long sequence;
+	// Instrument the order is for, interned by a SymbolTable, null for input without a symbol column
+	private String symbol;
+
+	/**
+	 * Constructor for an empty Order, fields are filled in by {@link OrderDecoder}, which may reuse the same Order
+	 * for every line
+	 */
+	Order(){
+	}
+
 	/**
 	 * Constructor for Order
 	 * @param parts Input needed to construct Order
@@ -40,7 +54,7 @@ public class Order {
 			if(parts[1].equals("A")){
 				this.setOrderAction(OrderAction.ADD);
 				this.setSide(OrderSide.getOrderSide(parts[3]));
-				this.setPrice(Double.valueOf(parts[4]));
+				this.setPrice(Prices.parseTicks(parts[4]));
 				this.setSize(Integer.valueOf(parts[5]));
 			} else if(parts[1].equals("R")){
 				this.setOrderAction(OrderAction.REDUCE);
@@ -62,12 +76,19 @@ public class Order {
 		stringBuilder.append("\n")
 					 .append("timestamp: ")
 					 .append(timestamp)
-					 .append("\n")
-					 .append("orderAction: ")
+					 .append("\n");
+		
+		if(symbol != null){
+			stringBuilder.append("symbol: ")
+						 .append(symbol)
+						 .append("\n");
+		}
+		
+		stringBuilder.append("orderAction: ")
 					 .append(orderAction)
 					 .append("\n")
 					 .append("orderId: ")
-					 .append(orderId)
+					 .append(getOrderId())
 					 .append("\n")
 					 .append("side: ")
 					 .append(side);
@@ -75,7 +96,7 @@ public class Order {
 		if(this.orderAction.equals(OrderAction.ADD)){
 			 stringBuilder.append("\n")
 			 			  .append("price: ")
-						  .append(price)
+						  .append(Prices.format(price))
 						  .append("\n")
 						  .append("size: ")
 						  .append(size);
@@ -102,7 +123,23 @@ public class Order {
 		return sb.toString();
 	}
 	
-	public void reduceOrder(Integer amount){
+	/**
+	 * Copies every field of another order into this one
+	 * @param order Order to copy
+	 */
+	void copyFrom(Order order){
+		this.timestamp = order.timestamp;
+		this.orderAction = order.orderAction;
+		this.orderId = order.orderId;
+		this.orderKey = order.orderKey;
+		this.side = order.side;
+		this.price = order.price;
+		this.size = order.size;
+		this.sequence = order.sequence;
+		this.symbol = order.symbol;
+	}
+	
+	public void reduceOrder(int amount){
 		setSize(getSize() - amount);
 	}
 
@@ -123,11 +160,28 @@ public class Order {
 	}
 
 	String getOrderId() {
+		if(orderId == null){
+			orderId = OrderIndex.unpack(orderKey);
+		}
 		return orderId;
 	}
 
 	void setOrderId(String orderId) {
 		this.orderId = orderId;
+		this.orderKey = OrderIndex.key(orderId);
+	}
+
+	long getOrderKey() {
+		return orderKey;
+	}
+
+	/**
+	 * Sets the order id by its key alone, for ids packed into the key
+	 * @param orderKey Key of the order id, see {@link OrderIndex#key(String)}
+	 */
+	void setOrderKey(long orderKey) {
+		this.orderId = null;
+		this.orderKey = orderKey;
 	}
 
 	OrderSide getSide() {
@@ -138,19 +192,35 @@ public class Order {
 		this.side = side;
 	}
 
-	double getPrice() {
+	long getPrice() {
 		return price;
 	}
 
-	void setPrice(double price) {
+	void setPrice(long price) {
 		this.price = price;
 	}
 
-	Integer getSize() {
+	int getSize() {
 		return size;
 	}
 
-	void setSize(Integer size) {
+	void setSize(int size) {
 		this.size = size;
 	}
+
+	long getSequence() {
+		return sequence;
+	}
+
+	void setSequence(long sequence) {
+		this.sequence = sequence;
+	}
+
+	String getSymbol() {
+		return symbol;
+	}
+
+	void setSymbol(String symbol) {
+		this.symbol = symbol;
+	}
 }
@@ -0,0 +1,348 @@
+package stocks.solver.raul;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Decodes market orders straight from the raw bytes of an input line.  Well formed lines are decoded in a single
+ * pass without splitting the line or building intermediate Strings, anything unusual falls back to the
+ * {@link Order#Order(String[])} constructor so that bad input is reported exactly as before.
+ * <p>
+ * Given a {@link SymbolTable} the decoder expects the extended input format, with the instrument symbol between the
+ * timestamp and the order action.
+ * @author Raul
+ *
+ */
+public class OrderDecoder {
+
+	// Largest number of digits that always fits, without overflow, into a long timestamp and an int size
+	private static final int MAX_TIMESTAMP_DIGITS = 18;
+	private static final int MAX_SIZE_DIGITS = 9;
+
+	// Prices with up to 15 digits always fit in a long once scaled to ticks
+	private static final int MAX_PRICE_DIGITS = 15;
+
+	// Multiplier to get from a price mantissa to ticks, indexed by the number of fraction digits
+	private static final long[] TICK_MULTIPLIERS = { 100, 10, 1 };
+
+	private static final long NOT_A_NUMBER = -1;
+
+	// Order ids of up to this many ASCII characters are packed into their key without building a String
+	private static final int MAX_PACKED_ID_LENGTH = 8;
+
+	private final Charset charset = Charset.defaultCharset();
+
+	// Symbols of the extended input format, null for input without a symbol column
+	private final SymbolTable symbolTable;
+
+	private byte[] lineBytes = new byte[256];
+	private char[] orderIdChars = new char[32];
+
+	// Position of the next byte to decode in the current line
+	private int cursor;
+
+	// Scale of the last price mantissa read, IE number of digits after the decimal point
+	private int priceScale;
+
+	/**
+	 * Constructor for a decoder of input without a symbol column
+	 */
+	public OrderDecoder(){
+		this(null);
+	}
+
+	/**
+	 * Constructor for OrderDecoder
+	 * @param symbolTable Table to intern symbols with when the input has a symbol column, null if it has none
+	 */
+	public OrderDecoder(SymbolTable symbolTable){
+		this.symbolTable = symbolTable;
+	}
+
+	/**
+	 * Decode a market order from a line of input
+	 * @param buffer Buffer holding the line
+	 * @param start Index of the first byte of the line
+	 * @param end Index just past the last byte of the line
+	 * @return Decoded order
+	 * @throws ParsingException Thrown on bad input
+	 * @throws NumberFormatException Thrown on a bad timestamp
+	 */
+	public Order decode(ByteBuffer buffer, int start, int end) throws ParsingException{
+		return decode(buffer, start, end, new Order());
+	}
+
+	/**
+	 * Decode a market order from a line of input into an existing order, which allocates nothing for a well formed
+	 * line with a short order id
+	 * @param buffer Buffer holding the line
+	 * @param start Index of the first byte of the line
+	 * @param end Index just past the last byte of the line
+	 * @param reusableOrder Order to decode into, its previous contents are overwritten
+	 * @return Decoded order, the given order unless the line had to be decoded the slow way
+	 * @throws ParsingException Thrown on bad input
+	 * @throws NumberFormatException Thrown on a bad timestamp
+	 */
+	public Order decode(ByteBuffer buffer, int start, int end, Order reusableOrder) throws ParsingException{
+		Order order = decodeFast(buffer, start, end, reusableOrder);
+
+		if(order == null){
+			order = decodeSlow(buffer, start, end);
+		}
+
+		return order;
+	}
+
+	/**
+	 * Single pass decoding of a well formed line
+	 * @return Decoded order, or null if the line is not in the expected form
+	 */
+	private Order decodeFast(ByteBuffer buffer, int start, int end, Order order){
+		cursor = start;
+
+		long timestamp = readDigits(buffer, end, MAX_TIMESTAMP_DIGITS);
+		if(timestamp == NOT_A_NUMBER || !skipWhitespace(buffer, end)){
+			return null;
+		}
+
+		if(symbolTable != null){
+			if(!readSymbol(buffer, end, order) || !skipWhitespace(buffer, end)){
+				return null;
+			}
+		}
+
+		byte action = buffer.get(cursor++);
+		if((action != 'A' && action != 'R') || !skipWhitespace(buffer, end)){
+			return null;
+		}
+
+		if(!readOrderId(buffer, end, order) || !skipWhitespace(buffer, end)){
+			return null;
+		}
+
+		order.setTimestamp(timestamp);
+
+		if(action == 'A'){
+			byte side = buffer.get(cursor++);
+			if((side != 'B' && side != 'S') || !skipWhitespace(buffer, end)){
+				return null;
+			}
+
+			long priceMantissa = readPriceMantissa(buffer, end);
+			if(priceMantissa == NOT_A_NUMBER || !skipWhitespace(buffer, end)){
+				return null;
+			}
+
+			long size = readDigits(buffer, end, MAX_SIZE_DIGITS);
+			if(size == NOT_A_NUMBER){
+				return null;
+			}
+
+			order.setOrderAction(OrderAction.ADD);
+			order.setSide(side == 'B' ? OrderSide.B : OrderSide.S);
+			order.setPrice(priceMantissa * TICK_MULTIPLIERS[priceScale]);
+			order.setSize((int) size);
+		} else {
+			long size = readDigits(buffer, end, MAX_SIZE_DIGITS);
+			if(size == NOT_A_NUMBER){
+				return null;
+			}
+
+			order.setOrderAction(OrderAction.REDUCE);
+			order.setSide(null);
+			order.setPrice(0);
+			order.setSize((int) size);
+		}
+
+		// Only trailing whitespace may follow the last field
+		while(cursor < end){
+			if(!isWhitespace(buffer.get(cursor++))){
+				return null;
+			}
+		}
+
+		return order;
+	}
+
+	/**
+	 * Decodes the line the same way it always has been, used for anything the fast path does not accept
+	 */
+	private Order decodeSlow(ByteBuffer buffer, int start, int end) throws ParsingException{
+		int length = end - start;
+		if(lineBytes.length < length){
+			lineBytes = new byte[length];
+		}
+
+		for(int i = 0; i < length; i++){
+			lineBytes[i] = buffer.get(start + i);
+		}
+
+		String input = new String(lineBytes, 0, length, charset);
+		String[] parts = input.split("\\s+");
+
+		// Bad timestamp is reported before the rest of the order is looked at
+		Long.valueOf(parts[0]);
+
+		if(symbolTable == null){
+			return new Order(parts);
+		}
+
+		if(parts.length < 2){
+			throw new ParsingException("Bad market order: " + input);
+		}
+
+		// Rest of the line is an order in the plain format once the symbol is taken out
+		String[] orderParts = new String[parts.length - 1];
+		orderParts[0] = parts[0];
+		System.arraycopy(parts, 2, orderParts, 1, parts.length - 2);
+
+		Order order = new Order(orderParts);
+		order.setSymbol(symbolTable.intern(parts[1]));
+		return order;
+	}
+
+	/**
+	 * Reads a symbol made of plain ASCII characters into an order
+	 * @return false if the symbol contains anything else
+	 */
+	private boolean readSymbol(ByteBuffer buffer, int end, Order order){
+		int symbolStart = cursor;
+
+		while(cursor < end && !isWhitespace(buffer.get(cursor))){
+			cursor++;
+		}
+
+		String symbol = symbolTable.intern(buffer, symbolStart, cursor);
+		if(symbol == null){
+			return false;
+		}
+
+		order.setSymbol(symbol);
+		return true;
+	}
+
+	/**
+	 * Reads an unsigned decimal number that must be followed by whitespace or the end of the line
+	 * @return Value read, or NOT_A_NUMBER
+	 */
+	private long readDigits(ByteBuffer buffer, int end, int maxDigits){
+		int digitsStart = cursor;
+		long value = 0;
+
+		while(cursor < end){
+			byte b = buffer.get(cursor);
+			if(b < '0' || b > '9'){
+				break;
+			}
+			value = value * 10 + (b - '0');
+			cursor++;
+		}
+
+		int digits = cursor - digitsStart;
+		if(digits == 0 || digits > maxDigits || (cursor < end && !isWhitespace(buffer.get(cursor)))){
+			return NOT_A_NUMBER;
+		}
+
+		return value;
+	}
+
+	/**
+	 * Reads a price of the form digits[.digits] as a mantissa, setting priceScale to the number of fraction digits.
+	 * Prices that are not a whole number of ticks are left to the slow path to report.
+	 * @return Mantissa read, or NOT_A_NUMBER
+	 */
+	private long readPriceMantissa(ByteBuffer buffer, int end){
+		long mantissa = 0;
+		int integerDigits = 0;
+		int fractionDigits = 0;
+		boolean seenPoint = false;
+
+		while(cursor < end){
+			byte b = buffer.get(cursor);
+			if(b >= '0' && b <= '9'){
+				mantissa = mantissa * 10 + (b - '0');
+				if(seenPoint){
+					fractionDigits++;
+				} else {
+					integerDigits++;
+				}
+			} else if(b == '.' && !seenPoint){
+				seenPoint = true;
+			} else {
+				break;
+			}
+			cursor++;
+		}
+
+		if(integerDigits == 0 || (seenPoint && fractionDigits == 0) || fractionDigits > Prices.PRICE_DECIMALS
+				|| integerDigits + fractionDigits > MAX_PRICE_DIGITS
+				|| (cursor < end && !isWhitespace(buffer.get(cursor)))){
+			return NOT_A_NUMBER;
+		}
+
+		priceScale = fractionDigits;
+		return mantissa;
+	}
+
+	/**
+	 * Reads an order id made of plain ASCII characters into an order.  Short ids are packed straight into the
+	 * order's key, longer ones need a String.
+	 * @return false if the id contains anything else
+	 */
+	private boolean readOrderId(ByteBuffer buffer, int end, Order order){
+		int idStart = cursor;
+		long packedKey = 0;
+		boolean packable = true;
+
+		while(cursor < end){
+			byte b = buffer.get(cursor);
+			if(isWhitespace(b)){
+				break;
+			}
+			// Multi-byte characters need the charset, leave them to the slow path
+			if(b < 0){
+				return false;
+			}
+			packable &= b != 0;
+			packedKey = (packedKey << 8) | b;
+			cursor++;
+		}
+
+		int length = cursor - idStart;
+		if(packable && length <= MAX_PACKED_ID_LENGTH){
+			order.setOrderKey(packedKey);
+			return true;
+		}
+
+		if(orderIdChars.length < length){
+			orderIdChars = new char[length];
+		}
+		for(int i = 0; i < length; i++){
+			orderIdChars[i] = (char) buffer.get(idStart + i);
+		}
+
+		order.setOrderId(new String(orderIdChars, 0, length));
+		return true;
+	}
+
+	/**
+	 * Skips the whitespace separating two fields
+	 * @return false if there was no whitespace or nothing follows it
+	 */
+	private boolean skipWhitespace(ByteBuffer buffer, int end){
+		int whitespaceStart = cursor;
+
+		while(cursor < end && isWhitespace(buffer.get(cursor))){
+			cursor++;
+		}
+
+		return cursor > whitespaceStart && cursor < end;
+	}
+
+	/**
+	 * Same characters as the \s regular expression class used by the slow path
+	 */
+	private static boolean isWhitespace(byte b){
+		return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
+	}
+}
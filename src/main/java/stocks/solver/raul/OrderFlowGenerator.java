@@ -0,0 +1,401 @@
+package stocks.solver.raul;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Generates a synthetic market of adds and reduces, in the text input format or the {@link BinaryFeed} format, to
+ * run the engine at volumes the recorded inputs do not reach.  The same seed and settings always give the same
+ * orders, on any JVM, so a generated input can be used by regression tests and benchmarks without being kept.
+ * <p>
+ * Adds are placed within depth price levels of a mid price that takes a random step of up to volatility ticks
+ * before every order, nearer the inside of the book more often than not.  Order ids are drawn from a pool of
+ * idCardinality ids, an id going back to the pool once its order is fully reduced, so the live orders never
+ * outnumber the pool whatever the number of orders generated.  Every reduce is of a live order, most take the whole
+ * order and the rest part of it.
+ * @author Raul
+ *
+ */
+public class OrderFlowGenerator {
+
+	private static final Logger log = Logger.getLogger(OrderFlowGenerator.class.getName());
+
+	static final String USAGE = "usage: order-count output-file [-binary] [-seed n] [-depth levels] [-volatility ticks] "
+			+ "[-ids cardinality] [-reduces ratio]";
+
+	static final long DEFAULT_SEED = 42;
+	static final int DEFAULT_DEPTH = 50;
+	static final int DEFAULT_VOLATILITY = 1;
+	static final int DEFAULT_ID_CARDINALITY = 100000;
+	static final double DEFAULT_REDUCE_RATIO = 0.45;
+
+	// Mid price the market starts at, in ticks
+	static final long START_PRICE = 4400;
+	// Milliseconds after midnight of the first order, 8am
+	static final long START_TIMESTAMP = 28800000;
+
+	// Percentage of reduces that take the whole order
+	private static final int FULL_REDUCE_PERCENT = 70;
+	// Percentage of adds in round lots of 100 shares
+	private static final int ROUND_LOT_PERCENT = 80;
+	private static final int ROUND_LOTS = 5;
+	private static final int ODD_LOT_SIZE = 200;
+
+	private static final int TEXT_BUFFER_SIZE = 64 * 1024;
+	// Longest line written, a timestamp, an id and a price of up to 19 digits each
+	private static final int MAX_LINE_LENGTH = 128;
+
+	private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+	private final int depth;
+	private final int volatility;
+	private final long reduceThreshold;
+
+	// State of SplitMix64, kept here rather than in a java.util.Random so the orders do not depend on the JVM
+	private long randomState;
+
+	private long timestamp = START_TIMESTAMP;
+	private long midPrice = START_PRICE;
+
+	// Shares left of the order using each id of the pool
+	private final int[] sharesLeft;
+	// Ids of the live orders, and where each live id is in liveIds
+	private final int[] liveIds;
+	private final int[] livePositions;
+	private int liveCount = 0;
+	// Ids back in the pool, taken from the end
+	private final int[] freeIds;
+	private int freeCount;
+
+	// Digits of a number being written, last first
+	private final byte[] digits = new byte[20];
+
+	/**
+	 * Constructor for OrderFlowGenerator
+	 * @param seed Seed, the same seed and settings give the same orders
+	 * @param depth Price levels on each side of the mid price that adds are placed in
+	 * @param volatility Most ticks the mid price moves before each order, 0 for a mid price that stays put
+	 * @param idCardinality Number of distinct order ids, and so the most live orders
+	 * @param reduceRatio Share of orders that are reduces, from 0 to 1, while there are both live orders and ids
+	 * free for adds
+	 */
+	public OrderFlowGenerator(long seed, int depth, int volatility, int idCardinality, double reduceRatio){
+		if(depth < 1){
+			throw new IllegalArgumentException("Depth must be at least 1: " + depth);
+		} else if(volatility < 0){
+			throw new IllegalArgumentException("Volatility cannot be negative: " + volatility);
+		} else if(idCardinality < 1){
+			throw new IllegalArgumentException("Id cardinality must be at least 1: " + idCardinality);
+		} else if(!(reduceRatio >= 0 && reduceRatio <= 1)){
+			throw new IllegalArgumentException("Reduce ratio must be from 0 to 1: " + reduceRatio);
+		}
+
+		this.depth = depth;
+		this.volatility = volatility;
+		// Compared with 32 random bits
+		this.reduceThreshold = (long) (reduceRatio * (1L << 32));
+		this.randomState = seed;
+
+		sharesLeft = new int[idCardinality];
+		liveIds = new int[idCardinality];
+		livePositions = new int[idCardinality];
+		freeIds = new int[idCardinality];
+		// Lowest ids are used first
+		for(int i = 0; i < idCardinality; i++){
+			freeIds[i] = idCardinality - 1 - i;
+		}
+		freeCount = idCardinality;
+	}
+
+	/**
+	 * Constructor for OrderFlowGenerator with the default settings
+	 * @param seed Seed, the same seed gives the same orders
+	 */
+	public OrderFlowGenerator(long seed){
+		this(seed, DEFAULT_DEPTH, DEFAULT_VOLATILITY, DEFAULT_ID_CARDINALITY, DEFAULT_REDUCE_RATIO);
+	}
+
+	/**
+	 * @param args Number of orders and the file to write, followed by any options
+	 * @throws IOException Thrown if the output cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length < 2){
+			System.out.println(USAGE);
+			return;
+		}
+
+		long count;
+		boolean binary = false;
+		long seed = DEFAULT_SEED;
+		int depth = DEFAULT_DEPTH;
+		int volatility = DEFAULT_VOLATILITY;
+		int idCardinality = DEFAULT_ID_CARDINALITY;
+		double reduceRatio = DEFAULT_REDUCE_RATIO;
+		OrderFlowGenerator generator;
+
+		try{
+			count = Long.parseLong(args[0]);
+
+			for(int i = 2; i < args.length; i++){
+				if(args[i].equals("-binary")){
+					binary = true;
+				} else if(i + 1 >= args.length){
+					throw new IllegalArgumentException("Missing value for option: " + args[i]);
+				} else if(args[i].equals("-seed")){
+					seed = Long.parseLong(args[++i]);
+				} else if(args[i].equals("-depth")){
+					depth = Integer.parseInt(args[++i]);
+				} else if(args[i].equals("-volatility")){
+					volatility = Integer.parseInt(args[++i]);
+				} else if(args[i].equals("-ids")){
+					idCardinality = Integer.parseInt(args[++i]);
+				} else if(args[i].equals("-reduces")){
+					reduceRatio = Double.parseDouble(args[++i]);
+				} else {
+					throw new IllegalArgumentException("Unknown option: " + args[i]);
+				}
+			}
+
+			generator = new OrderFlowGenerator(seed, depth, volatility, idCardinality, reduceRatio);
+		} catch(IllegalArgumentException iae){
+			// Includes a bad number
+			System.out.println(iae.getMessage());
+			System.out.println(USAGE);
+			return;
+		}
+
+		FileChannel channel = FileChannel.open(Paths.get(args[1]), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		long start = System.nanoTime();
+		if(binary){
+			generator.writeBinary(new BinaryOrderEncoder(channel), count);
+		} else {
+			generator.writeText(channel, count);
+		}
+		log.log(Level.INFO, "Generated " + count + " orders in " + (System.nanoTime() - start) / 1000000 + "ms");
+	}
+
+	/**
+	 * Generates the next order
+	 * @param order Order to overwrite with the next order
+	 */
+	public void next(Order order){
+		timestamp += nextInt(4);
+		if(volatility > 0){
+			midPrice += nextInt(2 * volatility + 1) - volatility;
+			// Keeps every bid above 0
+			midPrice = Math.max(midPrice, depth);
+		}
+
+		order.setTimestamp(timestamp);
+		if(liveCount > 0 && (freeCount == 0 || (nextLong() >>> 32) < reduceThreshold)){
+			nextReduce(order);
+		} else {
+			nextAdd(order);
+		}
+	}
+
+	private void nextAdd(Order order){
+		int id = freeIds[--freeCount];
+		livePositions[id] = liveCount;
+		liveIds[liveCount++] = id;
+
+		int size = nextInt(100) < ROUND_LOT_PERCENT ? 100 * (1 + nextInt(ROUND_LOTS)) : 1 + nextInt(ODD_LOT_SIZE);
+		sharesLeft[id] = size;
+
+		// Nearer of two picks, so the levels nearest the inside of the book get the most adds
+		int level = Math.min(nextInt(depth), nextInt(depth));
+		boolean bid = (nextLong() & 1) == 0;
+
+		order.setOrderAction(OrderAction.ADD);
+		order.setOrderId(orderId(id));
+		order.setSide(bid ? OrderSide.B : OrderSide.S);
+		order.setPrice(bid ? midPrice - level : midPrice + 1 + level);
+		order.setSize(size);
+	}
+
+	private void nextReduce(Order order){
+		int position = nextInt(liveCount);
+		int id = liveIds[position];
+
+		int size = sharesLeft[id];
+		if(size > 1 && nextInt(100) >= FULL_REDUCE_PERCENT){
+			size = 1 + nextInt(size - 1);
+		}
+
+		sharesLeft[id] -= size;
+		if(sharesLeft[id] == 0){
+			// Last live id takes the place of the reduced one
+			int lastId = liveIds[--liveCount];
+			liveIds[position] = lastId;
+			livePositions[lastId] = position;
+			freeIds[freeCount++] = id;
+		}
+
+		order.setOrderAction(OrderAction.REDUCE);
+		order.setOrderId(orderId(id));
+		order.setSide(null);
+		order.setPrice(0);
+		order.setSize(size);
+	}
+
+	/**
+	 * @return Order id of an id of the pool
+	 */
+	static String orderId(int id){
+		return Integer.toString(id, 36);
+	}
+
+	/**
+	 * Writes orders in the text input format, closing the channel
+	 * @param channel Where to write
+	 * @param count Number of orders to write
+	 * @throws IOException Thrown if writing fails
+	 */
+	public void writeText(WritableByteChannel channel, long count) throws IOException{
+		ByteBuffer buffer = ByteBuffer.allocate(TEXT_BUFFER_SIZE);
+		Order order = new Order();
+
+		try {
+			for(long i = 0; i < count; i++){
+				next(order);
+				if(buffer.remaining() < MAX_LINE_LENGTH){
+					drain(channel, buffer);
+				}
+				putLine(buffer, order);
+			}
+			drain(channel, buffer);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Writes orders in the binary feed format, closing the encoder
+	 * @param binaryOrderEncoder Where to write
+	 * @param count Number of orders to write
+	 * @throws IOException Thrown if writing fails
+	 */
+	public void writeBinary(BinaryOrderEncoder binaryOrderEncoder, long count) throws IOException{
+		Order order = new Order();
+
+		try {
+			for(long i = 0; i < count; i++){
+				next(order);
+				binaryOrderEncoder.write(order);
+			}
+		} catch (ParsingException e) {
+			// Every add has a side
+			throw new IllegalStateException(e);
+		} finally {
+			binaryOrderEncoder.close();
+		}
+	}
+
+	/**
+	 * @param count Number of orders
+	 * @return Orders as lines of input, for tests and benchmarks that want them in memory
+	 */
+	List<String> lines(int count){
+		List<String> lines = new ArrayList<String>(count);
+		ByteBuffer line = ByteBuffer.allocate(MAX_LINE_LENGTH);
+		Order order = new Order();
+
+		for(int i = 0; i < count; i++){
+			next(order);
+			line.clear();
+			putLine(line, order);
+			// Without the line separator
+			lines.add(new String(line.array(), 0, line.position() - 1, US_ASCII));
+		}
+
+		return lines;
+	}
+
+	/**
+	 * Puts an order as a line of input, the numbers written straight into the buffer as a StringBuilder would take
+	 * most of the time of generating
+	 */
+	private void putLine(ByteBuffer buffer, Order order){
+		putDigits(buffer, order.getTimestamp());
+		if(order.getOrderAction().equals(OrderAction.ADD)){
+			buffer.put((byte) ' ').put((byte) 'A').put((byte) ' ');
+			putOrderId(buffer, order.getOrderId());
+			buffer.put((byte) ' ').put(order.getSide().equals(OrderSide.B) ? (byte) 'B' : (byte) 'S').put((byte) ' ');
+			putDigits(buffer, order.getPrice() / Prices.TICKS_PER_UNIT);
+			long hundredths = order.getPrice() % Prices.TICKS_PER_UNIT;
+			buffer.put((byte) '.').put((byte) ('0' + hundredths / 10)).put((byte) ('0' + hundredths % 10));
+		} else {
+			buffer.put((byte) ' ').put((byte) 'R').put((byte) ' ');
+			putOrderId(buffer, order.getOrderId());
+		}
+		buffer.put((byte) ' ');
+		putDigits(buffer, order.getSize());
+		buffer.put((byte) '\n');
+	}
+
+	private static void putOrderId(ByteBuffer buffer, String orderId){
+		// Ids are base 36, all ASCII
+		for(int i = 0; i < orderId.length(); i++){
+			buffer.put((byte) orderId.charAt(i));
+		}
+	}
+
+	/**
+	 * Puts a number that is not negative in decimal
+	 */
+	private void putDigits(ByteBuffer buffer, long value){
+		int length = 0;
+		do {
+			digits[length++] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while(value > 0);
+
+		while(length > 0){
+			buffer.put(digits[--length]);
+		}
+	}
+
+	private static void drain(WritableByteChannel channel, ByteBuffer buffer) throws IOException{
+		buffer.flip();
+		while(buffer.hasRemaining()){
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * @return Next 64 random bits, by SplitMix64
+	 */
+	private long nextLong(){
+		long z = (randomState += 0x9E3779B97F4A7C15L);
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * @return Random number from 0 up to but not including bound
+	 */
+	private int nextInt(int bound){
+		return (int) (((nextLong() >>> 32) * bound) >>> 32);
+	}
+
+	int getLiveCount() {
+		return liveCount;
+	}
+
+	long getMidPrice() {
+		return midPrice;
+	}
+}
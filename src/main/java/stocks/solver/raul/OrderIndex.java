@@ -0,0 +1,339 @@
+package stocks.solver.raul;
+
+/**
+ * Index of the live orders in the market, bids and asks together, keyed by order id.  Entries are kept in parallel
+ * arrays of an open addressing table with linear probing, so one probe gives the side, price and remaining size of
+ * an order and adding an order allocates nothing once the table is big enough.
+ * <p>
+ * Order ids of up to 8 ASCII characters are packed into the long key itself.  Longer ids are keyed by their hash
+ * with the top bit set, and the id is kept alongside the entry to tell apart ids with the same hash.
+ * <p>
+ * Bids and asks are keyed apart, as if each side had an index of its own: the key of an ask has a bit set that no
+ * bid key has.  An id live on one side can then be added on the other without touching the first order, and a
+ * reduce finds the bid before the ask.
+ * @author Raul
+ *
+ */
+public class OrderIndex {
+
+	static final int NOT_FOUND = -1;
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	// Key of an empty slot, packed ids always have a non zero first character
+	private static final long EMPTY = 0;
+
+	private static final long LONG_ID = Long.MIN_VALUE;
+
+	private static final int MAX_PACKED_LENGTH = 8;
+
+	// Set in the key of an ask.  Packed ids are ASCII so the top bit of every byte is clear, and hashed ids only use
+	// the low 32 bits below the top bit.
+	private static final long PACKED_ASK = 0x80;
+	private static final long HASHED_ASK = 1L << 32;
+
+	private long[] keys = new long[INITIAL_CAPACITY];
+	private String[] longIds = new String[INITIAL_CAPACITY];
+	private OrderSide[] sides = new OrderSide[INITIAL_CAPACITY];
+	// Prices in ticks, see Prices
+	private long[] prices = new long[INITIAL_CAPACITY];
+	private int[] sizes = new int[INITIAL_CAPACITY];
+
+	private int mask = INITIAL_CAPACITY - 1;
+	private int size = 0;
+	// Live orders on the bid side, the rest are asks
+	private int bidCount = 0;
+
+	/**
+	 * Finds the slot of an order, the bid if the id is live on both sides
+	 * @param orderId Id of the order
+	 * @return Slot of the order to use with the getters, NOT_FOUND if the order is not live
+	 */
+	public int find(String orderId){
+		return findEitherSide(key(orderId), orderId);
+	}
+
+	/**
+	 * Finds the slot of the live order with the same id as an incoming order, the bid if the id is live on both sides
+	 * @param order Incoming order
+	 * @return Slot of the order to use with the getters, NOT_FOUND if the order is not live
+	 */
+	public int find(Order order){
+		long key = order.getOrderKey();
+		// Packed ids are never compared as Strings, so only hashed ids need the id itself
+		return findEitherSide(key, key < 0 ? order.getOrderId() : null);
+	}
+
+	private int findEitherSide(long key, String orderId){
+		int slot = find(key, orderId);
+		return slot != NOT_FOUND ? slot : find(sideKey(key, OrderSide.S), orderId);
+	}
+
+	private int find(long key, String orderId){
+		for(int slot = home(key); keys[slot] != EMPTY; slot = (slot + 1) & mask){
+			if(keys[slot] == key && (key >= 0 || longIds[slot].equals(orderId))){
+				return slot;
+			}
+		}
+
+		return NOT_FOUND;
+	}
+
+	/**
+	 * Adds an order, replacing any live order with the same id on the same side
+	 * @param orderId Id of the order
+	 * @param side Side of the market the order is on
+	 * @param price Price of the order, in ticks
+	 * @param orderSize Number of shares in the order
+	 */
+	public void put(String orderId, OrderSide side, long price, int orderSize){
+		put(key(orderId), orderId, side, price, orderSize);
+	}
+
+	/**
+	 * Adds an incoming order, replacing any live order with the same id on the same side
+	 * @param order Incoming add order
+	 */
+	public void put(Order order){
+		long key = order.getOrderKey();
+		put(key, key < 0 ? order.getOrderId() : null, order.getSide(), order.getPrice(), order.getSize());
+	}
+
+	/**
+	 * Adds an order by its key, replacing any live order with the same id on the same side
+	 * @param idKey Key of the order id, see key(String)
+	 * @param orderId Id of the order, only needed for hashed keys
+	 * @param side Side of the market the order is on
+	 * @param price Price of the order, in ticks
+	 * @param orderSize Number of shares in the order
+	 */
+	void put(long idKey, String orderId, OrderSide side, long price, int orderSize){
+		long key = sideKey(idKey, side);
+		int slot = home(key);
+
+		while(keys[slot] != EMPTY){
+			if(keys[slot] == key && (key >= 0 || longIds[slot].equals(orderId))){
+				break;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		if(keys[slot] == EMPTY){
+			size++;
+		} else if(sides[slot] == OrderSide.B){
+			// Replaced order no longer counts
+			bidCount--;
+		}
+		if(side == OrderSide.B){
+			bidCount++;
+		}
+
+		keys[slot] = key;
+		longIds[slot] = key < 0 ? orderId : null;
+		sides[slot] = side;
+		prices[slot] = price;
+		sizes[slot] = orderSize;
+
+		// Keep the table at most half full so probes stay short
+		if(size * 2 > keys.length){
+			grow();
+		}
+	}
+
+	/**
+	 * Takes shares off an order, removing the order once it has none left
+	 * @param slot Slot of the order, as given by find
+	 * @param shares Number of shares to take off, no more than the size of the order
+	 * @return Shares left in the order
+	 */
+	public int reduce(int slot, int shares){
+		int sharesLeft = sizes[slot] - shares;
+
+		if(sharesLeft == 0){
+			remove(slot);
+		} else {
+			sizes[slot] = sharesLeft;
+		}
+
+		return sharesLeft;
+	}
+
+	/**
+	 * Empties a slot, shifting back any later entries of the probe run that could no longer be found past the gap
+	 */
+	private void remove(int slot){
+		if(sides[slot] == OrderSide.B){
+			bidCount--;
+		}
+
+		int gap = slot;
+		int next = slot;
+
+		while(true){
+			next = (next + 1) & mask;
+
+			if(keys[next] == EMPTY){
+				break;
+			}
+
+			int home = home(keys[next]);
+			// Entry stays where it is if its home is cyclically after the gap and no later than its slot
+			boolean stays = gap <= next ? (gap < home && home <= next) : (gap < home || home <= next);
+
+			if(!stays){
+				keys[gap] = keys[next];
+				longIds[gap] = longIds[next];
+				sides[gap] = sides[next];
+				prices[gap] = prices[next];
+				sizes[gap] = sizes[next];
+				gap = next;
+			}
+		}
+
+		keys[gap] = EMPTY;
+		longIds[gap] = null;
+		sides[gap] = null;
+		size--;
+	}
+
+	private void grow(){
+		long[] oldKeys = keys;
+		String[] oldLongIds = longIds;
+		OrderSide[] oldSides = sides;
+		long[] oldPrices = prices;
+		int[] oldSizes = sizes;
+
+		int capacity = oldKeys.length * 2;
+		keys = new long[capacity];
+		longIds = new String[capacity];
+		sides = new OrderSide[capacity];
+		prices = new long[capacity];
+		sizes = new int[capacity];
+		mask = capacity - 1;
+
+		for(int i = 0; i < oldKeys.length; i++){
+			if(oldKeys[i] == EMPTY){
+				continue;
+			}
+
+			int slot = home(oldKeys[i]);
+			while(keys[slot] != EMPTY){
+				slot = (slot + 1) & mask;
+			}
+
+			keys[slot] = oldKeys[i];
+			longIds[slot] = oldLongIds[i];
+			sides[slot] = oldSides[i];
+			prices[slot] = oldPrices[i];
+			sizes[slot] = oldSizes[i];
+		}
+	}
+
+	/**
+	 * @return Key of an order id, the id packed into the low bytes if short enough, otherwise its hash with the
+	 * top bit set
+	 */
+	static long key(String orderId){
+		int length = orderId.length();
+
+		if(length <= MAX_PACKED_LENGTH){
+			long key = 0;
+			int i = 0;
+
+			for(; i < length; i++){
+				char c = orderId.charAt(i);
+				if(c == 0 || c > 127){
+					break;
+				}
+				key = (key << 8) | c;
+			}
+
+			if(i == length && length > 0){
+				return key;
+			}
+		}
+
+		return LONG_ID | (orderId.hashCode() & 0xffffffffL);
+	}
+
+	/**
+	 * @return Key of an order id on a side of the market, the id key itself for a bid
+	 */
+	private static long sideKey(long idKey, OrderSide side){
+		if(side != OrderSide.S){
+			return idKey;
+		}
+		return idKey | (idKey < 0 ? HASHED_ASK : PACKED_ASK);
+	}
+
+	/**
+	 * @return Order id packed into a key by key(String)
+	 */
+	static String unpack(long key){
+		char[] chars = new char[MAX_PACKED_LENGTH];
+		int start = MAX_PACKED_LENGTH;
+
+		for(long rest = key; rest != 0; rest >>>= 8){
+			chars[--start] = (char) (rest & 0xff);
+		}
+
+		return new String(chars, start, MAX_PACKED_LENGTH - start);
+	}
+
+	private int home(long key){
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+	}
+
+	/**
+	 * @return Number of slots, live orders are in the slots for which isLive is true
+	 */
+	int capacity() {
+		return keys.length;
+	}
+
+	boolean isLive(int slot) {
+		return keys[slot] != EMPTY;
+	}
+
+	/**
+	 * @return Key of the id of the order in the slot, see key(String), whatever its side
+	 */
+	long getKey(int slot) {
+		long key = keys[slot];
+		if(sides[slot] != OrderSide.S){
+			return key;
+		}
+		return key & ~(key < 0 ? HASHED_ASK : PACKED_ASK);
+	}
+
+	/**
+	 * @return Id of the order in the slot if its key is hashed, null if the id is packed into the key
+	 */
+	String getLongId(int slot) {
+		return longIds[slot];
+	}
+
+	OrderSide getSide(int slot) {
+		return sides[slot];
+	}
+
+	long getPrice(int slot) {
+		return prices[slot];
+	}
+
+	int getSize(int slot) {
+		return sizes[slot];
+	}
+
+	int size() {
+		return size;
+	}
+
+	int bidCount() {
+		return bidCount;
+	}
+
+	int askCount() {
+		return size - bidCount;
+	}
+}
@@ -0,0 +1,285 @@
+package stocks.solver.raul;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append only journal of the orders applied to a {@link MasterBook}, so a run can be replayed exactly, see
+ * {@link JournalReplay}.  Orders are written in the {@link BinaryFeed} format straight into a memory mapped file,
+ * which is mapped a region at a time as it grows.  Written records survive the process dying, and are forced to
+ * disk every forceInterval records so a machine failure loses at most that many.
+ * <p>
+ * The file is cut back to the records written when the journal is closed.  Until then, or if the process dies, it
+ * ends in zeros, which read as the end of the feed.  The action of each record is written last so a record cut
+ * short also reads as the end of the feed.
+ * <p>
+ * A {@link #mark()} starts the interning of order ids again, so the journal can be read from the offset of any mark
+ * without the records before it.
+ * @author Raul
+ *
+ */
+public class OrderJournal implements Closeable {
+
+	static final int DEFAULT_FORCE_INTERVAL = 10000;
+
+	static final int DEFAULT_REGION_SIZE = 64 * 1024 * 1024;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	// Offset of the action in a record, see BinaryFeed
+	private static final int ACTION_OFFSET = 8;
+
+	private final FileChannel channel;
+	private final int regionSize;
+	// Records between forces
+	private final int forceInterval;
+
+	// Mapped region being written, and the one before it which may still hold part of the last record
+	private MappedByteBuffer region;
+	private MappedByteBuffer previousRegion;
+	// Offset in the file of the start of region
+	private long regionStart;
+
+	// Each record is built here before it is copied into the mapped regions
+	private ByteBuffer record = ByteBuffer.allocate(BinaryFeed.RECORD_SIZE);
+
+	// Key given to each interned order id since the last mark, see BinaryFeed
+	private final InternedIds internedIds = new InternedIds();
+
+	private int recordsSinceForce = 0;
+
+	/**
+	 * Constructor for OrderJournal, starts a new journal replacing anything in the file
+	 * @param file Journal file
+	 * @param forceInterval Number of records between forcing the journal to disk
+	 * @throws IOException Thrown if the file cannot be written
+	 */
+	public OrderJournal(Path file, int forceInterval) throws IOException{
+		this(file, forceInterval, 0, DEFAULT_REGION_SIZE);
+	}
+
+	/**
+	 * Constructor for OrderJournal
+	 * @param file Journal file
+	 * @param forceInterval Number of records between forcing the journal to disk
+	 * @param offset Offset to carry on writing from, as given by mark, anything after it is discarded.  0 starts a
+	 * new journal.
+	 * @param regionSize Number of bytes mapped at a time
+	 * @throws IOException Thrown if the file cannot be written or is shorter than the offset
+	 */
+	OrderJournal(Path file, int forceInterval, long offset, int regionSize) throws IOException{
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.forceInterval = forceInterval;
+		this.regionSize = regionSize;
+
+		if(channel.size() < offset){
+			channel.close();
+			throw new IOException("Journal " + file + " is shorter than the offset to resume from: " + offset);
+		}
+		// Records after the offset are dropped, stale ones must not be left after the records about to be written
+		channel.truncate(offset);
+
+		map(offset);
+		if(offset == 0){
+			region.putInt(BinaryFeed.MAGIC).putInt(BinaryFeed.VERSION);
+		}
+	}
+
+	/**
+	 * Carries on writing a journal from a mark, such as the one saved with a {@link BookCheckpoint}
+	 * @param file Journal file
+	 * @param forceInterval Number of records between forcing the journal to disk
+	 * @param offset Offset given by mark, anything after it is discarded
+	 * @return Journal to carry on writing
+	 * @throws IOException Thrown if the file cannot be written or is shorter than the offset
+	 */
+	public static OrderJournal resume(Path file, int forceInterval, long offset) throws IOException{
+		return new OrderJournal(file, forceInterval, offset, DEFAULT_REGION_SIZE);
+	}
+
+	/**
+	 * Appends an order that was applied to the book, preceded by an INTERN record if it has an id that does not pack
+	 * into a key and has had no number since the last mark, or only on orders that are gone
+	 * @param order Order applied to the book
+	 * @throws IOException Thrown if the journal cannot grow
+	 */
+	public void append(Order order) throws IOException{
+		long key = order.getOrderKey();
+
+		// Packed keys are positive, everything else is hashed by OrderIndex and needs interning
+		if(key < 0){
+			key = intern(order.getOrderId());
+		}
+
+		boolean add = order.getOrderAction().equals(OrderAction.ADD);
+		record.clear();
+		record.putLong(order.getTimestamp())
+			  .put(add ? BinaryFeed.ADD : BinaryFeed.REDUCE)
+			  .putLong(key)
+			  .put(add ? (order.getSide().equals(OrderSide.B) ? BinaryFeed.BID : BinaryFeed.ASK) : BinaryFeed.NO_SIDE)
+			  .putLong(add ? order.getPrice() : 0)
+			  .putInt(order.getSize());
+		write();
+
+		if(key < 0){
+			internedIds.written(order);
+		}
+
+		if(++recordsSinceForce >= forceInterval){
+			force();
+		}
+	}
+
+	private long intern(String orderId) throws IOException{
+		long key = internedIds.key(orderId);
+		if(key != InternedIds.NONE){
+			return key;
+		}
+
+		key = internedIds.intern(orderId);
+
+		byte[] idBytes = orderId.getBytes(UTF_8);
+		if(record.capacity() < BinaryFeed.RECORD_SIZE + idBytes.length){
+			record = ByteBuffer.allocate(BinaryFeed.RECORD_SIZE + idBytes.length);
+		}
+
+		record.clear();
+		record.putLong(0)
+			  .put(BinaryFeed.INTERN)
+			  .putLong(key)
+			  .put(BinaryFeed.NO_SIDE)
+			  .putLong(0)
+			  .putInt(idBytes.length)
+			  .put(idBytes);
+		write();
+
+		return key;
+	}
+
+	/**
+	 * Copies the record into the mapped regions, the action last
+	 */
+	private void write() throws IOException{
+		record.flip();
+		byte action = record.get(ACTION_OFFSET);
+		record.put(ACTION_OFFSET, (byte) 0);
+
+		long actionPosition = getLength() + ACTION_OFFSET;
+
+		while(record.hasRemaining()){
+			if(!region.hasRemaining()){
+				map(regionStart + regionSize);
+			}
+
+			int length = Math.min(record.remaining(), region.remaining());
+			int limit = record.limit();
+			record.limit(record.position() + length);
+			region.put(record);
+			record.limit(limit);
+		}
+
+		if(actionPosition >= regionStart){
+			region.put((int) (actionPosition - regionStart), action);
+		} else {
+			previousRegion.put((int) (actionPosition - regionStart + regionSize), action);
+		}
+	}
+
+	/**
+	 * Maps the region starting at an offset, forcing the region before it to disk first
+	 */
+	private void map(long offset) throws IOException{
+		if(region != null){
+			region.force();
+		}
+
+		previousRegion = region;
+		region = channel.map(FileChannel.MapMode.READ_WRITE, offset, regionSize);
+		regionStart = offset;
+	}
+
+	/**
+	 * Forces the records written so far to disk
+	 */
+	public void force(){
+		region.force();
+		if(previousRegion != null){
+			previousRegion.force();
+			previousRegion = null;
+		}
+		recordsSinceForce = 0;
+	}
+
+	/**
+	 * Forces the records written so far to disk and starts the interning of order ids again, so the journal can be
+	 * read from here on its own
+	 * @return Offset of the next record, to read or resume writing the journal from
+	 */
+	public long mark(){
+		force();
+		internedIds.clear();
+		return getLength();
+	}
+
+	/**
+	 * @return Number of bytes of records written, including the header
+	 */
+	long getLength() {
+		return regionStart + region.position();
+	}
+
+	/**
+	 * Opens a journal for reading from an offset
+	 * @param file Journal file
+	 * @param offset 0 for the start of the journal, otherwise an offset given by mark
+	 * @return Decoder of the orders in the journal from the offset
+	 * @throws IOException Thrown if the file cannot be read or is not a journal
+	 */
+	public static BinaryOrderDecoder read(Path file, long offset) throws IOException{
+		FileChannel readChannel = FileChannel.open(file, StandardOpenOption.READ);
+
+		try {
+			ByteBuffer header = ByteBuffer.allocate(BinaryFeed.HEADER_SIZE);
+			while(header.hasRemaining()){
+				if(readChannel.read(header, header.position()) < 0){
+					break;
+				}
+			}
+			header.flip();
+
+			if(header.remaining() < BinaryFeed.HEADER_SIZE || header.getInt() != BinaryFeed.MAGIC){
+				throw new IOException("Not an order journal: " + file);
+			}
+			int version = header.getInt();
+			if(version != BinaryFeed.VERSION){
+				throw new IOException("Unsupported order journal version: " + version);
+			}
+
+			readChannel.position(Math.max(offset, BinaryFeed.HEADER_SIZE));
+		} catch(IOException io){
+			readChannel.close();
+			throw io;
+		}
+
+		return new BinaryOrderDecoder(readChannel, false);
+	}
+
+	/**
+	 * Forces the journal to disk and cuts the file back to the records written
+	 */
+	@Override
+	public void close() throws IOException{
+		try {
+			force();
+			channel.truncate(getLength());
+		} finally {
+			channel.close();
+		}
+	}
+}
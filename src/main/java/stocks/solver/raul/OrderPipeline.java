@@ -0,0 +1,97 @@
+package stocks.solver.raul;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pipelined processing of the input, each stage on its own thread: a decoder thread turns lines into orders in a
+ * ring of preallocated order slots, the calling thread applies them to the book and calculates, and the
+ * {@link AsyncResultWriter} of the {@link PricingEngine} formats and writes the results.  Throughput is then bound
+ * by the slowest stage rather than the sum of them.
+ * @author Raul
+ *
+ */
+public class OrderPipeline {
+
+	private static final Logger log = Logger.getLogger(OrderPipeline.class.getName());
+
+	static final int DEFAULT_CAPACITY = 16 * 1024;
+
+	private final RingSequencer sequencer;
+	private final Order[] orders;
+
+	// Set by the decoder thread if reading the input failed
+	private volatile IOException readFailure = null;
+
+	/**
+	 * Constructor for OrderPipeline
+	 * @param capacity Number of order slots between the decoder and the book, a power of two
+	 */
+	public OrderPipeline(int capacity){
+		this.sequencer = new RingSequencer(capacity);
+		this.orders = new Order[capacity];
+		for(int i = 0; i < capacity; i++){
+			orders[i] = new Order();
+		}
+	}
+
+	/**
+	 * Processes all of the input, returning once every order has been applied to the book.  Results may still be
+	 * waiting to be written, see {@link PricingEngine#finish()}.
+	 * @param lineSource Input
+	 * @param orderDecoder Decoder to use on the decoder thread
+	 * @param pricingEngine Engine to apply the orders to, writing results asynchronously
+	 * @throws IOException Thrown if reading the input or writing results failed
+	 */
+	public void run(final LineSource lineSource, final OrderDecoder orderDecoder, PricingEngine pricingEngine) throws IOException{
+		Thread decoderThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				decodeOrders(lineSource, orderDecoder);
+			}
+		}, "order-decoder");
+		decoderThread.setDaemon(true);
+		decoderThread.start();
+
+		long sequence;
+		while((sequence = EngineThreads.take(sequencer)) != RingSequencer.NONE){
+			try {
+				pricingEngine.process(orders[sequencer.slot(sequence)]);
+			} catch (ReduceMarketLookupException e) {
+				log.log(Level.SEVERE, "Bad market reduction order, skipping it", e);
+			}
+			sequencer.release(sequence);
+		}
+
+		if(readFailure != null){
+			throw readFailure;
+		}
+	}
+
+	/**
+	 * Body of the decoder thread, decodes every line into the next free order slot
+	 */
+	private void decodeOrders(LineSource lineSource, OrderDecoder orderDecoder){
+		try {
+			while(lineSource.nextLine() && lineSource.getLineLength() != 0){
+				long sequence;
+				while((sequence = sequencer.tryClaim()) == RingSequencer.NONE){
+					Thread.yield();
+				}
+
+				int slot = sequencer.slot(sequence);
+				Order order = EngineThreads.decode(lineSource, orderDecoder, orders[slot]);
+				if(order != null){
+					// Lines the decoder cannot take in place come back as a new Order, which then takes over the slot
+					orders[slot] = order;
+					sequencer.publish(sequence);
+				}
+			}
+		} catch (IOException e) {
+			readFailure = e;
+		} finally {
+			sequencer.finish();
+		}
+	}
+}
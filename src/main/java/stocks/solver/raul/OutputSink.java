@@ -0,0 +1,259 @@
+package stocks.solver.raul;
+
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Destination for the output lines of one target.  Lines are encoded straight into a reusable byte buffer and the
+ * buffer is drained to a channel in large writes as decided by a {@link FlushPolicy}, instead of every line going
+ * through the locking and flushing of System.out.  A binary sink writes {@link BinaryResults} records instead of
+ * lines.
+ * @author Raul
+ *
+ */
+public class OutputSink implements Closeable {
+
+	private final WritableByteChannel channel;
+	private final FlushPolicy flushPolicy;
+	// Standard out is left open when the sink is closed
+	private final boolean closeChannel;
+	// Results are written as BinaryResults records
+	private final boolean binary;
+	// Stream behind the channel, flushed on every drain so nothing waits in its own buffer, null for a file
+	private Flushable stream;
+
+	private ByteBuffer buffer;
+
+	// Results written since the buffer was last drained
+	private int events = 0;
+
+	// Bytes drained to the channel, counting from the start of the file for a sink that resumed one
+	private long bytesWritten;
+
+	/**
+	 * Constructor for OutputSink
+	 * @param channel Channel to drain to
+	 * @param flushPolicy When to drain
+	 * @param closeChannel True to close the channel when the sink is closed
+	 */
+	public OutputSink(WritableByteChannel channel, FlushPolicy flushPolicy, boolean closeChannel){
+		this(channel, flushPolicy, closeChannel, false);
+	}
+
+	/**
+	 * Constructor for OutputSink
+	 * @param channel Channel to drain to
+	 * @param flushPolicy When to drain
+	 * @param closeChannel True to close the channel when the sink is closed
+	 * @param binary True to write results as {@link BinaryResults} records, starting with the header
+	 */
+	public OutputSink(WritableByteChannel channel, FlushPolicy flushPolicy, boolean closeChannel, boolean binary){
+		this(channel, flushPolicy, closeChannel, binary, 0);
+	}
+
+	private OutputSink(WritableByteChannel channel, FlushPolicy flushPolicy, boolean closeChannel, boolean binary, long startOffset){
+		this.channel = channel;
+		this.bytesWritten = startOffset;
+		this.flushPolicy = flushPolicy;
+		this.closeChannel = closeChannel;
+		this.binary = binary;
+
+		int capacity = FlushPolicy.DEFAULT_BYTES;
+		if(flushPolicy.getTrigger() == FlushPolicy.Trigger.BYTES && flushPolicy.getThreshold() > capacity){
+			capacity = flushPolicy.getThreshold();
+		}
+		this.buffer = ByteBuffer.allocateDirect(capacity);
+
+		// A resumed file already has its header
+		if(binary && startOffset == 0){
+			buffer.putInt(BinaryResults.MAGIC).putInt(BinaryResults.VERSION);
+		}
+	}
+
+	/**
+	 * @param flushPolicy When to drain
+	 * @return Sink writing to standard out
+	 */
+	static OutputSink toStandardOut(FlushPolicy flushPolicy){
+		return toStandardOut(flushPolicy, false);
+	}
+
+	/**
+	 * @param flushPolicy When to drain
+	 * @param binary True to write {@link BinaryResults} records
+	 * @return Sink writing to System.out, so output still goes wherever System.setOut sends it
+	 */
+	static OutputSink toStandardOut(FlushPolicy flushPolicy, boolean binary){
+		PrintStream out = System.out;
+		OutputSink outputSink = new OutputSink(Channels.newChannel(out), flushPolicy, false, binary);
+		outputSink.stream = out;
+		return outputSink;
+	}
+
+	/**
+	 * Writes straight to the standard out file descriptor, skipping the copy into System.out's buffer.  Anything
+	 * System.setOut does is ignored, so this is only for a solver writing large outputs to a pipe or file.
+	 * @param flushPolicy When to drain
+	 * @param binary True to write {@link BinaryResults} records
+	 * @return Sink writing to the standard out file descriptor
+	 */
+	static OutputSink toStandardOutDescriptor(FlushPolicy flushPolicy, boolean binary){
+		return new OutputSink(new FileOutputStream(FileDescriptor.out).getChannel(), flushPolicy, false, binary);
+	}
+
+	/**
+	 * @param file File to write, replaced if it exists
+	 * @param flushPolicy When to drain
+	 * @return Sink writing to the file
+	 * @throws IOException Thrown if the file cannot be opened
+	 */
+	static OutputSink toFile(Path file, FlushPolicy flushPolicy) throws IOException{
+		return toFile(file, flushPolicy, false);
+	}
+
+	/**
+	 * @param file File to write, replaced if it exists
+	 * @param flushPolicy When to drain
+	 * @param binary True to write {@link BinaryResults} records
+	 * @return Sink writing to the file
+	 * @throws IOException Thrown if the file cannot be opened
+	 */
+	static OutputSink toFile(Path file, FlushPolicy flushPolicy, boolean binary) throws IOException{
+		FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		return new OutputSink(fileChannel, flushPolicy, true, binary);
+	}
+
+	/**
+	 * Reopens a file written by an earlier run, dropping anything after the given offset and writing on from there
+	 * @param file File to write
+	 * @param flushPolicy When to drain
+	 * @param binary True to write {@link BinaryResults} records
+	 * @param offset Length of the file to keep, as given by {@link #getBytesWritten()} in the earlier run
+	 * @return Sink writing to the file
+	 * @throws IOException Thrown if the file cannot be opened or is shorter than the offset
+	 */
+	static OutputSink resumeFile(Path file, FlushPolicy flushPolicy, boolean binary, long offset) throws IOException{
+		FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		if(fileChannel.size() < offset){
+			fileChannel.close();
+			throw new IOException("Output " + file + " is shorter than the checkpoint, " + offset + " bytes");
+		}
+
+		fileChannel.truncate(offset);
+		fileChannel.position(offset);
+		return new OutputSink(fileChannel, flushPolicy, true, binary, offset);
+	}
+
+	/**
+	 * Writes a line of output followed by a new line.  Output is only ever ASCII so every char is one byte.
+	 * @param line Line to write
+	 * @throws IOException Thrown if the buffer had to be drained and the write failed
+	 */
+	public void writeLine(CharSequence line) throws IOException{
+		int length = line.length();
+
+		if(buffer.remaining() < length + 1){
+			drain();
+			if(buffer.capacity() < length + 1){
+				buffer = ByteBuffer.allocateDirect(length + 1);
+			}
+		}
+
+		for(int i = 0; i < length; i++){
+			buffer.put((byte) line.charAt(i));
+		}
+		buffer.put((byte) '\n');
+		written();
+	}
+
+	/**
+	 * Writes a result as a {@link BinaryResults} record, binary sinks only
+	 * @param timestamp Timestamp of the order that caused the result
+	 * @param side Side of the result
+	 * @param available False for a result of NA
+	 * @param amount Profit or cost in ticks
+	 * @throws IOException Thrown if the buffer had to be drained and the write failed
+	 */
+	public void writeRecord(long timestamp, OrderSide side, boolean available, long amount) throws IOException{
+		if(buffer.remaining() < BinaryResults.RECORD_SIZE){
+			drain();
+		}
+
+		buffer.putLong(timestamp)
+			  .put(side.equals(OrderSide.S) ? (byte) 'S' : (byte) 'B')
+			  .put(available ? 0 : BinaryResults.NOT_AVAILABLE)
+			  .putLong(available ? amount : 0);
+		written();
+	}
+
+	/**
+	 * Counts a result written and drains if the flush policy says so
+	 */
+	private void written() throws IOException{
+		events++;
+
+		if(flushPolicy.getTrigger() == FlushPolicy.Trigger.BYTES && buffer.position() >= flushPolicy.getThreshold()){
+			drain();
+		} else if(flushPolicy.getTrigger() == FlushPolicy.Trigger.EVENTS && events >= flushPolicy.getThreshold()){
+			drain();
+		}
+	}
+
+	/**
+	 * Writes out everything buffered
+	 * @throws IOException Thrown if the write failed
+	 */
+	public void flush() throws IOException{
+		drain();
+	}
+
+	private void drain() throws IOException{
+		buffer.flip();
+		bytesWritten += buffer.remaining();
+		while(buffer.hasRemaining()){
+			channel.write(buffer);
+		}
+		buffer.clear();
+		events = 0;
+
+		if(stream != null){
+			stream.flush();
+		}
+	}
+
+	/**
+	 * Writes out everything buffered and closes the channel, unless it is standard out
+	 */
+	@Override
+	public void close() throws IOException{
+		try{
+			drain();
+		} finally {
+			if(closeChannel){
+				channel.close();
+			}
+		}
+	}
+
+	boolean isBinary() {
+		return binary;
+	}
+
+	/**
+	 * @return Bytes drained so far, anything still buffered is not counted
+	 */
+	long getBytesWritten() {
+		return bytesWritten;
+	}
+}
@@ -0,0 +1,40 @@
+package stocks.solver.raul;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a side of a {@link MasterBook} reaching a new power of two price levels, see
+ * {@link FlightEvents}
+ * @author Raul
+ *
+ */
+@Name("stocks.solver.raul.PriceLevelGrowth")
+@Label("Price Level Growth")
+@Category("Book Order Solver")
+@Description("Side of the book reached a new power of two price levels")
+@StackTrace(false)
+public class PriceLevelGrowthEvent extends jdk.jfr.Event {
+
+	@Label("Order Timestamp")
+	long orderTimestamp;
+
+	@Label("Side")
+	String side;
+
+	@Label("Target")
+	@Description("Largest target of the book")
+	int target;
+
+	@Label("Bid Price Levels")
+	int bidPriceLevels;
+
+	@Label("Ask Price Levels")
+	int askPriceLevels;
+
+	@Label("Live Orders")
+	int liveOrders;
+}
@@ -1,12 +1,8 @@
 package stocks.solver.raul;
 
-import java.util.HashMap;
-import java.util.Map;
-
 public class PriceLevelShares {
 
 	int totalShares = 0;
-	int sharesUsedInLastCalc = 0;
 	
 	public void addShares(int shares){
 		totalShares = totalShares + shares;
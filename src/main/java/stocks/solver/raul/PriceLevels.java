@@ -0,0 +1,80 @@
+package stocks.solver.raul;
+
+/**
+ * Price levels for one side of the market, IE the total number of shares resting at each price.  Levels are
+ * walked from the best price: highest first for bids and lowest first for asks.
+ * @author Raul
+ *
+ */
+public interface PriceLevels {
+
+	// Returned when there is no price level to move to
+	long NO_PRICE = Long.MIN_VALUE;
+
+	/**
+	 * Adds shares at a price level, creating the level if needed
+	 * @param price Price in ticks
+	 * @param shares Number of shares to add
+	 */
+	void addShares(long price, int shares);
+
+	/**
+	 * Removes shares from an existing price level, the level is removed once it has no shares left
+	 * @param price Price in ticks
+	 * @param shares Number of shares to remove
+	 * @return Number of shares left at the price level
+	 */
+	int reduceShares(long price, int shares);
+
+	/**
+	 * @param price Price in ticks
+	 * @return Number of shares at the price level, 0 if there is no such level
+	 */
+	int getShares(long price);
+
+	/**
+	 * @return Number of price levels
+	 */
+	int size();
+
+	/**
+	 * @return Best price level, IE the first one walked, or NO_PRICE if there are no levels
+	 */
+	long bestPrice();
+
+	/**
+	 * @param price Price in ticks, does not need to be a price level
+	 * @return Next price level after the given price when walking from the best price, IE the next worse price, or
+	 * NO_PRICE if there is none
+	 */
+	long nextWorsePrice(long price);
+
+	/**
+	 * @param price Price in ticks, does not need to be a price level
+	 * @return Next price level before the given price when walking from the best price, IE the next better price, or
+	 * NO_PRICE if there is none
+	 */
+	long nextBetterPrice(long price);
+
+	/**
+	 * Walks the price levels from the best price until the target number of shares is filled.  Caller must make
+	 * sure there are at least target shares in total.
+	 * @param target Number of shares to fill
+	 * @param fillResult Receives the total amount and the last price level used
+	 */
+	void fill(int target, FillResult fillResult);
+
+	/**
+	 * Fills several targets, by default one after the other.  Implementations that walk the price levels share a
+	 * single walk between the targets.  Caller must make sure there are at least as many shares in total as the
+	 * largest target.
+	 * @param targets Numbers of shares to fill, smallest first
+	 * @param count Number of targets to fill
+	 * @param fillResults Receives the fill of each target
+	 */
+	default void fill(int[] targets, int count, FillResult[] fillResults){
+		for(int i = 0; i < count; i++){
+			fill(targets[i], fillResults[i]);
+		}
+	}
+}
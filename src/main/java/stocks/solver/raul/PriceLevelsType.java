@@ -0,0 +1,32 @@
+package stocks.solver.raul;
+
+/**
+ * Available {@link PriceLevels} implementations
+ * @author Raul
+ *
+ */
+public enum PriceLevelsType {
+	TREE,
+	LADDER,
+	FENWICK;
+
+	/**
+	 * Creates empty price levels for one side of the market
+	 * @param side Side of the market, decides which price is best
+	 * @return New price levels
+	 */
+	public PriceLevels create(OrderSide side){
+		boolean highestFirst = side.equals(OrderSide.B);
+
+		if(this.equals(LADDER)){
+			return new LadderPriceLevels(highestFirst);
+		} else if(this.equals(FENWICK)){
+			return new FenwickPriceLevels(highestFirst);
+		}
+		return new TreePriceLevels(highestFirst);
+	}
+
+	public static PriceLevelsType getPriceLevelsType(String type){
+		return PriceLevelsType.valueOf(type.toUpperCase());
+	}
+}
@@ -0,0 +1,64 @@
+package stocks.solver.raul;
+
+import java.math.BigDecimal;
+
+/**
+ * Helper functions for prices, which are kept as a long number of ticks (hundredths) from parsing all the way
+ * to output so that sums of shares times price are exact integer arithmetic.
+ * @author Raul
+ *
+ */
+public final class Prices {
+
+	// Number of decimal places in a tick, IE one tick is 0.01
+	static final int PRICE_DECIMALS = 2;
+	static final long TICKS_PER_UNIT = 100;
+
+	private Prices(){
+	}
+
+	/**
+	 * Converts a decimal price to ticks
+	 * @param price Price as written in the input, for example 44.26
+	 * @return Price in ticks
+	 * @throws NumberFormatException Thrown if the price is not a number
+	 * @throws ArithmeticException Thrown if the price is not a whole number of ticks or does not fit
+	 */
+	static long parseTicks(String price){
+		return new BigDecimal(price).movePointRight(PRICE_DECIMALS).longValueExact();
+	}
+
+	/**
+	 * Appends an amount in ticks as a decimal with two places, IE 883256 is appended as 8832.56
+	 * @param sb StringBuilder to append to
+	 * @param ticks Amount in ticks
+	 * @return The given StringBuilder
+	 */
+	static StringBuilder appendTicks(StringBuilder sb, long ticks){
+		long units = ticks / TICKS_PER_UNIT;
+		long hundredths = ticks % TICKS_PER_UNIT;
+
+		if(ticks < 0){
+			sb.append('-');
+			units = -units;
+			hundredths = -hundredths;
+		}
+
+		sb.append(units);
+		sb.append('.');
+		if(hundredths < 10){
+			sb.append('0');
+		}
+		sb.append(hundredths);
+
+		return sb;
+	}
+
+	/**
+	 * @param ticks Amount in ticks
+	 * @return Amount as a decimal with two places
+	 */
+	static String format(long ticks){
+		return appendTicks(new StringBuilder(), ticks).toString();
+	}
+}
@@ -0,0 +1,223 @@
+package stocks.solver.raul;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Class that applies market orders to a {@link MasterBook} and writes out the profit or cost of every target
+ * whenever it changes.  All targets share the one book, and the targets that need a calculation after an order share
+ * a single walk of its price levels.
+ * @author Raul
+ *
+ */
+public class PricingEngine {
+
+	private final MasterBook masterBook;
+	private final Calculator calculator = new Calculator();
+
+	// Targets smallest first, as needed for the shared walk
+	private final PricingTarget[] sortedTargets;
+
+	private final PricingTarget[] targetsToCalculate;
+	private final CalculatorResult[] calculatorResults;
+
+	// Writes results on its own thread, null when results are written as they are calculated
+	private final AsyncResultWriter asyncResultWriter;
+	// Receives results to be written elsewhere, null when this engine writes its own results
+	private final ResultRing resultRing;
+	// Held while writing when other engines write to the same outputs, null when this engine has them to itself
+	private final Lock outputLock;
+
+	// Times the book, calculation and output stages, null when not timed
+	private StageMetrics stageMetrics;
+
+	/**
+	 * Constructor for PricingEngine
+	 * @param masterBook Book to apply orders to
+	 * @param outputs Where to write the results of each target, in the same order as the book's targets
+	 */
+	public PricingEngine(MasterBook masterBook, OutputSink[] outputs){
+		this(masterBook, outputs, false);
+	}
+
+	/**
+	 * Constructor for PricingEngine
+	 * @param masterBook Book to apply orders to
+	 * @param outputs Where to write the results of each target, in the same order as the book's targets
+	 * @param async True to format and write results on a separate writer thread, see {@link AsyncResultWriter}.
+	 * {@link #finish()} must then be called once all orders are processed.
+	 */
+	public PricingEngine(MasterBook masterBook, OutputSink[] outputs, boolean async){
+		this(masterBook, outputs, async, null, null);
+	}
+
+	/**
+	 * Constructor for PricingEngine that shares its outputs with engines on other threads
+	 * @param masterBook Book to apply orders to
+	 * @param outputs Where to write the results of each target, in the same order as the book's targets
+	 * @param outputLock Lock held by every engine sharing the outputs while it writes
+	 */
+	public PricingEngine(MasterBook masterBook, OutputSink[] outputs, Lock outputLock){
+		this(masterBook, outputs, false, null, outputLock);
+	}
+
+	/**
+	 * Constructor for PricingEngine that publishes results to a ring for another thread to write
+	 * @param masterBook Book to apply orders to
+	 * @param resultRing Ring to publish results to, waiting while it is full
+	 */
+	public PricingEngine(MasterBook masterBook, ResultRing resultRing){
+		this(masterBook, null, false, resultRing, null);
+	}
+
+	private PricingEngine(MasterBook masterBook, OutputSink[] outputs, boolean async, ResultRing resultRing, Lock outputLock){
+		this.masterBook = masterBook;
+		this.resultRing = resultRing;
+		this.outputLock = outputLock;
+
+		PricingTarget[] pricingTargets = masterBook.getPricingTargets();
+		if(outputs != null){
+			for(int i = 0; i < pricingTargets.length; i++){
+				pricingTargets[i].setOutput(outputs[i]);
+			}
+		}
+
+		this.sortedTargets = Arrays.copyOf(pricingTargets, pricingTargets.length);
+		Arrays.sort(sortedTargets, new Comparator<PricingTarget>() {
+			@Override
+			public int compare(PricingTarget first, PricingTarget second) {
+				return Integer.compare(first.getTarget(), second.getTarget());
+			}
+		});
+
+		this.targetsToCalculate = new PricingTarget[pricingTargets.length];
+		this.calculatorResults = new CalculatorResult[pricingTargets.length];
+		for(int i = 0; i < calculatorResults.length; i++){
+			calculatorResults[i] = new CalculatorResult();
+		}
+
+		this.asyncResultWriter = async ? new AsyncResultWriter(pricingTargets, AsyncResultWriter.DEFAULT_CAPACITY) : null;
+	}
+
+	/**
+	 * Applies an order to the book and writes out any profit or cost that changed because of it
+	 * @param order Incoming order on which to operate
+	 * @throws ReduceMarketLookupException Thrown if a reduce order is for an order not in the market
+	 * @throws IOException Thrown if writing a result fails
+	 */
+	public void process(Order order) throws ReduceMarketLookupException, IOException{
+		long stageStart = stageMetrics != null ? System.nanoTime() : 0;
+
+		// Sets the side of reduce orders, throws if there is no order to reduce
+		masterBook.updateBookStructures(order);
+
+		if(stageMetrics != null){
+			long now = System.nanoTime();
+			stageMetrics.record(StageMetrics.Stage.BOOK, now - stageStart);
+			stageStart = now;
+		}
+
+		int count = 0;
+
+		for(PricingTarget pricingTarget : sortedTargets){
+			if(masterBook.getTotalBidSize() >= pricingTarget.getTarget() && pricingTarget.canStartBidCalc() == false){
+				pricingTarget.setCanStartBidCalc(true);
+			}
+
+			if(masterBook.getTotalAskSize() >= pricingTarget.getTarget() && pricingTarget.canStartAskCalc() == false){
+				pricingTarget.setCanStartAskCalc(true);
+			}
+
+			UpdateBookResult updateBookResult = pricingTarget.getUpdateBookResult();
+
+			if(pricingTarget.canStartBidCalc() && order.getSide().equals(OrderSide.B)){
+				if(updateBookResult.recalculateProfit()){
+					targetsToCalculate[count++] = pricingTarget;
+					pricingTarget.getCounters().recalculated(RecalculationCounters.PROFIT);
+				} else {
+					pricingTarget.getCounters().skipped(RecalculationCounters.PROFIT);
+				}
+			}
+
+			if(pricingTarget.canStartAskCalc() && order.getSide().equals(OrderSide.S)){
+				if(updateBookResult.recalculateCost()){
+					targetsToCalculate[count++] = pricingTarget;
+					pricingTarget.getCounters().recalculated(RecalculationCounters.COST);
+				} else {
+					pricingTarget.getCounters().skipped(RecalculationCounters.COST);
+				}
+			}
+		}
+
+		if(count == 0){
+			return;
+		}
+
+		calculator.calculate(masterBook, targetsToCalculate, count, order, calculatorResults);
+
+		if(stageMetrics != null){
+			long now = System.nanoTime();
+			stageMetrics.record(StageMetrics.Stage.CALCULATE, now - stageStart);
+			stageStart = now;
+		}
+
+		writeResults(count);
+
+		if(stageMetrics != null){
+			stageMetrics.record(StageMetrics.Stage.OUTPUT, System.nanoTime() - stageStart);
+		}
+	}
+
+	/**
+	 * Writes, or hands over to be written, the results of the first count targets to calculate
+	 */
+	private void writeResults(int count) throws IOException{
+		if(outputLock != null){
+			// One lock for all the results of the order
+			outputLock.lock();
+			try {
+				for(int i = 0; i < count; i++){
+					targetsToCalculate[i].writeResult(calculatorResults[i]);
+				}
+			} finally {
+				outputLock.unlock();
+			}
+			return;
+		}
+
+		for(int i = 0; i < count; i++){
+			if(resultRing != null){
+				while(!resultRing.offer(targetsToCalculate[i].getIndex(), calculatorResults[i])){
+					if(resultRing.isClosed()){
+						throw new IOException("Results are no longer taken from the ring");
+					}
+					Thread.yield();
+				}
+			} else if(asyncResultWriter != null){
+				asyncResultWriter.publish(targetsToCalculate[i], calculatorResults[i]);
+			} else {
+				targetsToCalculate[i].writeResult(calculatorResults[i]);
+			}
+		}
+	}
+
+	/**
+	 * Waits for every result to be written, only needed when results are written asynchronously
+	 * @throws IOException Thrown if writing a result failed
+	 */
+	public void finish() throws IOException{
+		if(asyncResultWriter != null){
+			asyncResultWriter.finish();
+		}
+	}
+
+	MasterBook getMasterBook() {
+		return masterBook;
+	}
+
+	void setStageMetrics(StageMetrics stageMetrics) {
+		this.stageMetrics = stageMetrics;
+	}
+}
@@ -0,0 +1,338 @@
+package stocks.solver.raul;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Class containing the state kept for one target size: the price levels used by its last profit and cost
+ * calculations, which decide whether the next order needs a recalculation, and the last results written out.
+ * @author Raul
+ *
+ */
+public class PricingTarget {
+
+	private final int target;
+	// Position of this target in its book's targets
+	private final int index;
+
+	// Result of the latest order applied to the book for this target
+	private final UpdateBookResult updateBookResult = new UpdateBookResult();
+
+	// How often the checks below pay off
+	private final RecalculationCounters counters;
+
+	// Worst prices used for the last profit/cost calculation and the shares used at those prices.  Primarily used to
+	// determine whether or not a profit/cost calculation is really needed after a reduce order.
+	// Prices are in ticks, see Prices
+	private long lowestBidPriceUsed = 0;
+	private long highestAskPriceUsed = Long.MAX_VALUE;
+	private int sharesUsedAtLowestBidPrice = 0;
+	private int sharesUsedAtHighestAskPrice = 0;
+
+	// Set when the price level used last in a calculation has since been emptied, even if shares were added back to
+	// that price afterwards the shares used in the calculation are gone
+	private boolean lowestBidPriceLevelRemoved = false;
+	private boolean highestAskPriceLevelRemoved = false;
+
+	// Calculations only start once the market has had enough shares for the target
+	private boolean canStartBidCalc = false;
+	private boolean canStartAskCalc = false;
+
+	// Only output unique calculations, IE, don't output the same result twice.  Results are compared by value, which
+	// is the same as comparing their text without the timestamp, so nothing is formatted unless it is written.
+	private boolean profitWritten = false;
+	private boolean previousProfitAvailable;
+	private long previousProfit;
+	private boolean costWritten = false;
+	private boolean previousCostAvailable;
+	private long previousCost;
+
+	private OutputSink output;
+
+	/**
+	 * Constructor for PricingTarget
+	 * @param target Number of target shares
+	 * @param index Position of this target in its book's targets
+	 */
+	public PricingTarget(int target, int index){
+		this.target = target;
+		this.index = index;
+		this.counters = new RecalculationCounters(target);
+	}
+
+	/**
+	 * Decides whether shares added to the bids need a recalculation of profit
+	 * @param price Price of the added shares, in ticks
+	 * @param priorBidSize Total bid shares before the add
+	 * @param totalBidSize Total bid shares after the add
+	 */
+	void checkBidAdd(long price, int priorBidSize, int totalBidSize){
+		//  Latest order's price is better than the lowest bid price used, there is more profit to be made
+		if(price > lowestBidPriceUsed){
+			updateBookResult.setRecalculateProfit(true);
+			counters.triggered(RecalculationCounters.PROFIT, RecalculationCounters.Trigger.BETTER_PRICE);
+		}
+
+		// Shares added to market put us at or over target where before we were below target, must recalculate profit
+		if(priorBidSize < target && totalBidSize >= target){
+			updateBookResult.setRecalculateProfit(true);
+			counters.triggered(RecalculationCounters.PROFIT, RecalculationCounters.Trigger.TARGET_CROSSED);
+		}
+	}
+
+	/**
+	 * Decides whether shares added to the asks need a recalculation of cost
+	 * @param price Price of the added shares, in ticks
+	 * @param priorAskSize Total ask shares before the add
+	 * @param totalAskSize Total ask shares after the add
+	 */
+	void checkAskAdd(long price, int priorAskSize, int totalAskSize){
+		//  Latest order's price is better than the highest ask price used, there is money to be saved
+		if(price < highestAskPriceUsed){
+			updateBookResult.setRecalculateCost(true);
+			counters.triggered(RecalculationCounters.COST, RecalculationCounters.Trigger.BETTER_PRICE);
+		}
+
+		// Shares added to market put us at or over target where before we were below target, must recalculate cost
+		if(priorAskSize < target && totalAskSize >= target){
+			updateBookResult.setRecalculateCost(true);
+			counters.triggered(RecalculationCounters.COST, RecalculationCounters.Trigger.TARGET_CROSSED);
+		}
+	}
+
+	/**
+	 * Decides whether shares reduced from the bids need a recalculation of profit
+	 * @param price Price of the reduced order, in ticks
+	 * @param sharesLeftAtPrice Shares left at that price level after the reduction, 0 if the level was removed
+	 */
+	void checkBidReduce(long price, int sharesLeftAtPrice){
+		if(sharesLeftAtPrice == 0 && price == lowestBidPriceUsed){
+			lowestBidPriceLevelRemoved = true;
+		}
+
+		// Reduction in market order *may* cause a recalculation in profit to occur
+		if(price >= lowestBidPriceUsed){
+			if(price == lowestBidPriceUsed){
+				int sharesLeftAtOrder = lowestBidPriceLevelRemoved ? 0 : sharesLeftAtPrice;
+				// Reduction order will cause lowest bid price level used to not have enough shares between it and
+				// all the other price levels above to fulfill the target, must recalculate profit.  Otherwise
+				// no recalculation needed.
+				if(sharesLeftAtOrder < sharesUsedAtLowestBidPrice){
+					updateBookResult.setRecalculateProfit(true);
+					counters.triggered(RecalculationCounters.PROFIT, RecalculationCounters.Trigger.LEVEL_DEPLETED);
+				}
+			} else{
+				updateBookResult.setRecalculateProfit(true);
+				counters.triggered(RecalculationCounters.PROFIT, RecalculationCounters.Trigger.INSIDE_REDUCE);
+			}
+		}
+	}
+
+	/**
+	 * Decides whether shares reduced from the asks need a recalculation of cost
+	 * @param price Price of the reduced order, in ticks
+	 * @param sharesLeftAtPrice Shares left at that price level after the reduction, 0 if the level was removed
+	 */
+	void checkAskReduce(long price, int sharesLeftAtPrice){
+		if(sharesLeftAtPrice == 0 && price == highestAskPriceUsed){
+			highestAskPriceLevelRemoved = true;
+		}
+
+		// Reduction in market order *may* cause a recalculation in cost to occur
+		if(price <= highestAskPriceUsed){
+			if(price == highestAskPriceUsed){
+				int sharesLeftAtOrder = highestAskPriceLevelRemoved ? 0 : sharesLeftAtPrice;
+				// Reduction order will cause highest ask price level used to not have enough shares between it and
+				// all the other price levels below it to fulfill the target, must recalculate cost.  Otherwise
+				// no recalculation needed.
+				if(sharesLeftAtOrder < sharesUsedAtHighestAskPrice){
+					updateBookResult.setRecalculateCost(true);
+					counters.triggered(RecalculationCounters.COST, RecalculationCounters.Trigger.LEVEL_DEPLETED);
+				}
+			} else{
+				updateBookResult.setRecalculateCost(true);
+				counters.triggered(RecalculationCounters.COST, RecalculationCounters.Trigger.INSIDE_REDUCE);
+			}
+		}
+	}
+
+	/**
+	 * Records the lowest bid price level used by a profit calculation
+	 * @param price Lowest bid price used, in ticks
+	 * @param sharesUsed Shares used at that price
+	 */
+	void setLowestBidPriceLevelUsed(long price, int sharesUsed) {
+		this.lowestBidPriceUsed = price;
+		this.sharesUsedAtLowestBidPrice = sharesUsed;
+		this.lowestBidPriceLevelRemoved = false;
+	}
+
+	/**
+	 * Records the highest ask price level used by a cost calculation
+	 * @param price Highest ask price used, in ticks
+	 * @param sharesUsed Shares used at that price
+	 */
+	void setHighestAskPriceLevelUsed(long price, int sharesUsed) {
+		this.highestAskPriceUsed = price;
+		this.sharesUsedAtHighestAskPrice = sharesUsed;
+		this.highestAskPriceLevelRemoved = false;
+	}
+
+	/**
+	 * Writes a result out unless it is the same as the previous result on that side
+	 * @param calcResult Result to write
+	 * @throws IOException Thrown if writing the result fails
+	 */
+	void writeResult(CalculatorResult calcResult) throws IOException{
+		boolean available = calcResult.isAvailable();
+		long amount = calcResult.getAmount();
+
+		// Profit results come from the bids, cost results from the asks
+		if(calcResult.getSide().equals(OrderSide.S)){
+			if(profitWritten && previousProfitAvailable == available && previousProfit == amount){
+				counters.suppressed(RecalculationCounters.PROFIT);
+				return;
+			}
+			counters.written(RecalculationCounters.PROFIT);
+			profitWritten = true;
+			previousProfitAvailable = available;
+			previousProfit = amount;
+		} else if(calcResult.getSide().equals(OrderSide.B)){
+			if(costWritten && previousCostAvailable == available && previousCost == amount){
+				counters.suppressed(RecalculationCounters.COST);
+				return;
+			}
+			counters.written(RecalculationCounters.COST);
+			costWritten = true;
+			previousCostAvailable = available;
+			previousCost = amount;
+		}
+
+		calcResult.writeTo(output);
+	}
+
+	/**
+	 * Writes everything that decides on recalculations and repeated results, for a {@link BookCheckpoint}
+	 * @param out Where to write
+	 * @throws IOException Thrown if writing fails
+	 */
+	void writeState(DataOutput out) throws IOException{
+		out.writeLong(lowestBidPriceUsed);
+		out.writeLong(highestAskPriceUsed);
+		out.writeInt(sharesUsedAtLowestBidPrice);
+		out.writeInt(sharesUsedAtHighestAskPrice);
+		out.writeBoolean(lowestBidPriceLevelRemoved);
+		out.writeBoolean(highestAskPriceLevelRemoved);
+		out.writeBoolean(canStartBidCalc);
+		out.writeBoolean(canStartAskCalc);
+		out.writeBoolean(profitWritten);
+		out.writeBoolean(previousProfitAvailable);
+		out.writeLong(previousProfit);
+		out.writeBoolean(costWritten);
+		out.writeBoolean(previousCostAvailable);
+		out.writeLong(previousCost);
+	}
+
+	/**
+	 * Reads back the state written by writeState
+	 * @param in Where to read from
+	 * @throws IOException Thrown if reading fails
+	 */
+	void readState(DataInput in) throws IOException{
+		lowestBidPriceUsed = in.readLong();
+		highestAskPriceUsed = in.readLong();
+		sharesUsedAtLowestBidPrice = in.readInt();
+		sharesUsedAtHighestAskPrice = in.readInt();
+		lowestBidPriceLevelRemoved = in.readBoolean();
+		highestAskPriceLevelRemoved = in.readBoolean();
+		canStartBidCalc = in.readBoolean();
+		canStartAskCalc = in.readBoolean();
+		profitWritten = in.readBoolean();
+		previousProfitAvailable = in.readBoolean();
+		previousProfit = in.readLong();
+		costWritten = in.readBoolean();
+		previousCostAvailable = in.readBoolean();
+		previousCost = in.readLong();
+	}
+
+	int getTarget() {
+		return target;
+	}
+
+	int getIndex() {
+		return index;
+	}
+
+	UpdateBookResult getUpdateBookResult() {
+		return updateBookResult;
+	}
+
+	RecalculationCounters getCounters() {
+		return counters;
+	}
+
+	long getLowestBidPriceUsed() {
+		return lowestBidPriceUsed;
+	}
+
+	long getHighestAskPriceUsed() {
+		return highestAskPriceUsed;
+	}
+
+	int getSharesUsedAtLowestBidPrice() {
+		return sharesUsedAtLowestBidPrice;
+	}
+
+	int getSharesUsedAtHighestAskPrice() {
+		return sharesUsedAtHighestAskPrice;
+	}
+
+	boolean canStartBidCalc() {
+		return canStartBidCalc;
+	}
+
+	void setCanStartBidCalc(boolean canStartBidCalc) {
+		this.canStartBidCalc = canStartBidCalc;
+	}
+
+	boolean canStartAskCalc() {
+		return canStartAskCalc;
+	}
+
+	void setCanStartAskCalc(boolean canStartAskCalc) {
+		this.canStartAskCalc = canStartAskCalc;
+	}
+
+	boolean isProfitWritten() {
+		return profitWritten;
+	}
+
+	boolean isPreviousProfitAvailable() {
+		return previousProfitAvailable;
+	}
+
+	long getPreviousProfit() {
+		return previousProfit;
+	}
+
+	boolean isCostWritten() {
+		return costWritten;
+	}
+
+	boolean isPreviousCostAvailable() {
+		return previousCostAvailable;
+	}
+
+	long getPreviousCost() {
+		return previousCost;
+	}
+
+	OutputSink getOutput() {
+		return output;
+	}
+
+	void setOutput(OutputSink output) {
+		this.output = output;
+	}
+}
@@ -0,0 +1,178 @@
+package stocks.solver.raul;
+
+/**
+ * Counts of how often the recalculation checks of a {@link PricingTarget} pay off, for the profit side and the cost
+ * side: what triggered each recalculation, how many orders needed one and how many did not, and how many results
+ * were written against how many were the same as the last result and left out.  A recalculation may have more than
+ * one trigger, for example an add at a better price that also takes the book past the target.
+ * <p>
+ * Counters are plain fields updated by the thread applying orders.  Other threads read copies, see
+ * {@link EngineStats}.  The getters are public so the copies can be read over JMX.
+ * @author Raul
+ *
+ */
+public class RecalculationCounters {
+
+	enum Trigger {
+		// An add at a better price than the boundary price level used by the last calculation
+		BETTER_PRICE,
+		// An add that takes the side's total shares past the target
+		TARGET_CROSSED,
+		// A reduce at the boundary price level leaving fewer shares there than the last calculation used
+		LEVEL_DEPLETED,
+		// A reduce at a better price than the boundary, inside the levels the last calculation used
+		INSIDE_REDUCE
+	}
+
+	static final int PROFIT = 0;
+	static final int COST = 1;
+
+	private static final int TRIGGERS = Trigger.values().length;
+
+	private final int target;
+
+	// Indexed by PROFIT or COST
+	private final long[][] triggers = new long[2][TRIGGERS];
+	private final long[] recalculated = new long[2];
+	private final long[] skipped = new long[2];
+	private final long[] written = new long[2];
+	private final long[] suppressed = new long[2];
+
+	/**
+	 * Constructor for RecalculationCounters
+	 * @param target Number of target shares of the counted target
+	 */
+	RecalculationCounters(int target){
+		this.target = target;
+	}
+
+	/**
+	 * Constructor for a copy of the counters as they are now
+	 * @param other Counters to copy
+	 */
+	RecalculationCounters(RecalculationCounters other){
+		this.target = other.target;
+		for(int side = PROFIT; side <= COST; side++){
+			System.arraycopy(other.triggers[side], 0, triggers[side], 0, TRIGGERS);
+			recalculated[side] = other.recalculated[side];
+			skipped[side] = other.skipped[side];
+			written[side] = other.written[side];
+			suppressed[side] = other.suppressed[side];
+		}
+	}
+
+	void triggered(int side, Trigger trigger){
+		triggers[side][trigger.ordinal()]++;
+	}
+
+	/**
+	 * Counts an order on the side that needed a recalculation
+	 */
+	void recalculated(int side){
+		recalculated[side]++;
+	}
+
+	/**
+	 * Counts an order on the side that did not need a recalculation
+	 */
+	void skipped(int side){
+		skipped[side]++;
+	}
+
+	void written(int side){
+		written[side]++;
+	}
+
+	/**
+	 * Counts a result left out for being the same as the last result written
+	 */
+	void suppressed(int side){
+		suppressed[side]++;
+	}
+
+	/**
+	 * @return Counts of one side as a line of text
+	 */
+	String describe(int side){
+		long[] sideTriggers = triggers[side];
+		return "target " + target + (side == PROFIT ? " profit: " : " cost: ")
+				+ recalculated[side] + " recalculated, " + skipped[side] + " skipped, triggered by "
+				+ sideTriggers[Trigger.BETTER_PRICE.ordinal()] + " better price, "
+				+ sideTriggers[Trigger.TARGET_CROSSED.ordinal()] + " target crossed, "
+				+ sideTriggers[Trigger.LEVEL_DEPLETED.ordinal()] + " level depleted, "
+				+ sideTriggers[Trigger.INSIDE_REDUCE.ordinal()] + " inside reduce, "
+				+ written[side] + " written, " + suppressed[side] + " suppressed";
+	}
+
+	long getTriggered(int side, Trigger trigger) {
+		return triggers[side][trigger.ordinal()];
+	}
+
+	public int getTarget() {
+		return target;
+	}
+
+	public long getProfitRecalculated() {
+		return recalculated[PROFIT];
+	}
+
+	public long getProfitSkipped() {
+		return skipped[PROFIT];
+	}
+
+	public long getProfitBetterPrice() {
+		return triggers[PROFIT][Trigger.BETTER_PRICE.ordinal()];
+	}
+
+	public long getProfitTargetCrossed() {
+		return triggers[PROFIT][Trigger.TARGET_CROSSED.ordinal()];
+	}
+
+	public long getProfitLevelDepleted() {
+		return triggers[PROFIT][Trigger.LEVEL_DEPLETED.ordinal()];
+	}
+
+	public long getProfitInsideReduce() {
+		return triggers[PROFIT][Trigger.INSIDE_REDUCE.ordinal()];
+	}
+
+	public long getProfitWritten() {
+		return written[PROFIT];
+	}
+
+	public long getProfitSuppressed() {
+		return suppressed[PROFIT];
+	}
+
+	public long getCostRecalculated() {
+		return recalculated[COST];
+	}
+
+	public long getCostSkipped() {
+		return skipped[COST];
+	}
+
+	public long getCostBetterPrice() {
+		return triggers[COST][Trigger.BETTER_PRICE.ordinal()];
+	}
+
+	public long getCostTargetCrossed() {
+		return triggers[COST][Trigger.TARGET_CROSSED.ordinal()];
+	}
+
+	public long getCostLevelDepleted() {
+		return triggers[COST][Trigger.LEVEL_DEPLETED.ordinal()];
+	}
+
+	public long getCostInsideReduce() {
+		return triggers[COST][Trigger.INSIDE_REDUCE.ordinal()];
+	}
+
+	public long getCostWritten() {
+		return written[COST];
+	}
+
+	public long getCostSuppressed() {
+		return suppressed[COST];
+	}
+}
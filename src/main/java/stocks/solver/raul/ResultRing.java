@@ -0,0 +1,130 @@
+package stocks.solver.raul;
+
+/**
+ * Single producer, single consumer ring of compact result records: target index, timestamp, symbol, side and
+ * amount in ticks or NA.  Records live in preallocated primitive arrays, so publishing and polling allocate nothing, and are
+ * handed over by a {@link RingSequencer}.
+ * @author Raul
+ *
+ */
+public class ResultRing {
+
+	private final RingSequencer sequencer;
+
+	private final int[] targetIndexes;
+	private final long[] timestamps;
+	private final long[] sequences;
+	private final String[] symbols;
+	private final OrderSide[] sides;
+	private final boolean[] available;
+	private final long[] amounts;
+
+	// Written by the consumer once it takes no more results
+	private volatile boolean closed = false;
+
+	/**
+	 * Constructor for ResultRing
+	 * @param capacity Number of records the ring holds, a power of two
+	 */
+	public ResultRing(int capacity){
+		this.sequencer = new RingSequencer(capacity);
+		this.targetIndexes = new int[capacity];
+		this.timestamps = new long[capacity];
+		this.sequences = new long[capacity];
+		this.symbols = new String[capacity];
+		this.sides = new OrderSide[capacity];
+		this.available = new boolean[capacity];
+		this.amounts = new long[capacity];
+	}
+
+	/**
+	 * Publishes a result, producer only
+	 * @param targetIndex Position of the result's target in its book's targets
+	 * @param calcResult Result to publish
+	 * @return false if the ring is full and nothing was published
+	 */
+	boolean offer(int targetIndex, CalculatorResult calcResult){
+		long sequence = sequencer.tryClaim();
+		if(sequence == RingSequencer.NONE){
+			return false;
+		}
+
+		int slot = sequencer.slot(sequence);
+		targetIndexes[slot] = targetIndex;
+		timestamps[slot] = calcResult.getTimestamp();
+		sequences[slot] = calcResult.getSequence();
+		symbols[slot] = calcResult.getSymbol();
+		sides[slot] = calcResult.getSide();
+		available[slot] = calcResult.isAvailable();
+		amounts[slot] = calcResult.getAmount();
+
+		sequencer.publish(sequence);
+		return true;
+	}
+
+	/**
+	 * Says no more results will be published, producer only, see {@link RingSequencer#finish()}
+	 */
+	void finish(){
+		sequencer.finish();
+	}
+
+	/**
+	 * @return True once the producer has finished, see {@link RingSequencer#isFinished()}
+	 */
+	boolean isFinished(){
+		return sequencer.isFinished();
+	}
+
+	/**
+	 * Says no more results will be taken, consumer only.  A producer waiting for room then gives up.
+	 */
+	void close(){
+		closed = true;
+	}
+
+	/**
+	 * @return True once the consumer has closed the ring
+	 */
+	boolean isClosed(){
+		return closed;
+	}
+
+	/**
+	 * Looks at the oldest result without taking it, consumer only
+	 * @return Input sequence of the oldest result, RingSequencer.NONE if the ring is empty
+	 */
+	long peekSequence(){
+		long sequence = sequencer.tryTake();
+		if(sequence == RingSequencer.NONE){
+			return RingSequencer.NONE;
+		}
+
+		return sequences[sequencer.slot(sequence)];
+	}
+
+	/**
+	 * Takes the oldest result, consumer only
+	 * @param calcResult Receives the result
+	 * @return Position of the result's target in its book's targets, -1 if the ring is empty
+	 */
+	int poll(CalculatorResult calcResult){
+		long sequence = sequencer.tryTake();
+		if(sequence == RingSequencer.NONE){
+			return -1;
+		}
+
+		int slot = sequencer.slot(sequence);
+		int targetIndex = targetIndexes[slot];
+		if(available[slot]){
+			calcResult.setAmount(timestamps[slot], sides[slot], amounts[slot]);
+		} else {
+			calcResult.setNotAvailable(timestamps[slot], sides[slot]);
+		}
+		calcResult.setSequence(sequences[slot]);
+		calcResult.setSymbol(symbols[slot]);
+
+		sequencer.release(sequence);
+		return targetIndex;
+	}
+}
@@ -0,0 +1,129 @@
+package stocks.solver.raul;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sequences the slots of a single producer, single consumer ring buffer.  The producer claims the next sequence,
+ * fills the slot it maps to and publishes it; the consumer takes published sequences in order and releases each
+ * slot once done with it.  Each side only writes its own sequence and only reads the other's when it looks out of
+ * room or out of work, so the slots themselves can be plain preallocated arrays.
+ * @author Raul
+ *
+ */
+public class RingSequencer {
+
+	static final long NONE = -1;
+
+	private final int mask;
+
+	// Next sequence to publish, only written by the producer
+	private final AtomicLong published = new AtomicLong();
+	// Next sequence to take, only written by the consumer
+	private final AtomicLong released = new AtomicLong();
+
+	// Last released sequence seen by the producer and last published sequence seen by the consumer
+	private long cachedReleased = 0;
+	private long cachedPublished = 0;
+
+	// Written by the producer once it will publish nothing more
+	private volatile boolean finished = false;
+
+	/**
+	 * Constructor for RingSequencer
+	 * @param capacity Number of slots in the ring, a power of two
+	 */
+	public RingSequencer(int capacity){
+		if(capacity < 1 || Integer.bitCount(capacity) != 1){
+			throw new IllegalArgumentException("Ring capacity must be a power of two: " + capacity);
+		}
+		this.mask = capacity - 1;
+	}
+
+	/**
+	 * Producer only
+	 * @return Next sequence to fill, NONE if the ring is full
+	 */
+	long tryClaim(){
+		long sequence = published.get();
+
+		if(sequence - cachedReleased > mask){
+			cachedReleased = released.get();
+			if(sequence - cachedReleased > mask){
+				return NONE;
+			}
+		}
+
+		return sequence;
+	}
+
+	/**
+	 * Makes a filled sequence visible to the consumer, producer only
+	 * @param sequence Sequence given by tryClaim
+	 */
+	void publish(long sequence){
+		// Ordered write, the slot contents are visible to the consumer before the new sequence is
+		published.lazySet(sequence + 1);
+	}
+
+	/**
+	 * Says no more sequences will be published, producer only, after its last publish
+	 */
+	void finish(){
+		finished = true;
+	}
+
+	/**
+	 * Safe to call from any thread.  Finished is only set after the last publish, so a consumer that reads it
+	 * before finding nothing to take has taken everything.
+	 * @return True once the producer has finished
+	 */
+	boolean isFinished(){
+		return finished;
+	}
+
+	/**
+	 * Consumer only
+	 * @return Oldest published sequence not yet released, NONE if there is none
+	 */
+	long tryTake(){
+		long sequence = released.get();
+
+		if(sequence == cachedPublished){
+			cachedPublished = published.get();
+			if(sequence == cachedPublished){
+				return NONE;
+			}
+		}
+
+		return sequence;
+	}
+
+	/**
+	 * Hands a slot back to the producer, consumer only
+	 * @param sequence Sequence given by tryTake
+	 */
+	void release(long sequence){
+		released.lazySet(sequence + 1);
+	}
+
+	/**
+	 * Safe to call from any thread
+	 * @return True if every sequence published so far has been released
+	 */
+	boolean isDrained(){
+		long publishedSoFar = published.get();
+		return released.get() >= publishedSoFar;
+	}
+
+	/**
+	 * @param sequence Sequence of a slot
+	 * @return Index of the slot in the ring's arrays
+	 */
+	int slot(long sequence){
+		return (int) sequence & mask;
+	}
+
+	int capacity() {
+		return mask + 1;
+	}
+}
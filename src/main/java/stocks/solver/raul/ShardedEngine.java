@@ -0,0 +1,268 @@
+package stocks.solver.raul;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Prices many instruments at once, one book per symbol.  Symbols are sharded across a fixed pool of worker threads
+ * by hash, so every book only ever has the one thread applying orders to it and needs no locks.  The calling thread
+ * decodes the input and routes each order to its symbol's shard, and a writer thread writes the results of all
+ * shards.  Results of a symbol are written in input order, results of different symbols may interleave in any order.
+ * If a shard or the writer thread fails the others stop too, and the failure is thrown on the calling thread.
+ * @author Raul
+ *
+ */
+public class ShardedEngine {
+
+	private static final Logger log = Logger.getLogger(ShardedEngine.class.getName());
+
+	static final int ORDER_RING_CAPACITY = 16 * 1024;
+	static final int RESULT_RING_CAPACITY = 16 * 1024;
+
+	private final int[] targets;
+	private final OutputSink[] outputs;
+	private final Shard[] shards;
+
+	// First failure of a shard or the writer thread, after which they all stop
+	private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+	/**
+	 * Constructor for ShardedEngine
+	 * @param targets Numbers of target shares, every symbol is priced against all of them
+	 * @param priceLevelsType Implementation to use for the price levels of each book
+	 * @param incremental True to keep the profit and cost fills up to date on every order
+	 * @param shardCount Number of worker threads
+	 * @param outputs Where to write the results of each target, in the same order as targets
+	 */
+	public ShardedEngine(int[] targets, PriceLevelsType priceLevelsType, boolean incremental, int shardCount, OutputSink[] outputs){
+		this.targets = targets;
+		this.outputs = outputs;
+		this.shards = new Shard[shardCount];
+
+		for(int i = 0; i < shardCount; i++){
+			shards[i] = new Shard(targets, priceLevelsType, incremental, "shard-" + i);
+		}
+	}
+
+	/**
+	 * Processes all of the input, returning once every result has been written
+	 * @param lineSource Input in the extended format with a symbol column
+	 * @param orderDecoder Decoder for the input, made with a {@link SymbolTable}
+	 * @throws IOException Thrown if reading the input or writing results failed
+	 * @throws RuntimeException Thrown if a shard or the writer thread failed on an order it could not handle
+	 */
+	public void run(LineSource lineSource, OrderDecoder orderDecoder) throws IOException{
+		Thread writerThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeResults();
+			}
+		}, "shard-writer");
+		writerThread.setDaemon(true);
+
+		for(Shard shard : shards){
+			shard.start();
+		}
+		writerThread.start();
+
+		try{
+			Order reusableOrder = new Order();
+
+			while(lineSource.nextLine() && lineSource.getLineLength() != 0){
+				Order order = EngineThreads.decode(lineSource, orderDecoder, reusableOrder);
+				if(order != null){
+					route(order);
+				}
+			}
+		} finally {
+			for(Shard shard : shards){
+				shard.finish();
+			}
+			EngineThreads.join(writerThread);
+		}
+
+		checkFailure();
+	}
+
+	private void checkFailure() throws IOException{
+		Throwable failed = failure.get();
+		if(failed != null){
+			EngineThreads.throwFailure(failed);
+		}
+	}
+
+	/**
+	 * @return Shard that owns the book of a symbol
+	 */
+	int shardOf(String symbol){
+		return (symbol.hashCode() & Integer.MAX_VALUE) % shards.length;
+	}
+
+	private void route(Order order) throws IOException{
+		Shard shard = shards[shardOf(order.getSymbol())];
+
+		while(!shard.offer(order)){
+			// A shard that failed takes no more orders
+			checkFailure();
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * Body of the writer thread, takes results from each shard in turn.  Each symbol keeps its own copy of the
+	 * targets so results are only compared against earlier results of the same symbol.
+	 */
+	private void writeResults(){
+		Map<String, PricingTarget[]> symbolTargets = new HashMap<String, PricingTarget[]>();
+		CalculatorResult calcResult = new CalculatorResult();
+		int emptyPolls = 0;
+
+		try {
+			while(true){
+				// Read before polling, a shard is only done after publishing its last result
+				boolean allDone = true;
+				for(Shard shard : shards){
+					allDone &= shard.done;
+				}
+
+				boolean wroteAny = false;
+				for(Shard shard : shards){
+					int targetIndex;
+					while((targetIndex = shard.resultRing.poll(calcResult)) != -1){
+						PricingTarget[] pricingTargets = symbolTargets.get(calcResult.getSymbol());
+						if(pricingTargets == null){
+							pricingTargets = newOutputTargets();
+							symbolTargets.put(calcResult.getSymbol(), pricingTargets);
+						}
+
+						pricingTargets[targetIndex].writeResult(calcResult);
+						wroteAny = true;
+					}
+				}
+
+				if(wroteAny){
+					emptyPolls = 0;
+				} else if(allDone || failure.get() != null){
+					return;
+				} else {
+					EngineThreads.idle(++emptyPolls);
+				}
+			}
+		} catch (Throwable t) {
+			failure.compareAndSet(null, t);
+		} finally {
+			// Shards waiting for room in a ring stop rather than wait for good
+			for(Shard shard : shards){
+				shard.resultRing.close();
+			}
+		}
+	}
+
+	private PricingTarget[] newOutputTargets(){
+		PricingTarget[] pricingTargets = new PricingTarget[targets.length];
+
+		for(int i = 0; i < targets.length; i++){
+			pricingTargets[i] = new PricingTarget(targets[i], i);
+			pricingTargets[i].setOutput(outputs[i]);
+		}
+
+		return pricingTargets;
+	}
+
+	/**
+	 * Worker thread owning the books of every symbol hashed to it
+	 */
+	private class Shard implements Runnable {
+
+		private final RingSequencer orderSequencer = new RingSequencer(ORDER_RING_CAPACITY);
+		private final Order[] orders = new Order[ORDER_RING_CAPACITY];
+
+		private final int[] targets;
+		private final PriceLevelsType priceLevelsType;
+		private final boolean incremental;
+
+		// Engine of each symbol's book, only touched by the shard's thread
+		private final Map<String, PricingEngine> pricingEngines = new HashMap<String, PricingEngine>();
+		private final ResultRing resultRing = new ResultRing(RESULT_RING_CAPACITY);
+		private final Thread thread;
+
+		// Written by the shard once every order offered has been processed, or once it failed
+		private volatile boolean done = false;
+
+		Shard(int[] targets, PriceLevelsType priceLevelsType, boolean incremental, String name){
+			for(int i = 0; i < orders.length; i++){
+				orders[i] = new Order();
+			}
+			this.targets = targets;
+			this.priceLevelsType = priceLevelsType;
+			this.incremental = incremental;
+			this.thread = new Thread(this, name);
+			this.thread.setDaemon(true);
+		}
+
+		void start(){
+			thread.start();
+		}
+
+		/**
+		 * Copies an order into the next free slot, routing thread only
+		 * @return false if there is no free slot
+		 */
+		boolean offer(Order order){
+			long sequence = orderSequencer.tryClaim();
+			if(sequence == RingSequencer.NONE){
+				return false;
+			}
+
+			orders[orderSequencer.slot(sequence)].copyFrom(order);
+			orderSequencer.publish(sequence);
+			return true;
+		}
+
+		/**
+		 * Lets the shard stop once it has processed every order offered, then waits for it
+		 */
+		void finish(){
+			orderSequencer.finish();
+			LockSupport.unpark(thread);
+			EngineThreads.join(thread);
+		}
+
+		private PricingEngine pricingEngine(String symbol){
+			PricingEngine pricingEngine = pricingEngines.get(symbol);
+
+			if(pricingEngine == null){
+				pricingEngine = new PricingEngine(new MasterBook(targets, priceLevelsType, incremental), resultRing);
+				pricingEngines.put(symbol, pricingEngine);
+			}
+
+			return pricingEngine;
+		}
+
+		@Override
+		public void run(){
+			try {
+				long sequence;
+				while((sequence = EngineThreads.take(orderSequencer)) != RingSequencer.NONE){
+					Order order = orders[orderSequencer.slot(sequence)];
+					try {
+						pricingEngine(order.getSymbol()).process(order);
+					} catch (ReduceMarketLookupException e) {
+						log.log(Level.SEVERE, "Bad market reduction order, skipping it", e);
+					}
+					orderSequencer.release(sequence);
+				}
+			} catch (Throwable t) {
+				// An order the book cannot take, or the result ring closed by a failed writer thread
+				failure.compareAndSet(null, t);
+			} finally {
+				done = true;
+			}
+		}
+	}
+}
@@ -0,0 +1,272 @@
+package stocks.solver.raul;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Prices the bid and ask sides of the market on separate threads.  Nothing about profit depends on the asks or
+ * about cost on the bids, so the input is split by side: the calling thread decodes and routes each order, looking
+ * up the side of reduces in its own order index, and each side has a worker thread with its own {@link MasterBook}
+ * and {@link PricingEngine}.  A merge thread puts the results of both sides back into input order and writes them.
+ * If any of these threads fails the others stop too, and the failure is thrown on the calling thread.
+ * @author Raul
+ *
+ */
+public class SideSplitEngine {
+
+	private static final Logger log = Logger.getLogger(SideSplitEngine.class.getName());
+
+	static final int ORDER_RING_CAPACITY = 16 * 1024;
+	static final int RESULT_RING_CAPACITY = 64 * 1024;
+
+	// Side of every live order, kept by the routing thread
+	private final OrderIndex liveOrders = new OrderIndex();
+
+	private final SideWorker bidWorker;
+	private final SideWorker askWorker;
+
+	// Targets used by the merge thread to write results, in the same order as the workers' targets
+	private final PricingTarget[] outputTargets;
+
+	// First failure of a worker or the merge thread, after which they all stop
+	private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+	/**
+	 * Constructor for SideSplitEngine
+	 * @param targets Numbers of target shares
+	 * @param priceLevelsType Implementation to use for the price levels of each side
+	 * @param incremental True to keep the profit and cost fills up to date on every order
+	 * @param outputs Where to write the results of each target, in the same order as targets
+	 */
+	public SideSplitEngine(int[] targets, PriceLevelsType priceLevelsType, boolean incremental, OutputSink[] outputs){
+		this.bidWorker = new SideWorker(new MasterBook(targets, priceLevelsType, incremental), "bid-engine");
+		this.askWorker = new SideWorker(new MasterBook(targets, priceLevelsType, incremental), "ask-engine");
+
+		this.outputTargets = new PricingTarget[targets.length];
+		for(int i = 0; i < targets.length; i++){
+			outputTargets[i] = new PricingTarget(targets[i], i);
+			outputTargets[i].setOutput(outputs[i]);
+		}
+	}
+
+	/**
+	 * Processes all of the input, returning once every result has been written
+	 * @param lineSource Input
+	 * @param orderDecoder Decoder for the input
+	 * @throws IOException Thrown if reading the input or writing results failed
+	 * @throws RuntimeException Thrown if a worker or the merge thread failed on an order it could not handle
+	 */
+	public void run(LineSource lineSource, OrderDecoder orderDecoder) throws IOException{
+		Thread mergeThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				mergeResults();
+			}
+		}, "result-merge");
+		mergeThread.setDaemon(true);
+
+		bidWorker.start();
+		askWorker.start();
+		mergeThread.start();
+
+		try{
+			Order reusableOrder = new Order();
+			long sequence = 0;
+
+			while(lineSource.nextLine() && lineSource.getLineLength() != 0){
+				Order order = EngineThreads.decode(lineSource, orderDecoder, reusableOrder);
+				if(order == null){
+					continue;
+				}
+
+				order.setSequence(sequence++);
+				try {
+					route(order);
+				} catch (ReduceMarketLookupException e) {
+					log.log(Level.SEVERE, "Bad market reduction order, skipping it", e);
+				}
+			}
+		} finally {
+			bidWorker.finish();
+			askWorker.finish();
+			EngineThreads.join(mergeThread);
+		}
+
+		checkFailure();
+	}
+
+	private void checkFailure() throws IOException{
+		Throwable failed = failure.get();
+		if(failed != null){
+			EngineThreads.throwFailure(failed);
+		}
+	}
+
+	/**
+	 * Sends an order to the worker for its side, setting the side of a reduce from the order it reduces
+	 */
+	private void route(Order order) throws ReduceMarketLookupException, IOException{
+		if(order.getOrderAction().equals(OrderAction.ADD)){
+			liveOrders.put(order);
+		} else if(order.getOrderAction().equals(OrderAction.REDUCE)){
+			int slot = liveOrders.find(order);
+			if(slot == OrderIndex.NOT_FOUND){
+				throw new ReduceMarketLookupException("Cannot find order to reduce: " + order.toString());
+			}
+
+			order.setSide(liveOrders.getSide(slot));
+			liveOrders.reduce(slot, Math.min(liveOrders.getSize(slot), order.getSize()));
+		}
+
+		SideWorker sideWorker = order.getSide().equals(OrderSide.B) ? bidWorker : askWorker;
+		while(!sideWorker.offer(order)){
+			// A worker that failed takes no more orders
+			checkFailure();
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * Body of the merge thread.  Results of each side are already in input order, so the older of the two oldest
+	 * results can always be written.  When only one side has a result waiting it can be written once the other side
+	 * has nothing older left to process.
+	 */
+	private void mergeResults(){
+		CalculatorResult calcResult = new CalculatorResult();
+		int emptyPolls = 0;
+
+		try {
+			while(true){
+				long bidSequence = bidWorker.resultRing.peekSequence();
+				long askSequence = askWorker.resultRing.peekSequence();
+				SideWorker next = null;
+
+				if(bidSequence != RingSequencer.NONE && askSequence != RingSequencer.NONE){
+					next = bidSequence < askSequence ? bidWorker : askWorker;
+				} else if(bidSequence != RingSequencer.NONE && askWorker.isCaughtUpTo(bidSequence)){
+					// The ask side may have published an older result between its peek and catching up, and results
+					// are published before a side counts as caught up, so a second look sees it
+					askSequence = askWorker.resultRing.peekSequence();
+					next = askSequence != RingSequencer.NONE && askSequence < bidSequence ? askWorker : bidWorker;
+				} else if(askSequence != RingSequencer.NONE && bidWorker.isCaughtUpTo(askSequence)){
+					bidSequence = bidWorker.resultRing.peekSequence();
+					next = bidSequence != RingSequencer.NONE && bidSequence < askSequence ? bidWorker : askWorker;
+				}
+
+				if(next != null){
+					int targetIndex = next.resultRing.poll(calcResult);
+					outputTargets[targetIndex].writeResult(calcResult);
+					emptyPolls = 0;
+				} else if(bidWorker.done && askWorker.done && bidSequence == RingSequencer.NONE
+						&& askSequence == RingSequencer.NONE){
+					// Done is only set after a worker's last result, so both rings were empty for good when looked at
+					return;
+				} else if(failure.get() != null){
+					// A failed worker never catches up, nothing waiting can be put in order any more
+					return;
+				} else {
+					EngineThreads.idle(++emptyPolls);
+				}
+			}
+		} catch (Throwable t) {
+			failure.compareAndSet(null, t);
+		} finally {
+			// Workers waiting for room in a ring stop rather than wait for good
+			bidWorker.resultRing.close();
+			askWorker.resultRing.close();
+		}
+	}
+
+	/**
+	 * Applies the orders of one side of the market to its own book on its own thread
+	 */
+	private class SideWorker implements Runnable {
+
+		private final RingSequencer orderSequencer = new RingSequencer(ORDER_RING_CAPACITY);
+		private final Order[] orders = new Order[ORDER_RING_CAPACITY];
+
+		private final PricingEngine pricingEngine;
+		private final ResultRing resultRing = new ResultRing(RESULT_RING_CAPACITY);
+		private final Thread thread;
+
+		// Input sequence of the last order processed, written after its results are published
+		private final AtomicLong processedSequence = new AtomicLong(-1);
+
+		// Written by the worker once every order offered has been processed, or once it failed
+		private volatile boolean done = false;
+
+		SideWorker(MasterBook masterBook, String name){
+			for(int i = 0; i < orders.length; i++){
+				orders[i] = new Order();
+			}
+			this.pricingEngine = new PricingEngine(masterBook, resultRing);
+			this.thread = new Thread(this, name);
+			this.thread.setDaemon(true);
+		}
+
+		void start(){
+			thread.start();
+		}
+
+		/**
+		 * Copies an order into the next free slot, routing thread only
+		 * @return false if there is no free slot
+		 */
+		boolean offer(Order order){
+			long sequence = orderSequencer.tryClaim();
+			if(sequence == RingSequencer.NONE){
+				return false;
+			}
+
+			orders[orderSequencer.slot(sequence)].copyFrom(order);
+			orderSequencer.publish(sequence);
+			return true;
+		}
+
+		/**
+		 * Orders are routed in input order, so once every order offered so far is processed, or one past the given
+		 * sequence is, no result older than the sequence can still come from this side
+		 * @param sequence Input sequence of a result from the other side
+		 * @return True if this side will publish no result older than the sequence
+		 */
+		boolean isCaughtUpTo(long sequence){
+			return processedSequence.get() > sequence || orderSequencer.isDrained();
+		}
+
+		/**
+		 * Lets the worker stop once it has processed every order offered, then waits for it
+		 */
+		void finish(){
+			orderSequencer.finish();
+			LockSupport.unpark(thread);
+			EngineThreads.join(thread);
+		}
+
+		@Override
+		public void run(){
+			try {
+				long sequence;
+				while((sequence = EngineThreads.take(orderSequencer)) != RingSequencer.NONE){
+					Order order = orders[orderSequencer.slot(sequence)];
+					try {
+						pricingEngine.process(order);
+					} catch (ReduceMarketLookupException e) {
+						// Routing already checked the order is live, so this side's book has it too
+						log.log(Level.SEVERE, "Bad market reduction order, skipping it", e);
+					}
+					processedSequence.lazySet(order.getSequence());
+					orderSequencer.release(sequence);
+				}
+			} catch (Throwable t) {
+				// An order the book cannot take, or the result ring closed by a failed merge thread
+				failure.compareAndSet(null, t);
+			} finally {
+				done = true;
+			}
+		}
+	}
+}
@@ -0,0 +1,415 @@
+package stocks.solver.raul;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Command line options for {@link BookOrderSolver}
+ * @author Raul
+ *
+ */
+public class SolverOptions {
+
+	static final String USAGE = "usage: input target-size[,target-size...] [-out output-prefix] [-in input-file] [-levels tree|ladder|fenwick] [-incremental] [-flush bytes:count|events:count|end] [-async] [-pipeline] [-split] [-symbols [-shards count | -vthreads]] [-binary] [-binaryout] [-rawstdout] [-checkpoint file [-checkpointevery lines] [-restore]] [-journal file [-journalforce records]] [-metrics [-metricsevery seconds]] [-counters] [-jmx]"
+			+ "\n  ladder and fenwick levels move a side to tree levels once its prices span more than "
+			+ LadderPriceLevels.MAX_CAPACITY + " and " + FenwickPriceLevels.MAX_CAPACITY + " ticks";
+
+	private int[] targets;
+
+	// Results for each target go to output-prefix.target, null means standard out which takes a single target
+	private String outputPrefix = null;
+
+	// File to memory map for input, null means read standard input
+	private Path inputFile = null;
+
+	private PriceLevelsType priceLevelsType = PriceLevelsType.TREE;
+
+	// Keep the profit and cost up to date on every order rather than walking the book for each calculation
+	private boolean incremental = false;
+
+	// When buffered output is written out
+	private FlushPolicy flushPolicy = FlushPolicy.DEFAULT;
+
+	// Format and write results on a separate thread from pricing
+	private boolean async = false;
+
+	// Decode, price and write on three threads, see OrderPipeline
+	private boolean pipeline = false;
+
+	// Price the bid and ask sides on separate threads, see SideSplitEngine
+	private boolean split = false;
+
+	// Input has a symbol column, each symbol is priced on its own book, see ShardedEngine
+	private boolean symbols = false;
+	private int shards = Runtime.getRuntime().availableProcessors();
+	// Each symbol on its own thread instead of sharding, see VirtualThreadEngine
+	private boolean virtualThreads = false;
+
+	// Input is in the binary feed format, see BinaryFeed
+	private boolean binary = false;
+
+	// Results are written in the binary output format, see BinaryResults
+	private boolean binaryOutput = false;
+
+	// Standard out is written through its file descriptor rather than System.out, see OutputSink
+	private boolean rawStandardOut = false;
+
+	// Snapshots of the book for restarting, see BookCheckpoint
+	private Path checkpointFile;
+	private int checkpointInterval = BookCheckpoint.DEFAULT_INTERVAL;
+	// Start from the latest snapshot if there is one
+	private boolean restore = false;
+
+	// Journal of the applied orders for replaying the run, see OrderJournal
+	private Path journalFile;
+	private int journalForceInterval = OrderJournal.DEFAULT_FORCE_INTERVAL;
+
+	// Time each stage of handling an order, see StageMetrics
+	private boolean metrics = false;
+	// Seconds between interval reports, 0 for a report at the end only
+	private int metricsInterval = 0;
+
+	// Log how often recalculations were needed at the end of the run, see RecalculationCounters
+	private boolean counters = false;
+	// Publish the engine's statistics over JMX, see EngineStats
+	private boolean jmx = false;
+
+	/**
+	 * Parses the command line, the first argument is always the target size
+	 * @param args Command line arguments
+	 * @return Parsed options
+	 * @throws NumberFormatException Thrown on a bad target size
+	 * @throws IllegalArgumentException Thrown on an unknown or incomplete option
+	 */
+	static SolverOptions parse(String[] args){
+		SolverOptions options = new SolverOptions();
+		String[] targetParts = args[0].split(",");
+		int[] targets = new int[targetParts.length];
+		for(int i = 0; i < targetParts.length; i++){
+			targets[i] = Integer.valueOf(targetParts[i]);
+			for(int j = 0; j < i; j++){
+				if(targets[j] == targets[i]){
+					throw new IllegalArgumentException("Duplicate target: " + targets[i]);
+				}
+			}
+		}
+		options.setTargets(targets);
+
+		for(int i = 1; i < args.length; i++){
+			String option = args[i];
+
+			if(option.equals("-out")){
+				options.setOutputPrefix(value(args, ++i, option));
+			} else if(option.equals("-in")){
+				options.setInputFile(Paths.get(value(args, ++i, option)));
+			} else if(option.equals("-levels")){
+				options.setPriceLevelsType(PriceLevelsType.getPriceLevelsType(value(args, ++i, option)));
+			} else if(option.equals("-incremental")){
+				options.setIncremental(true);
+			} else if(option.equals("-async")){
+				options.setAsync(true);
+			} else if(option.equals("-pipeline")){
+				options.setPipeline(true);
+			} else if(option.equals("-split")){
+				options.setSplit(true);
+			} else if(option.equals("-symbols")){
+				options.setSymbols(true);
+			} else if(option.equals("-shards")){
+				options.setShards(positive(value(args, ++i, option), "shard count"));
+			} else if(option.equals("-vthreads")){
+				options.setVirtualThreads(true);
+			} else if(option.equals("-binary")){
+				options.setBinary(true);
+			} else if(option.equals("-binaryout")){
+				options.setBinaryOutput(true);
+			} else if(option.equals("-rawstdout")){
+				options.setRawStandardOut(true);
+			} else if(option.equals("-checkpoint")){
+				options.setCheckpointFile(Paths.get(value(args, ++i, option)));
+			} else if(option.equals("-checkpointevery")){
+				options.setCheckpointInterval(positive(value(args, ++i, option), "checkpoint interval"));
+			} else if(option.equals("-restore")){
+				options.setRestore(true);
+			} else if(option.equals("-journal")){
+				options.setJournalFile(Paths.get(value(args, ++i, option)));
+			} else if(option.equals("-journalforce")){
+				options.setJournalForceInterval(positive(value(args, ++i, option), "journal force interval"));
+			} else if(option.equals("-metrics")){
+				options.setMetrics(true);
+			} else if(option.equals("-metricsevery")){
+				options.setMetricsInterval(positive(value(args, ++i, option), "metrics interval"));
+			} else if(option.equals("-counters")){
+				options.setCounters(true);
+			} else if(option.equals("-jmx")){
+				options.setJmx(true);
+			} else if(option.equals("-flush")){
+				options.setFlushPolicy(FlushPolicy.getFlushPolicy(value(args, ++i, option)));
+			} else {
+				throw new IllegalArgumentException("Unknown option: " + option);
+			}
+		}
+
+		if(options.isVirtualThreads() && !options.isSymbols()){
+			throw new IllegalArgumentException("Thread per symbol needs input with symbols");
+		}
+
+		if(options.isBinary() && (options.isSymbols() || options.isSplit() || options.isPipeline())){
+			throw new IllegalArgumentException("Binary input is only read by the single threaded engine");
+		}
+
+		if(options.isRawStandardOut() && options.getOutputPrefix() != null){
+			throw new IllegalArgumentException("Raw standard out is only used without an output prefix");
+		}
+
+		if(options.isBinaryOutput() && options.isSymbols()){
+			throw new IllegalArgumentException("Binary output has no symbol column");
+		}
+
+		if(options.getCheckpointFile() != null && (options.getInputFile() == null || options.isBinary() || options.isSymbols()
+				|| options.isSplit() || options.isPipeline() || options.isAsync())){
+			throw new IllegalArgumentException("Checkpoints need text input from a file and the single threaded engine");
+		}
+
+		if(options.isRestore() && options.getCheckpointFile() == null){
+			throw new IllegalArgumentException("Restore needs a checkpoint file");
+		}
+
+		if(options.getJournalFile() != null && (options.isSymbols() || options.isSplit() || options.isPipeline())){
+			throw new IllegalArgumentException("Journaling needs the single threaded engine");
+		}
+
+		if(options.isMetrics() && (options.isSymbols() || options.isSplit() || options.isPipeline())){
+			throw new IllegalArgumentException("Metrics are only kept by the single threaded engine");
+		}
+
+		if((options.isCounters() || options.isJmx()) && (options.isSymbols() || options.isSplit() || options.isPipeline())){
+			throw new IllegalArgumentException("Counters and JMX statistics are only kept by the single threaded engine");
+		}
+
+		if(options.getMetricsInterval() > 0 && !options.isMetrics()){
+			throw new IllegalArgumentException("Metrics interval needs -metrics");
+		}
+
+		if(targets.length > 1 && options.getOutputPrefix() == null){
+			throw new IllegalArgumentException("Multiple targets need an output prefix");
+		}
+
+		return options;
+	}
+
+	/**
+	 * Helper function to get the value following an option
+	 */
+	private static int positive(String value, String name){
+		int number;
+		try{
+			number = Integer.valueOf(value);
+		} catch(NumberFormatException nfe){
+			throw new IllegalArgumentException("Bad " + name + ": " + value);
+		}
+
+		if(number < 1){
+			throw new IllegalArgumentException("Bad " + name + ": " + value);
+		}
+		return number;
+	}
+
+	private static String value(String[] args, int index, String option){
+		if(index >= args.length){
+			throw new IllegalArgumentException("Missing value for option: " + option);
+		}
+		return args[index];
+	}
+
+	int[] getTargets() {
+		return targets;
+	}
+
+	void setTargets(int[] targets) {
+		this.targets = targets;
+	}
+
+	String getOutputPrefix() {
+		return outputPrefix;
+	}
+
+	void setOutputPrefix(String outputPrefix) {
+		this.outputPrefix = outputPrefix;
+	}
+
+	Path getInputFile() {
+		return inputFile;
+	}
+
+	void setInputFile(Path inputFile) {
+		this.inputFile = inputFile;
+	}
+
+	PriceLevelsType getPriceLevelsType() {
+		return priceLevelsType;
+	}
+
+	void setPriceLevelsType(PriceLevelsType priceLevelsType) {
+		this.priceLevelsType = priceLevelsType;
+	}
+
+	boolean isIncremental() {
+		return incremental;
+	}
+
+	void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+
+	FlushPolicy getFlushPolicy() {
+		return flushPolicy;
+	}
+
+	void setFlushPolicy(FlushPolicy flushPolicy) {
+		this.flushPolicy = flushPolicy;
+	}
+
+	boolean isAsync() {
+		return async;
+	}
+
+	void setAsync(boolean async) {
+		this.async = async;
+	}
+
+	boolean isPipeline() {
+		return pipeline;
+	}
+
+	void setPipeline(boolean pipeline) {
+		this.pipeline = pipeline;
+	}
+
+	boolean isSplit() {
+		return split;
+	}
+
+	void setSplit(boolean split) {
+		this.split = split;
+	}
+
+	boolean isSymbols() {
+		return symbols;
+	}
+
+	void setSymbols(boolean symbols) {
+		this.symbols = symbols;
+	}
+
+	int getShards() {
+		return shards;
+	}
+
+	void setShards(int shards) {
+		this.shards = shards;
+	}
+
+	boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	void setVirtualThreads(boolean virtualThreads) {
+		this.virtualThreads = virtualThreads;
+	}
+
+	boolean isBinary() {
+		return binary;
+	}
+
+	void setBinary(boolean binary) {
+		this.binary = binary;
+	}
+
+	boolean isBinaryOutput() {
+		return binaryOutput;
+	}
+
+	void setBinaryOutput(boolean binaryOutput) {
+		this.binaryOutput = binaryOutput;
+	}
+
+	boolean isRawStandardOut() {
+		return rawStandardOut;
+	}
+
+	void setRawStandardOut(boolean rawStandardOut) {
+		this.rawStandardOut = rawStandardOut;
+	}
+
+	Path getCheckpointFile() {
+		return checkpointFile;
+	}
+
+	void setCheckpointFile(Path checkpointFile) {
+		this.checkpointFile = checkpointFile;
+	}
+
+	int getCheckpointInterval() {
+		return checkpointInterval;
+	}
+
+	void setCheckpointInterval(int checkpointInterval) {
+		this.checkpointInterval = checkpointInterval;
+	}
+
+	boolean isRestore() {
+		return restore;
+	}
+
+	void setRestore(boolean restore) {
+		this.restore = restore;
+	}
+
+	Path getJournalFile() {
+		return journalFile;
+	}
+
+	void setJournalFile(Path journalFile) {
+		this.journalFile = journalFile;
+	}
+
+	int getJournalForceInterval() {
+		return journalForceInterval;
+	}
+
+	void setJournalForceInterval(int journalForceInterval) {
+		this.journalForceInterval = journalForceInterval;
+	}
+
+	boolean isMetrics() {
+		return metrics;
+	}
+
+	void setMetrics(boolean metrics) {
+		this.metrics = metrics;
+	}
+
+	int getMetricsInterval() {
+		return metricsInterval;
+	}
+
+	void setMetricsInterval(int metricsInterval) {
+		this.metricsInterval = metricsInterval;
+	}
+
+	boolean isCounters() {
+		return counters;
+	}
+
+	void setCounters(boolean counters) {
+		this.counters = counters;
+	}
+
+	boolean isJmx() {
+		return jmx;
+	}
+
+	void setJmx(boolean jmx) {
+		this.jmx = jmx;
+	}
+}
@@ -0,0 +1,137 @@
+package stocks.solver.raul;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Latency of each stage of handling an order, parsing it, updating the book, calculating and writing results, kept
+ * in a {@link LatencyHistogram} per stage along with the number of orders handled.  Shows whether a run is bound by
+ * parsing, the book or output.
+ * <p>
+ * The percentiles and orders per second are logged at the end of the run, and optionally every interval for the
+ * orders since the last report.  Recording allocates nothing, only reports do.
+ * @author Raul
+ *
+ */
+public class StageMetrics {
+
+	private static final Logger log = Logger.getLogger(StageMetrics.class.getName());
+
+	enum Stage {
+		PARSE,
+		BOOK,
+		CALCULATE,
+		OUTPUT
+	}
+
+	// Orders between looking at the clock for an interval report
+	private static final int INTERVAL_CHECK_ORDERS = 4096;
+
+	private static final Stage[] STAGES = Stage.values();
+
+	// Since the last report, and in total for the run as of the last report
+	private final LatencyHistogram[] intervalHistograms = new LatencyHistogram[STAGES.length];
+	private final LatencyHistogram[] totalHistograms = new LatencyHistogram[STAGES.length];
+
+	// Nanoseconds between interval reports, 0 for a report at the end only
+	private final long reportInterval;
+
+	private final long startTime;
+	private long intervalStartTime;
+
+	private long intervalOrders = 0;
+	private long totalOrders = 0;
+
+	/**
+	 * Constructor for StageMetrics, the run is timed from here
+	 * @param reportIntervalSeconds Seconds between interval reports, 0 for a report at the end only
+	 */
+	public StageMetrics(int reportIntervalSeconds){
+		for(int i = 0; i < STAGES.length; i++){
+			intervalHistograms[i] = new LatencyHistogram();
+			totalHistograms[i] = new LatencyHistogram();
+		}
+
+		this.reportInterval = reportIntervalSeconds * 1000000000L;
+		this.startTime = System.nanoTime();
+		this.intervalStartTime = startTime;
+	}
+
+	/**
+	 * Records the latency of a stage for one order
+	 * @param stage Stage timed
+	 * @param nanos Time the stage took, in nanoseconds
+	 */
+	public void record(Stage stage, long nanos){
+		intervalHistograms[stage.ordinal()].record(nanos);
+	}
+
+	/**
+	 * Counts an order as handled, whether or not it could be applied, reporting on the interval if it is due
+	 */
+	public void orderDone(){
+		intervalOrders++;
+
+		if(reportInterval > 0 && intervalOrders % INTERVAL_CHECK_ORDERS == 0){
+			long now = System.nanoTime();
+			if(now - intervalStartTime >= reportInterval){
+				log.log(Level.INFO, report("Interval", now - intervalStartTime, intervalOrders, intervalHistograms));
+				endInterval(now);
+			}
+		}
+	}
+
+	/**
+	 * Reports the whole run
+	 */
+	public void finish(){
+		endInterval(System.nanoTime());
+		log.log(Level.INFO, report("Run", intervalStartTime - startTime, totalOrders, totalHistograms));
+	}
+
+	private void endInterval(long now){
+		for(int i = 0; i < STAGES.length; i++){
+			totalHistograms[i].add(intervalHistograms[i]);
+			intervalHistograms[i].reset();
+		}
+
+		totalOrders += intervalOrders;
+		intervalOrders = 0;
+		intervalStartTime = now;
+	}
+
+	/**
+	 * @return Orders per second and the latency percentiles of every stage
+	 */
+	static String report(String title, long elapsedNanos, long orders, LatencyHistogram[] histograms){
+		StringBuilder report = new StringBuilder(512);
+		report.append(title).append(": ").append(orders).append(" orders in ").append(elapsedNanos / 1000000).append("ms, ")
+			  .append(ordersPerSecond(orders, elapsedNanos)).append(" orders/s");
+
+		for(int i = 0; i < STAGES.length; i++){
+			LatencyHistogram histogram = histograms[i];
+			report.append(System.lineSeparator())
+				  .append(String.format("%-10s count %10d  p50 %8dns  p99 %8dns  p99.9 %8dns  max %10dns",
+						  STAGES[i].toString().toLowerCase(), histogram.getCount(), histogram.getValueAtPercentile(50),
+						  histogram.getValueAtPercentile(99), histogram.getValueAtPercentile(99.9), histogram.getMax()));
+		}
+
+		return report.toString();
+	}
+
+	/**
+	 * @return Rate of orders, worked out in floating point as orders times a billion overflows a long at the
+	 * billions of orders a long run reaches, 0 if no time has passed
+	 */
+	static long ordersPerSecond(long orders, long elapsedNanos){
+		return elapsedNanos > 0 ? (long) (orders / (elapsedNanos / 1e9)) : 0;
+	}
+
+	LatencyHistogram getTotalHistogram(Stage stage) {
+		return totalHistograms[stage.ordinal()];
+	}
+
+	long getTotalOrders() {
+		return totalOrders;
+	}
+}
@@ -0,0 +1,131 @@
+package stocks.solver.raul;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Interns instrument symbols so every order for a symbol carries the same String.  Symbols are looked up straight
+ * from the bytes of an input line in an open addressing table, so a symbol seen before costs no allocation.  Only
+ * the thread decoding the input may use a SymbolTable.
+ * @author Raul
+ *
+ */
+public class SymbolTable {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private String[] symbols = new String[INITIAL_CAPACITY];
+	private int[] hashes = new int[INITIAL_CAPACITY];
+
+	private int mask = INITIAL_CAPACITY - 1;
+	private int size = 0;
+
+	private char[] symbolChars = new char[16];
+
+	/**
+	 * Interns a symbol made of plain ASCII characters
+	 * @param buffer Buffer holding the symbol
+	 * @param start Index of the first byte of the symbol
+	 * @param end Index just past the last byte of the symbol
+	 * @return The symbol, or null if it contains anything but ASCII characters
+	 */
+	String intern(ByteBuffer buffer, int start, int end){
+		// Same hash as String.hashCode for ASCII, so both intern methods agree
+		int hash = 0;
+		for(int i = start; i < end; i++){
+			byte b = buffer.get(i);
+			if(b < 0){
+				return null;
+			}
+			hash = 31 * hash + b;
+		}
+
+		int slot = hash & mask;
+		for(; symbols[slot] != null; slot = (slot + 1) & mask){
+			if(hashes[slot] == hash && sameSymbol(symbols[slot], buffer, start, end)){
+				return symbols[slot];
+			}
+		}
+
+		int length = end - start;
+		if(symbolChars.length < length){
+			symbolChars = new char[length];
+		}
+		for(int i = 0; i < length; i++){
+			symbolChars[i] = (char) buffer.get(start + i);
+		}
+
+		return add(slot, hash, new String(symbolChars, 0, length));
+	}
+
+	/**
+	 * Interns a symbol
+	 * @param symbol Symbol to intern
+	 * @return The String already held for the symbol, or the given one if the symbol is new
+	 */
+	String intern(String symbol){
+		int hash = symbol.hashCode();
+
+		int slot = hash & mask;
+		for(; symbols[slot] != null; slot = (slot + 1) & mask){
+			if(hashes[slot] == hash && symbols[slot].equals(symbol)){
+				return symbols[slot];
+			}
+		}
+
+		return add(slot, hash, symbol);
+	}
+
+	private String add(int slot, int hash, String symbol){
+		symbols[slot] = symbol;
+		hashes[slot] = hash;
+
+		// Keep the table at most half full so probes stay short
+		if(++size * 2 > symbols.length){
+			grow();
+		}
+
+		return symbol;
+	}
+
+	private void grow(){
+		String[] oldSymbols = symbols;
+		int[] oldHashes = hashes;
+
+		int capacity = oldSymbols.length * 2;
+		symbols = new String[capacity];
+		hashes = new int[capacity];
+		mask = capacity - 1;
+
+		for(int i = 0; i < oldSymbols.length; i++){
+			if(oldSymbols[i] == null){
+				continue;
+			}
+
+			int slot = oldHashes[i] & mask;
+			while(symbols[slot] != null){
+				slot = (slot + 1) & mask;
+			}
+
+			symbols[slot] = oldSymbols[i];
+			hashes[slot] = oldHashes[i];
+		}
+	}
+
+	private static boolean sameSymbol(String symbol, ByteBuffer buffer, int start, int end){
+		if(symbol.length() != end - start){
+			return false;
+		}
+
+		for(int i = 0; i < symbol.length(); i++){
+			if(symbol.charAt(i) != buffer.get(start + i)){
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	int size() {
+		return size;
+	}
+}
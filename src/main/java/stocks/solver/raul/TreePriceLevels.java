@@ -0,0 +1,131 @@
+package stocks.solver.raul;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * {@link PriceLevels} kept in a sorted map from price to {@link PriceLevelShares}
+ * @author Raul
+ *
+ */
+public class TreePriceLevels implements PriceLevels {
+
+	private final TreeMap<Long, PriceLevelShares> priceLevels;
+
+	/**
+	 * Constructor for TreePriceLevels
+	 * @param highestFirst True to walk from the highest price (bids), false to walk from the lowest (asks)
+	 */
+	public TreePriceLevels(boolean highestFirst){
+		if(highestFirst){
+			priceLevels = new TreeMap<Long, PriceLevelShares>(Collections.reverseOrder());
+		} else {
+			priceLevels = new TreeMap<Long, PriceLevelShares>();
+		}
+	}
+
+	@Override
+	public void addShares(long price, int shares){
+		PriceLevelShares priceLevelShares = priceLevels.get(price);
+
+		if(priceLevelShares != null){
+			priceLevelShares.addShares(shares);
+		} else{
+			priceLevelShares = new PriceLevelShares();
+			priceLevelShares.addShares(shares);
+			priceLevels.put(price, priceLevelShares);
+		}
+	}
+
+	@Override
+	public int reduceShares(long price, int shares){
+		PriceLevelShares priceLevelShares = priceLevels.get(price);
+		priceLevelShares.reduceShares(shares);
+
+		// No shares left at this PriceLevelShares, remove it
+		if(priceLevelShares.totalShares == 0){
+			priceLevels.remove(price);
+		}
+		return priceLevelShares.totalShares;
+	}
+
+	@Override
+	public int getShares(long price){
+		PriceLevelShares priceLevelShares = priceLevels.get(price);
+		return priceLevelShares == null ? 0 : priceLevelShares.totalShares;
+	}
+
+	@Override
+	public int size(){
+		return priceLevels.size();
+	}
+
+	@Override
+	public long bestPrice(){
+		return priceLevels.isEmpty() ? NO_PRICE : priceLevels.firstKey();
+	}
+
+	@Override
+	public long nextWorsePrice(long price){
+		// Map is in walk order, so higher keys are worse prices
+		Long nextPrice = priceLevels.higherKey(price);
+		return nextPrice == null ? NO_PRICE : nextPrice;
+	}
+
+	@Override
+	public long nextBetterPrice(long price){
+		Long nextPrice = priceLevels.lowerKey(price);
+		return nextPrice == null ? NO_PRICE : nextPrice;
+	}
+
+	@Override
+	public void fill(int target, FillResult fillResult){
+		int remainingShares = target;
+		fillResult.amount = 0;
+
+		for(Map.Entry<Long, PriceLevelShares> entry : priceLevels.entrySet()){
+			long currentPriceAtLevel = entry.getKey();
+			int sharesAtPriceLevel = entry.getValue().totalShares;
+
+			if(sharesAtPriceLevel >= remainingShares){
+				fillResult.amount += remainingShares * currentPriceAtLevel;
+				fillResult.lastPriceUsed = currentPriceAtLevel;
+				fillResult.sharesUsedAtLastPrice = remainingShares;
+				return;
+			}
+
+			fillResult.amount += sharesAtPriceLevel * currentPriceAtLevel;
+			remainingShares = remainingShares - sharesAtPriceLevel;
+		}
+	}
+
+	@Override
+	public void fill(int[] targets, int count, FillResult[] fillResults){
+		int targetIndex = 0;
+		long sharesBefore = 0;
+		long amountBefore = 0;
+
+		for(Map.Entry<Long, PriceLevelShares> entry : priceLevels.entrySet()){
+			long currentPriceAtLevel = entry.getKey();
+			int sharesAtPriceLevel = entry.getValue().totalShares;
+
+			// Every target that runs out at this level is filled here, the rest carry on to the next level
+			while(targetIndex < count && sharesBefore + sharesAtPriceLevel >= targets[targetIndex]){
+				FillResult fillResult = fillResults[targetIndex];
+				int remainingShares = (int) (targets[targetIndex] - sharesBefore);
+				fillResult.amount = amountBefore + remainingShares * currentPriceAtLevel;
+				fillResult.lastPriceUsed = currentPriceAtLevel;
+				fillResult.sharesUsedAtLastPrice = remainingShares;
+				targetIndex++;
+			}
+
+			if(targetIndex == count){
+				return;
+			}
+
+			sharesBefore += sharesAtPriceLevel;
+			amountBefore += sharesAtPriceLevel * currentPriceAtLevel;
+		}
+	}
+}
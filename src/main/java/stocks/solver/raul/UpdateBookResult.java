@@ -10,6 +10,14 @@ public class UpdateBookResult {
 	private boolean recalculateProfit = false;
 	private boolean recalculateCost = false;
 	
+	/**
+	 * Clears the result before the next order is applied
+	 */
+	void reset() {
+		recalculateProfit = false;
+		recalculateCost = false;
+	}
+
 	boolean recalculateProfit() {
 		return recalculateProfit;
 	}
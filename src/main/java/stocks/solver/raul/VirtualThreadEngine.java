@@ -0,0 +1,261 @@
+package stocks.solver.raul;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Prices many instruments at once with a virtual thread of its own for every symbol, fed by a small bounded
+ * mailbox, so very large symbol universes, mostly idle, cost little more than their books.  Only JVMs with virtual
+ * threads can run it, see {@link #isVirtual()}, a platform thread per symbol would not scale.  The calling thread
+ * decodes the input and drops each order into its symbol's mailbox, and each symbol writes its own results under a
+ * lock shared by all symbols.  Results of a symbol are written in input order, results of different symbols may
+ * interleave in any order.  If a symbol's thread fails the failure is thrown on the calling thread.
+ * @author Raul
+ *
+ */
+public class VirtualThreadEngine {
+
+	private static final Logger log = Logger.getLogger(VirtualThreadEngine.class.getName());
+
+	static final int MAILBOX_CAPACITY = 16;
+
+	// Thread.ofVirtual() and the builder methods used on it, null when the JVM has no virtual threads.  They came in
+	// Java 21, after the Java 11 the build targets, so they are looked up.
+	private static final Method OF_VIRTUAL;
+	private static final Method BUILDER_NAME;
+	private static final Method BUILDER_UNSTARTED;
+
+	static {
+		Method ofVirtual = null;
+		Method builderName = null;
+		Method builderUnstarted = null;
+
+		try {
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			builderName = builderClass.getMethod("name", String.class);
+			builderUnstarted = builderClass.getMethod("unstarted", Runnable.class);
+			// Preview releases have the methods but throw unless previews are enabled
+			ofVirtual.invoke(null);
+		} catch (Exception e) {
+			ofVirtual = null;
+		}
+
+		OF_VIRTUAL = ofVirtual;
+		BUILDER_NAME = builderName;
+		BUILDER_UNSTARTED = builderUnstarted;
+	}
+
+	private final int[] targets;
+	private final PriceLevelsType priceLevelsType;
+	private final boolean incremental;
+	private final OutputSink[] outputs;
+
+	private final Lock outputLock = new ReentrantLock();
+
+	// Mailbox of each symbol, only touched by the routing thread
+	private final Map<String, SymbolMailbox> mailboxes = new HashMap<String, SymbolMailbox>();
+	private final List<SymbolMailbox> mailboxList = new ArrayList<SymbolMailbox>();
+
+	// First failure of a symbol's thread, after which that symbol stops
+	private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+	/**
+	 * Constructor for VirtualThreadEngine
+	 * @param targets Numbers of target shares, every symbol is priced against all of them
+	 * @param priceLevelsType Implementation to use for the price levels of each book
+	 * @param incremental True to keep the profit and cost fills up to date on every order
+	 * @param outputs Where to write the results of each target, in the same order as targets
+	 * @throws IllegalStateException Thrown if the JVM has no virtual threads
+	 */
+	public VirtualThreadEngine(int[] targets, PriceLevelsType priceLevelsType, boolean incremental, OutputSink[] outputs){
+		if(!isVirtual()){
+			throw new IllegalStateException("Virtual threads are not available, a thread per symbol needs Java 21 or later");
+		}
+
+		this.targets = targets;
+		this.priceLevelsType = priceLevelsType;
+		this.incremental = incremental;
+		this.outputs = outputs;
+	}
+
+	/**
+	 * @return True if symbols run on virtual threads
+	 */
+	static boolean isVirtual(){
+		return OF_VIRTUAL != null;
+	}
+
+	/**
+	 * Processes all of the input, returning once every result has been written
+	 * @param lineSource Input in the extended format with a symbol column
+	 * @param orderDecoder Decoder for the input, made with a {@link SymbolTable}
+	 * @throws IOException Thrown if reading the input or writing results failed
+	 * @throws RuntimeException Thrown if a symbol's thread failed on an order it could not handle
+	 */
+	public void run(LineSource lineSource, OrderDecoder orderDecoder) throws IOException{
+		try{
+			Order reusableOrder = new Order();
+
+			while(lineSource.nextLine() && lineSource.getLineLength() != 0){
+				Order order = EngineThreads.decode(lineSource, orderDecoder, reusableOrder);
+				if(order != null){
+					route(order);
+				}
+			}
+		} finally {
+			for(SymbolMailbox mailbox : mailboxList){
+				mailbox.finish();
+			}
+			for(SymbolMailbox mailbox : mailboxList){
+				mailbox.join();
+			}
+		}
+
+		checkFailure();
+	}
+
+	private void checkFailure() throws IOException{
+		Throwable failed = failure.get();
+		if(failed != null){
+			EngineThreads.throwFailure(failed);
+		}
+	}
+
+	private void route(Order order) throws IOException{
+		SymbolMailbox mailbox = mailboxes.get(order.getSymbol());
+
+		if(mailbox == null){
+			PricingEngine pricingEngine = new PricingEngine(new MasterBook(targets, priceLevelsType, incremental), outputs, outputLock);
+			mailbox = new SymbolMailbox(pricingEngine, order.getSymbol());
+			mailboxes.put(order.getSymbol(), mailbox);
+			mailboxList.add(mailbox);
+			mailbox.start();
+		}
+
+		while(!mailbox.offer(order)){
+			// A symbol whose thread failed takes no more orders
+			checkFailure();
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * @return New unstarted virtual thread
+	 */
+	private static Thread newThread(Runnable task, String name){
+		try {
+			Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), name);
+			return (Thread) BUILDER_UNSTARTED.invoke(builder, task);
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Bounded mailbox of one symbol's orders, with the thread that applies them to the symbol's book.  The thread
+	 * parks whenever the mailbox is empty, which is where most symbols spend most of their time.
+	 */
+	private class SymbolMailbox implements Runnable {
+
+		private final RingSequencer orderSequencer = new RingSequencer(MAILBOX_CAPACITY);
+		// Orders are made the first time their slot is used, idle symbols never fill their mailbox
+		private final Order[] orders = new Order[MAILBOX_CAPACITY];
+
+		private final PricingEngine pricingEngine;
+		private final Thread thread;
+
+		// Set by the symbol's thread before it parks, cleared by whoever wakes it
+		private final AtomicBoolean parked = new AtomicBoolean(false);
+
+		SymbolMailbox(PricingEngine pricingEngine, String symbol){
+			this.pricingEngine = pricingEngine;
+			this.thread = newThread(this, "symbol-" + symbol);
+		}
+
+		void start(){
+			thread.start();
+		}
+
+		/**
+		 * Copies an order into the next free slot, waking the symbol's thread if it is parked, routing thread only
+		 * @return false if the mailbox is full
+		 */
+		boolean offer(Order order){
+			long sequence = orderSequencer.tryClaim();
+			if(sequence == RingSequencer.NONE){
+				return false;
+			}
+
+			int slot = orderSequencer.slot(sequence);
+			if(orders[slot] == null){
+				orders[slot] = new Order();
+			}
+			orders[slot].copyFrom(order);
+			orderSequencer.publish(sequence);
+
+			// Atomic swap orders the publish before the read of parked, so a thread about to park sees the order
+			if(parked.getAndSet(false)){
+				LockSupport.unpark(thread);
+			}
+			return true;
+		}
+
+		/**
+		 * Lets the symbol's thread stop once it has processed every order offered
+		 */
+		void finish(){
+			orderSequencer.finish();
+			LockSupport.unpark(thread);
+		}
+
+		void join(){
+			EngineThreads.join(thread);
+		}
+
+		@Override
+		public void run(){
+			while(true){
+				boolean finished = orderSequencer.isFinished();
+				long sequence = orderSequencer.tryTake();
+
+				if(sequence == RingSequencer.NONE){
+					if(finished){
+						return;
+					}
+
+					parked.set(true);
+					// Look again after saying so, an order published before that would not wake this thread
+					if(orderSequencer.tryTake() == RingSequencer.NONE && !orderSequencer.isFinished()){
+						LockSupport.park(this);
+					}
+					parked.set(false);
+					continue;
+				}
+
+				Order order = orders[orderSequencer.slot(sequence)];
+				try {
+					pricingEngine.process(order);
+				} catch (ReduceMarketLookupException e) {
+					log.log(Level.SEVERE, "Bad market reduction order, skipping it", e);
+				} catch (Throwable t) {
+					// Writing failed or the book cannot take the order, the symbol stops
+					failure.compareAndSet(null, t);
+					return;
+				}
+				orderSequencer.release(sequence);
+			}
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package stocks.solver.raul;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class AllocationFreeTest {
+
+	private static final int ORDERS_PER_PASS = 1000;
+
+	private static final DiscardChannel DISCARD = new DiscardChannel();
+
+	private static OutputSink discard(){
+		return new OutputSink(DISCARD, FlushPolicy.DEFAULT, false);
+	}
+
+	private ByteBuffer buffer;
+	private int[] lineStarts;
+	private int[] lineEnds;
+
+	/**
+	 * Builds one pass of input that adds orders and then reduces every one of them away, so each pass leaves the
+	 * book as it found it
+	 */
+	@Before
+	public void setUp() {
+		Random random = new Random(42);
+		StringBuilder sb = new StringBuilder();
+
+		for(int i = 0; i < ORDERS_PER_PASS; i++){
+			sb.append(28800000 + i).append(" A o").append(i).append(i % 2 == 0 ? " B " : " S ");
+			Prices.appendTicks(sb, 4400 + random.nextInt(100) - 50).append(' ').append(21 + random.nextInt(480)).append('\n');
+		}
+		for(int i = 0; i < ORDERS_PER_PASS; i++){
+			sb.append(28900000 + i).append(" R o").append(i).append(" 20\n");
+		}
+		for(int i = 0; i < ORDERS_PER_PASS; i++){
+			sb.append(29000000 + i).append(" R o").append(i).append(" 500\n");
+		}
+
+		byte[] bytes = sb.toString().getBytes(Charset.forName("US-ASCII"));
+		buffer = ByteBuffer.wrap(bytes);
+		lineStarts = new int[ORDERS_PER_PASS * 3];
+		lineEnds = new int[ORDERS_PER_PASS * 3];
+
+		int line = 0;
+		int start = 0;
+		for(int i = 0; i < bytes.length; i++){
+			if(bytes[i] == '\n'){
+				lineStarts[line] = start;
+				lineEnds[line++] = i;
+				start = i + 1;
+			}
+		}
+	}
+
+	private void runPass(OrderDecoder orderDecoder, PricingEngine pricingEngine, Order reusableOrder) throws Exception {
+		for(int i = 0; i < lineStarts.length; i++){
+			pricingEngine.process(orderDecoder.decode(buffer, lineStarts[i], lineEnds[i], reusableOrder));
+		}
+	}
+
+	private void assertNoAllocation(PriceLevelsType priceLevelsType, boolean incremental) throws Exception {
+		assertNoAllocation(priceLevelsType, incremental, false);
+	}
+
+	private void assertNoAllocation(PriceLevelsType priceLevelsType, boolean incremental, boolean timed) throws Exception {
+		java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+		assumeTrue(allocationBean.isThreadAllocatedMemorySupported());
+		allocationBean.setThreadAllocatedMemoryEnabled(true);
+
+		int[] targets = { 200, 1, 10000 };
+		MasterBook masterBook = new MasterBook(targets, priceLevelsType, incremental);
+		PricingEngine pricingEngine = new PricingEngine(masterBook, new OutputSink[] { discard(), discard(), discard() });
+		if(timed){
+			pricingEngine.setStageMetrics(new StageMetrics(0));
+		}
+		OrderDecoder orderDecoder = new OrderDecoder();
+		Order reusableOrder = new Order();
+
+		// Warm up sizes every structure for the pass
+		for(int i = 0; i < 20; i++){
+			runPass(orderDecoder, pricingEngine, reusableOrder);
+		}
+
+		long threadId = Thread.currentThread().getId();
+		long before = allocationBean.getThreadAllocatedBytes(threadId);
+		before = allocationBean.getThreadAllocatedBytes(threadId);
+		for(int i = 0; i < 5; i++){
+			runPass(orderDecoder, pricingEngine, reusableOrder);
+		}
+		long allocated = allocationBean.getThreadAllocatedBytes(threadId) - before;
+
+		assertEquals(priceLevelsType + (incremental ? " incremental" : "") + (timed ? " timed" : ""), 0, allocated);
+	}
+
+	@Test
+	public final void testTimedNoAllocation() throws Exception {
+		assertNoAllocation(PriceLevelsType.LADDER, false, true);
+	}
+
+	@Test
+	public final void testLadderNoAllocation() throws Exception {
+		assertNoAllocation(PriceLevelsType.LADDER, false);
+		assertNoAllocation(PriceLevelsType.LADDER, true);
+	}
+
+	@Test
+	public final void testFenwickNoAllocation() throws Exception {
+		assertNoAllocation(PriceLevelsType.FENWICK, false);
+		assertNoAllocation(PriceLevelsType.FENWICK, true);
+	}
+}
@@ -0,0 +1,91 @@
+package stocks.solver.raul;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+
+import org.junit.Test;
+
+public class AsyncResultWriterTest {
+
+	@Test
+	public final void testRingKeepsOrder() throws Exception {
+		final ResultRing resultRing = new ResultRing(16);
+		final int count = 100000;
+
+		Thread producer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				CalculatorResult calcResult = new CalculatorResult();
+				for(int i = 0; i < count; i++){
+					if(i % 3 == 0){
+						calcResult.setNotAvailable(i, OrderSide.B);
+					} else {
+						calcResult.setAmount(i, OrderSide.S, i * 7L);
+					}
+					while(!resultRing.offer(i % 5, calcResult)){
+						Thread.yield();
+					}
+				}
+			}
+		});
+		producer.start();
+
+		CalculatorResult calcResult = new CalculatorResult();
+		for(int i = 0; i < count; i++){
+			int targetIndex;
+			while((targetIndex = resultRing.poll(calcResult)) < 0){
+				Thread.yield();
+			}
+			assertEquals(i % 5, targetIndex);
+			assertEquals(i, calcResult.getTimestamp());
+			assertEquals(i % 3 != 0, calcResult.isAvailable());
+			if(i % 3 != 0){
+				assertEquals(OrderSide.S, calcResult.getSide());
+				assertEquals(i * 7L, calcResult.getAmount());
+			}
+		}
+
+		producer.join();
+		assertEquals(-1, resultRing.poll(calcResult));
+	}
+
+	/**
+	 * Runs random orders through an engine priced against several targets
+	 * @return Output of each target
+	 */
+	private String[] price(boolean async) throws Exception {
+		int[] targets = { 200, 1, 5000 };
+		MasterBook masterBook = new MasterBook(targets, PriceLevelsType.TREE, false);
+		ByteArrayOutputStream[] written = new ByteArrayOutputStream[targets.length];
+		OutputSink[] outputs = new OutputSink[targets.length];
+		for(int i = 0; i < targets.length; i++){
+			written[i] = new ByteArrayOutputStream();
+			// Small batches so the writer thread and pricing overlap
+			outputs[i] = new OutputSink(Channels.newChannel(written[i]), FlushPolicy.getFlushPolicy("events:8"), true);
+		}
+		PricingEngine pricingEngine = new PricingEngine(masterBook, outputs, async);
+
+		TestFeed.process(pricingEngine, TestFeed.input(TestFeed.lines(42, 200000)));
+		pricingEngine.finish();
+
+		String[] output = new String[targets.length];
+		for(int i = 0; i < targets.length; i++){
+			outputs[i].close();
+			output[i] = written[i].toString("US-ASCII");
+		}
+		return output;
+	}
+
+	@Test
+	public final void testSameOutputAsSynchronous() throws Exception {
+		String[] expected = price(false);
+		String[] actual = price(true);
+
+		for(int i = 0; i < expected.length; i++){
+			assertFalse(expected[i].isEmpty());
+			assertEquals(expected[i], actual[i]);
+		}
+	}
+}
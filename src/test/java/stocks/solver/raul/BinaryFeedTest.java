@@ -0,0 +1,151 @@
+package stocks.solver.raul;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class BinaryFeedTest {
+
+	private static final String[] LINES = {
+		"28800538 A b S 44.26 100",
+		"28800562 A c B 44.10 100",
+		"28800744 R b 100",
+		"28800758 A averylongorderid B 44.18 157",
+		"28800773 A \u00e9t\u00e9 S 44.38 100",
+		"28800796 R averylongorderid 57",
+		"28800812 A 12345678 B 0.01 2147483647",
+	};
+
+	private byte[] encode(String... lines) throws Exception {
+		ByteArrayOutputStream written = new ByteArrayOutputStream();
+		BinaryOrderEncoder encoder = new BinaryOrderEncoder(Channels.newChannel(written));
+		for(String line : lines){
+			encoder.write(new Order(line.split("\\s+")));
+		}
+		encoder.close();
+		return written.toByteArray();
+	}
+
+	private BinaryOrderDecoder decoder(byte[] feed) throws IOException {
+		return new BinaryOrderDecoder(Channels.newChannel(new ByteArrayInputStream(feed)));
+	}
+
+	@Test
+	public final void testRoundTrip() throws Exception {
+		BinaryOrderDecoder decoder = decoder(encode(LINES));
+		Order order = new Order();
+
+		for(String line : LINES){
+			Order expected = new Order(line.split("\\s+"));
+			assertTrue(decoder.next(order));
+			assertEquals(expected.getTimestamp(), order.getTimestamp());
+			assertEquals(expected.getOrderAction(), order.getOrderAction());
+			assertEquals(expected.getOrderId(), order.getOrderId());
+			assertEquals(expected.getOrderKey(), order.getOrderKey());
+			assertEquals(expected.getSide(), order.getSide());
+			assertEquals(expected.getPrice(), order.getPrice());
+			assertEquals(expected.getSize(), order.getSize());
+		}
+
+		assertFalse(decoder.next(order));
+	}
+
+	@Test
+	public final void testIdInternedOnce() throws Exception {
+		int single = encode(LINES[3]).length;
+		int twice = encode(LINES[3], LINES[5]).length;
+		assertEquals(BinaryFeed.RECORD_SIZE, twice - single);
+	}
+
+	/**
+	 * @return Number of the interned id in the key of the last record of a feed
+	 */
+	private long lastNumber(byte[] feed){
+		return ByteBuffer.wrap(feed).getLong(feed.length - BinaryFeed.RECORD_SIZE + 9) & ~BinaryFeed.INTERNED;
+	}
+
+	@Test
+	public final void testNumberOfGoneIdReused() throws Exception {
+		// Still live after a partial reduce, or on the other side, so the next id gets a new number
+		assertEquals(1, lastNumber(encode(LINES[3], LINES[5], "28800800 A anotherlongorderid S 44.20 100")));
+		assertEquals(1, lastNumber(encode(LINES[3], "28800790 A averylongorderid S 44.30 100", "28800796 R averylongorderid 157",
+				"28800800 A anotherlongorderid S 44.20 100")));
+		// Gone, or never in the market, so its number is free
+		assertEquals(0, lastNumber(encode(LINES[3], "28800796 R averylongorderid 157", "28800800 A anotherlongorderid S 44.20 100")));
+		assertEquals(0, lastNumber(encode("28800796 R averylongorderid 157", "28800800 A anotherlongorderid S 44.20 100")));
+	}
+
+	@Test
+	public final void testNumbersInUseStayFew() throws Exception {
+		// Every order is gone two orders after it was added, its id never seen again
+		List<String> lines = new ArrayList<String>();
+		for(int i = 0; i < 10000; i++){
+			lines.add((28800000 + i) + " A averylongorderid" + i + (i % 2 == 0 ? " B " : " S ") + "44.10 100");
+			if(i >= 2){
+				lines.add((28800000 + i) + " R averylongorderid" + (i - 2) + " 100");
+			}
+		}
+		byte[] feed = encode(lines.toArray(new String[lines.size()]));
+
+		BinaryOrderDecoder decoder = decoder(feed);
+		Order order = new Order();
+		for(String line : lines){
+			assertTrue(decoder.next(order));
+			assertEquals(new Order(line.split("\\s+")).getOrderId(), order.getOrderId());
+		}
+		assertFalse(decoder.next(order));
+
+		ByteBuffer records = ByteBuffer.wrap(feed);
+		for(int position = BinaryFeed.HEADER_SIZE; position < feed.length; position += BinaryFeed.RECORD_SIZE){
+			assertTrue((records.getLong(position + 9) & ~BinaryFeed.INTERNED) < 3);
+			if(records.get(position + 8) == BinaryFeed.INTERN){
+				position += records.getInt(position + 26);
+			}
+		}
+	}
+
+	@Test
+	public final void testBadRecordSkipped() throws Exception {
+		byte[] feed = encode(LINES[0], LINES[1]);
+		// Action of the first record
+		feed[BinaryFeed.HEADER_SIZE + 8] = 'X';
+
+		BinaryOrderDecoder decoder = decoder(feed);
+		Order order = new Order();
+		try {
+			decoder.next(order);
+			fail("Bad action should not decode");
+		} catch (ParsingException e) {
+			// Expected, decoding carries on with the next record
+		}
+
+		assertTrue(decoder.next(order));
+		assertEquals(28800562, order.getTimestamp());
+		assertFalse(decoder.next(order));
+	}
+
+	@Test(expected = EOFException.class)
+	public final void testTruncatedFeed() throws Exception {
+		byte[] feed = encode(LINES[0], LINES[1]);
+		BinaryOrderDecoder decoder = decoder(Arrays.copyOf(feed, feed.length - 1));
+		Order order = new Order();
+
+		assertTrue(decoder.next(order));
+		decoder.next(order);
+	}
+
+	@Test(expected = IOException.class)
+	public final void testNotAFeed() throws Exception {
+		decoder("28800538 A b S 44.26 100\n".getBytes("US-ASCII"));
+	}
+}
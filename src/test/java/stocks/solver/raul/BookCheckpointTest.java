@@ -0,0 +1,89 @@
+package stocks.solver.raul;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BookCheckpointTest {
+
+	private static final int[] TARGETS = { 1, 200 };
+
+	Path checkpointFile;
+
+	@Before
+	public void setUp() throws Exception {
+		checkpointFile = Files.createTempFile("pricer", ".checkpoint");
+		Files.delete(checkpointFile);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		Files.deleteIfExists(checkpointFile);
+	}
+
+	private OutputSink[] sinks(ByteArrayOutputStream[] written){
+		OutputSink[] outputs = new OutputSink[written.length];
+		for(int i = 0; i < written.length; i++){
+			written[i] = new ByteArrayOutputStream();
+			outputs[i] = new OutputSink(Channels.newChannel(written[i]), FlushPolicy.DEFAULT, true);
+		}
+		return outputs;
+	}
+
+	@Test
+	public final void testRestoredBookCarriesOn() throws Exception {
+		List<String> lines = TestFeed.lines(3, 20000);
+		byte[] firstHalf = TestFeed.input(lines.subList(0, lines.size() / 2));
+		byte[] secondHalf = TestFeed.input(lines.subList(lines.size() / 2, lines.size()));
+
+		ByteArrayOutputStream[] expected = new ByteArrayOutputStream[TARGETS.length];
+		OutputSink[] expectedOutputs = sinks(expected);
+		TestFeed.process(new PricingEngine(new MasterBook(TARGETS, PriceLevelsType.TREE, false), expectedOutputs), TestFeed.input(lines));
+
+		// First half, then a snapshot
+		ByteArrayOutputStream[] before = new ByteArrayOutputStream[TARGETS.length];
+		OutputSink[] beforeOutputs = sinks(before);
+		MasterBook masterBook = new MasterBook(TARGETS, PriceLevelsType.TREE, false);
+		TestFeed.process(new PricingEngine(masterBook, beforeOutputs), firstHalf);
+		new BookCheckpoint(checkpointFile, BookCheckpoint.DEFAULT_INTERVAL).write(masterBook, 1234, beforeOutputs);
+
+		// Second half on a book restored from the snapshot
+		BookCheckpoint checkpoint = new BookCheckpoint(checkpointFile, BookCheckpoint.DEFAULT_INTERVAL);
+		assertTrue(checkpoint.exists());
+		MasterBook restoredBook = new MasterBook(TARGETS, PriceLevelsType.TREE, false);
+		checkpoint.restore(restoredBook);
+		assertEquals(1234, checkpoint.getInputOffset());
+		assertEquals(masterBook.getLiveOrders().size(), restoredBook.getLiveOrders().size());
+		assertEquals(masterBook.getTotalBidSize(), restoredBook.getTotalBidSize());
+		assertEquals(masterBook.getTotalAskSize(), restoredBook.getTotalAskSize());
+
+		ByteArrayOutputStream[] after = new ByteArrayOutputStream[TARGETS.length];
+		OutputSink[] afterOutputs = sinks(after);
+		TestFeed.process(new PricingEngine(restoredBook, afterOutputs), secondHalf);
+
+		for(int i = 0; i < TARGETS.length; i++){
+			expectedOutputs[i].close();
+			afterOutputs[i].close();
+			assertEquals(before[i].size(), checkpoint.getOutputOffset(i));
+			assertEquals(expected[i].toString("US-ASCII"), before[i].toString("US-ASCII") + after[i].toString("US-ASCII"));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public final void testOtherTargets() throws Exception {
+		MasterBook masterBook = new MasterBook(TARGETS, PriceLevelsType.TREE, false);
+		ByteArrayOutputStream[] written = new ByteArrayOutputStream[TARGETS.length];
+		new BookCheckpoint(checkpointFile, 1).write(masterBook, 0, sinks(written));
+
+		new BookCheckpoint(checkpointFile, 1).restore(new MasterBook(new int[] { 1, 300 }, PriceLevelsType.TREE, false));
+	}
+}
@@ -0,0 +1,26 @@
+package stocks.solver.raul;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Output that throws everything away, for tests that only look at what the engine does
+ */
+final class DiscardChannel implements WritableByteChannel {
+
+	@Override
+	public int write(ByteBuffer src) {
+		int length = src.remaining();
+		src.position(src.limit());
+		return length;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return true;
+	}
+
+	@Override
+	public void close() {
+	}
+}
@@ -0,0 +1,162 @@
+package stocks.solver.raul;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Test;
+
+public class EngineStatsTest {
+
+	private static final DiscardChannel DISCARD = new DiscardChannel();
+
+	private static final String[] LINES = {
+		"28800538 A b S 44.26 100",
+		"28800562 A c B 44.10 100",
+		"28800744 R b 100",
+		"28800758 A d B 44.18 157",
+		"28800773 A e S 44.38 100",
+		"28800796 R c 50",
+		"28800797 R c 10",
+		"28800798 R d 7",
+		"28800812 R x 10",
+		"28800813 A f B 44.00 20",
+		"28800814 A g B 43.00 1",
+	};
+
+	private MasterBook process(int target) throws Exception {
+		MasterBook masterBook = new MasterBook(new int[] { target }, PriceLevelsType.TREE, false);
+		PricingEngine pricingEngine = new PricingEngine(masterBook, new OutputSink[] { new OutputSink(DISCARD, FlushPolicy.DEFAULT, false) });
+
+		for(String line : LINES){
+			try {
+				pricingEngine.process(new Order(line.split("\\s+")));
+			} catch (ReduceMarketLookupException e) {
+				// The reduce of x, counted as unknown
+			}
+		}
+		return masterBook;
+	}
+
+	@Test
+	public final void testCounters() throws Exception {
+		MasterBook masterBook = process(200);
+		assertEquals(4, masterBook.getBidAdds());
+		assertEquals(2, masterBook.getAskAdds());
+		assertEquals(3, masterBook.getBidReduces());
+		assertEquals(1, masterBook.getAskReduces());
+		assertEquals(1, masterBook.getUnknownReduces());
+
+		RecalculationCounters counters = masterBook.getPricingTargets()[0].getCounters();
+		// Adds of c and d, each better than the boundary so far
+		assertEquals(2, counters.getProfitBetterPrice());
+		// Adds of d and f each take the bids to 200 shares
+		assertEquals(2, counters.getProfitTargetCrossed());
+		// Profit used 43 shares of c, the first reduce of c leaves 50 of them and the second only 40
+		assertEquals(1, counters.getProfitLevelDepleted());
+		// Reduce of d at a better price than c
+		assertEquals(1, counters.getProfitInsideReduce());
+		assertEquals(4, counters.getProfitRecalculated());
+		// First reduce of c, and the add of g below the boundary
+		assertEquals(2, counters.getProfitSkipped());
+		// Not enough shares for the target twice in a row
+		assertEquals(3, counters.getProfitWritten());
+		assertEquals(1, counters.getProfitSuppressed());
+		// Never 200 ask shares
+		assertEquals(0, counters.getCostRecalculated());
+		assertEquals(0, counters.getCostWritten());
+	}
+
+	@Test
+	public final void testSnapshotOverJmx() throws Exception {
+		MasterBook masterBook = process(1);
+		EngineStats engineStats = new EngineStats(masterBook, EngineStats.DEFAULT_PUBLISH_INTERVAL);
+		engineStats.register();
+
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(EngineStats.OBJECT_NAME);
+			assertEquals(4L, server.getAttribute(name, "BidAdds"));
+			assertEquals(1L, server.getAttribute(name, "UnknownReduces"));
+
+			assertEquals(4, server.getAttribute(name, "LiveBids"));
+			assertEquals(1, server.getAttribute(name, "LiveAsks"));
+			assertEquals(4, server.getAttribute(name, "BidPriceLevels"));
+			assertEquals(211, server.getAttribute(name, "TotalBidSize"));
+			assertEquals(100, server.getAttribute(name, "TotalAskSize"));
+			assertEquals("44.18", server.getAttribute(name, "BestBid"));
+			assertEquals("44.38", server.getAttribute(name, "BestAsk"));
+			assertArrayEquals(new String[] { "44.18" }, (String[]) server.getAttribute(name, "LastProfits"));
+			assertArrayEquals(new String[] { "44.38" }, (String[]) server.getAttribute(name, "LastCosts"));
+
+			CompositeData[] targetCounters = (CompositeData[]) server.getAttribute(name, "TargetCounters");
+			assertEquals(1, targetCounters.length);
+			assertEquals(1, targetCounters[0].get("target"));
+			assertEquals(masterBook.getPricingTargets()[0].getCounters().getCostWritten(), targetCounters[0].get("costWritten"));
+
+			// Orders applied since the snapshot are not seen until the next one
+			masterBook.updateBookStructures(new Order("28800900 A h S 44.50 100".split("\\s+")));
+			assertEquals(2L, server.getAttribute(name, "AskAdds"));
+			engineStats.orderDone();
+			engineStats.publish();
+			assertEquals(3L, server.getAttribute(name, "AskAdds"));
+			assertEquals(2, server.getAttribute(name, "LiveAsks"));
+			assertEquals(1L, server.getAttribute(name, "Orders"));
+		} finally {
+			engineStats.unregister();
+		}
+	}
+
+	@Test
+	public final void testQuietInputPublishes() throws Exception {
+		MasterBook masterBook = new MasterBook(new int[] { 1 }, PriceLevelsType.TREE, false);
+		PricingEngine pricingEngine = new PricingEngine(masterBook, new OutputSink[] { new OutputSink(DISCARD, FlushPolicy.DEFAULT, false) });
+		// Far longer than the test, only going idle publishes
+		final EngineStats engineStats = new EngineStats(masterBook, 3600000000000L);
+
+		String lines = "28800538 A b S 44.26 100\n28800562 A c B 44.10 100\n";
+		IdleInputStream input = new IdleInputStream(new ByteArrayInputStream(lines.getBytes("US-ASCII")));
+		input.setIdleAction(new Runnable() {
+			@Override
+			public void run() {
+				engineStats.inputIdle();
+			}
+		});
+		ByteLineReader lineReader = new ByteLineReader(input);
+		OrderDecoder orderDecoder = new OrderDecoder();
+		Order order = new Order();
+
+		while(lineReader.nextLine() && lineReader.getLineLength() != 0){
+			pricingEngine.process(orderDecoder.decode(lineReader.getBuffer(), lineReader.getLineStart(), lineReader.getLineEnd(), order));
+			engineStats.orderDone();
+		}
+
+		// Published when the reader found nothing more to read
+		assertEquals(2L, engineStats.getOrders());
+		assertEquals("44.10", engineStats.getBestBid());
+		assertEquals("44.26", engineStats.getBestAsk());
+	}
+
+	@Test
+	public final void testRateFallsOnQuietFeed() throws Exception {
+		MasterBook masterBook = process(1);
+		EngineStats engineStats = new EngineStats(masterBook, 10000000L);
+		for(int i = 0; i < 10; i++){
+			engineStats.orderDone();
+		}
+		Thread.sleep(20);
+		engineStats.inputIdle();
+		assertEquals(10L, engineStats.getOrders());
+
+		// Nothing more is handled, the ten orders are spread over the time up to now
+		Thread.sleep(100);
+		assertTrue(engineStats.getSnapshotAgeMillis() >= 100);
+		assertTrue(engineStats.getOrdersPerSecond() <= 10 * 1000 / 120);
+		assertTrue(engineStats.getOrdersPerSecond() > 0);
+	}
+}
@@ -0,0 +1,102 @@
+package stocks.solver.raul;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Test;
+
+public class FlightEventsTest {
+
+	private static final DiscardChannel DISCARD = new DiscardChannel();
+
+	private static final int TARGET = 200;
+
+	/**
+	 * Bids at a price level each, enough for the bids to grow past the first growth, then bad reduces
+	 */
+	private void process(MasterBook masterBook, BadOrderBursts badOrderBursts) throws Exception {
+		PricingEngine pricingEngine = new PricingEngine(masterBook, new OutputSink[] { new OutputSink(DISCARD, FlushPolicy.DEFAULT, false) });
+
+		for(int i = 0; i < MasterBook.FIRST_PRICE_LEVELS_GROWTH; i++){
+			pricingEngine.process(new Order(new String[] { String.valueOf(28800000 + i), "A", "b" + i, "B", "44." + (10 + i), "10" }));
+		}
+
+		for(int i = 0; i < BadOrderBursts.BURST_SIZE; i++){
+			try {
+				pricingEngine.process(new Order(new String[] { "28801000", "R", "x" + i, "10" }));
+				fail("Reduce of an order not in the market");
+			} catch (ReduceMarketLookupException e) {
+				badOrderBursts.unknownReduce();
+			}
+		}
+		badOrderBursts.finish();
+	}
+
+	private static int count(List<RecordedEvent> events, String name){
+		int count = 0;
+		for(RecordedEvent event : events){
+			if(event.getEventType().getName().equals(name)){
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Test
+	public final void testEventsRecorded() throws Exception {
+		Path recordingFile = Files.createTempFile("pricer", ".jfr");
+		MasterBook masterBook = new MasterBook(new int[] { TARGET }, PriceLevelsType.TREE, false);
+
+		try {
+			Recording recording = new Recording();
+			try {
+				// Every calculation, however quick
+				recording.enable(CalculationEvent.class).withThreshold(Duration.ZERO);
+				recording.enable(PriceLevelGrowthEvent.class);
+				recording.enable(BadOrderBurstEvent.class).withThreshold(Duration.ZERO);
+				recording.start();
+				process(masterBook, new BadOrderBursts(masterBook));
+				recording.stop();
+				recording.dump(recordingFile);
+			} finally {
+				recording.close();
+			}
+
+			List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+			assertTrue(count(events, "stocks.solver.raul.Calculation") > 0);
+			assertEquals(1, count(events, "stocks.solver.raul.PriceLevelGrowth"));
+			assertEquals(1, count(events, "stocks.solver.raul.BadOrderBurst"));
+
+			for(RecordedEvent event : events){
+				if(event.getEventType().getName().equals("stocks.solver.raul.PriceLevelGrowth")){
+					assertEquals(MasterBook.FIRST_PRICE_LEVELS_GROWTH, event.getInt("bidPriceLevels"));
+					assertEquals(TARGET, event.getInt("target"));
+				} else if(event.getEventType().getName().equals("stocks.solver.raul.BadOrderBurst")){
+					assertEquals(BadOrderBursts.BURST_SIZE, event.getInt("unknownReduces"));
+					assertEquals(0, event.getInt("parsingErrors"));
+				}
+			}
+		} finally {
+			Files.deleteIfExists(recordingFile);
+		}
+	}
+
+	@Test
+	public final void testNothingWithoutRecording() throws Exception {
+		MasterBook masterBook = new MasterBook(new int[] { TARGET }, PriceLevelsType.TREE, false);
+		BadOrderBursts badOrderBursts = new BadOrderBursts(masterBook);
+		assertNull(FlightEvents.beginCalculation());
+		assertNull(FlightEvents.beginBadOrderBurst());
+
+		process(masterBook, badOrderBursts);
+		assertEquals(0, badOrderBursts.getUnknownReduces());
+	}
+}
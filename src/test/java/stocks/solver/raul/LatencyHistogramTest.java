@@ -0,0 +1,69 @@
+package stocks.solver.raul;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public final void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for(long nanos = 1; nanos <= 100000; nanos++){
+			histogram.record(nanos);
+		}
+
+		assertEquals(100000, histogram.getCount());
+		assertEquals(100000, histogram.getMax());
+		assertWithinPrecision(50000, histogram.getValueAtPercentile(50));
+		assertWithinPrecision(99000, histogram.getValueAtPercentile(99));
+		assertWithinPrecision(99900, histogram.getValueAtPercentile(99.9));
+		assertEquals(100000, histogram.getValueAtPercentile(100));
+		assertEquals(1, histogram.getValueAtPercentile(0));
+	}
+
+	private void assertWithinPrecision(long expected, long actual){
+		assertTrue(actual + " for " + expected, actual >= expected && actual <= expected + expected / 32);
+	}
+
+	@Test
+	public final void testBucketsCoverEveryValue() {
+		long[] values = { 0, 1, 31, 32, 33, 63, 64, 65, 1000, 123456789, Long.MAX_VALUE };
+
+		for(long value : values){
+			int bucket = LatencyHistogram.bucket(value);
+			assertTrue(value + " above its bucket", value <= LatencyHistogram.highestValue(bucket));
+			if(bucket > 0){
+				assertTrue(value + " below its bucket", value > LatencyHistogram.highestValue(bucket - 1));
+			}
+		}
+	}
+
+	@Test
+	public final void testAddAndReset() {
+		LatencyHistogram first = new LatencyHistogram();
+		LatencyHistogram second = new LatencyHistogram();
+		first.record(10);
+		second.record(5000000);
+		second.record(-1);
+
+		first.add(second);
+		assertEquals(3, first.getCount());
+		assertEquals(5000000, first.getMax());
+		assertEquals(0, first.getValueAtPercentile(10));
+		assertWithinPrecision(5000000, first.getValueAtPercentile(99));
+
+		first.reset();
+		assertEquals(0, first.getCount());
+		assertEquals(0, first.getMax());
+		assertEquals(0, first.getValueAtPercentile(99));
+	}
+
+	@Test
+	public final void testOrdersPerSecondAtBillionsOfOrders() {
+		assertEquals(2000, StageMetrics.ordersPerSecond(1000, 500000000L));
+		assertEquals(0, StageMetrics.ordersPerSecond(1000, 0));
+		// Ten billion orders in an hour, past where orders times a billion overflows
+		assertEquals(10000000000L / 3600, StageMetrics.ordersPerSecond(10000000000L, 3600 * 1000000000L));
+	}
+}
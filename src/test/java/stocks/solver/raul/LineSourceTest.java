@@ -0,0 +1,96 @@
+package stocks.solver.raul;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LineSourceTest {
+
+	static final String INPUT = "28800538 A b S 44.26 100\n28800562 A c B 44.10 100\r\n28800744 R b 100\r"
+			+ "\n\r28800758 A d B 44.18 157\r\r\n28800773 A e S 44.38 100";
+
+	Charset charset;
+	Path inputFile;
+
+	@Before
+	public void setUp() throws Exception {
+		charset = Charset.forName("utf-8");
+		inputFile = Files.createTempFile("pricer", ".in");
+		Files.write(inputFile, INPUT.getBytes(charset));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		Files.deleteIfExists(inputFile);
+	}
+
+	private List<String> readLines(LineSource lineSource) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		while(lineSource.nextLine()){
+			ByteBuffer buffer = lineSource.getBuffer();
+			byte[] bytes = new byte[lineSource.getLineLength()];
+			for(int i = 0; i < bytes.length; i++){
+				bytes[i] = buffer.get(lineSource.getLineStart() + i);
+			}
+			lines.add(new String(bytes, charset));
+		}
+		lineSource.close();
+		return lines;
+	}
+
+	private List<String> expectedLines(){
+		List<String> lines = new ArrayList<String>();
+		for(String line : INPUT.split("\r\n|\r|\n", -1)){
+			lines.add(line);
+		}
+		return lines;
+	}
+
+	@Test
+	public final void testByteLineReader() throws IOException {
+		// Small buffer forces lines to be moved and the buffer to grow
+		ByteLineReader lineReader = new ByteLineReader(new ByteArrayInputStream(INPUT.getBytes(charset)), 4);
+		assertEquals(expectedLines(), readLines(lineReader));
+	}
+
+	@Test
+	public final void testMappedFileLineReader() throws IOException {
+		// Small window forces lines to straddle windows and the window to grow
+		MappedFileLineReader lineReader = new MappedFileLineReader(inputFile, 5);
+		assertEquals(expectedLines(), readLines(lineReader));
+	}
+
+	@Test
+	public final void testMappedFileLineReaderEmptyFile() throws IOException {
+		Files.write(inputFile, new byte[0]);
+		assertTrue(readLines(new MappedFileLineReader(inputFile)).isEmpty());
+	}
+
+	@Test
+	public final void testMappedFileLineReaderResume() throws IOException {
+		List<String> expected = expectedLines();
+
+		// Resuming after every line, including after a carriage return with its line feed still to come
+		for(int line = 0; line < expected.size(); line++){
+			MappedFileLineReader lineReader = new MappedFileLineReader(inputFile);
+			for(int i = 0; i <= line; i++){
+				assertTrue(lineReader.nextLine());
+			}
+			long offset = lineReader.getOffset();
+			lineReader.close();
+
+			assertEquals(expected.subList(line + 1, expected.size()), readLines(MappedFileLineReader.resumeAt(inputFile, offset)));
+		}
+	}
+}
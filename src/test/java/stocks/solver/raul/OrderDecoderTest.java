@@ -0,0 +1,124 @@
+package stocks.solver.raul;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class OrderDecoderTest {
+
+	OrderDecoder orderDecoder;
+
+	@Before
+	public void setUp() throws Exception {
+		orderDecoder = new OrderDecoder();
+	}
+
+	private Order decode(String line) throws ParsingException {
+		byte[] bytes = line.getBytes(Charset.defaultCharset());
+		// Surround the line with other bytes to make sure only the given region is looked at
+		ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 4);
+		buffer.put((byte) '9').put((byte) ' ').put(bytes).put((byte) '\n').put((byte) 'x');
+		return orderDecoder.decode(buffer, 2, 2 + bytes.length);
+	}
+
+	private void assertSameOrder(Order expected, Order actual){
+		assertEquals(expected.getTimestamp(), actual.getTimestamp());
+		assertEquals(expected.getOrderAction(), actual.getOrderAction());
+		assertEquals(expected.getOrderId(), actual.getOrderId());
+		assertEquals(expected.getSide(), actual.getSide());
+		assertEquals(expected.getPrice(), actual.getPrice());
+		assertEquals(expected.getSize(), actual.getSize());
+	}
+
+	@Test
+	public final void testDecodeMatchesSplitParsing() throws ParsingException {
+		String[] lines = {
+			"28800538 A b S 44.26 100",
+			"28800744 R b 100",
+			"28800562 A c B 44.10 100",
+			"28800562 A c B 44 100",
+			"28800562 A 1a2f B 0.07 1",
+			"28800562\tA  c B 44.1 100  ",
+			"28800562 A c B 44.100 100",
+			"28800562 A c B 1e2 100",
+			"28800562 A c B 44. 100",
+			"28800562 A c B .5 100",
+			"28800562 A c B 1234567890123456.78 100",
+			"28800562 A c X 44.10 100",
+			"28800562 A \u00e9t\u00e9 B 44.10 100",
+			"+28800562 R c 0100"
+		};
+
+		for(String line : lines){
+			String decodedLine = new String(line.getBytes(Charset.defaultCharset()), Charset.defaultCharset());
+			assertSameOrder(new Order(decodedLine.split("\\s+")), decode(line));
+		}
+	}
+
+	@Test(expected = ParsingException.class)
+	public final void testBadAction() throws ParsingException {
+		decode("28800744 A 100");
+	}
+
+	@Test(expected = ParsingException.class)
+	public final void testBadPrice() throws ParsingException {
+		decode("28800758 A d B 44.1.8 157");
+	}
+
+	@Test(expected = ParsingException.class)
+	public final void testPriceNotWholeTicks() throws ParsingException {
+		decode("28800758 A d B 44.185 157");
+	}
+
+	@Test
+	public final void testPriceInTicks() throws ParsingException {
+		assertEquals(4426, decode("28800538 A b S 44.26 100").getPrice());
+		assertEquals(4410, decode("28800562 A c B 44.1 100").getPrice());
+		assertEquals(4400, decode("28800562 A c B 44 100").getPrice());
+	}
+
+	@Test(expected = ParsingException.class)
+	public final void testBadSize() throws ParsingException {
+		decode("28800758 R d 99999999999");
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public final void testBadTimestamp() throws ParsingException {
+		decode("abc");
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public final void testLeadingWhitespace() throws ParsingException {
+		decode(" 28800744 R b 100");
+	}
+
+	@Test
+	public final void testDecodeWithSymbol() throws ParsingException {
+		orderDecoder = new OrderDecoder(new SymbolTable());
+
+		Order add = decode("28800538 IBM A b S 44.26 100");
+		assertEquals("IBM", add.getSymbol());
+		assertSameOrder(new Order("28800538 A b S 44.26 100".split("\\s+")), add);
+
+		Order reduce = decode("28800744 IBM R b 100");
+		assertSame(add.getSymbol(), reduce.getSymbol());
+		assertSameOrder(new Order("28800744 R b 100".split("\\s+")), reduce);
+
+		// Slow path interns to the same symbol
+		Order slowAdd = decode("28800562 IBM A c B 44.100 100");
+		assertSame(add.getSymbol(), slowAdd.getSymbol());
+		assertEquals(4410, slowAdd.getPrice());
+
+		assertEquals("MSFT", decode("28800562 MSFT A c B 44.1 100").getSymbol());
+	}
+
+	@Test(expected = ParsingException.class)
+	public final void testMissingSymbol() throws ParsingException {
+		orderDecoder = new OrderDecoder(new SymbolTable());
+		decode("28800538 A b S 44.26 100");
+	}
+}
@@ -0,0 +1,148 @@
+package stocks.solver.raul;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class OrderFlowGeneratorTest {
+
+	private static final int ORDERS = 100000;
+
+	private static final int DEPTH = 20;
+	private static final int ID_CARDINALITY = 500;
+
+	private OrderFlowGenerator generator(long seed){
+		return new OrderFlowGenerator(seed, DEPTH, 2, ID_CARDINALITY, 0.4);
+	}
+
+	@Test
+	public final void testSameSeedSameOrders() throws Exception {
+		assertEquals(generator(7).lines(ORDERS), generator(7).lines(ORDERS));
+		assertFalse(generator(7).lines(ORDERS).equals(generator(8).lines(ORDERS)));
+	}
+
+	@Test
+	public final void testTextAndBinaryMatch() throws Exception {
+		ByteArrayOutputStream text = new ByteArrayOutputStream();
+		generator(7).writeText(Channels.newChannel(text), ORDERS);
+		ByteArrayOutputStream binary = new ByteArrayOutputStream();
+		generator(7).writeBinary(new BinaryOrderEncoder(Channels.newChannel(binary)), ORDERS);
+
+		ByteLineReader lineReader = new ByteLineReader(new ByteArrayInputStream(text.toByteArray()));
+		BinaryOrderDecoder decoder = new BinaryOrderDecoder(Channels.newChannel(new ByteArrayInputStream(binary.toByteArray())));
+		OrderDecoder orderDecoder = new OrderDecoder();
+		Order textOrder = new Order();
+		Order binaryOrder = new Order();
+
+		for(int i = 0; i < ORDERS; i++){
+			assertTrue(lineReader.nextLine());
+			orderDecoder.decode(lineReader.getBuffer(), lineReader.getLineStart(), lineReader.getLineEnd(), textOrder);
+			assertTrue(decoder.next(binaryOrder));
+			assertEquals(textOrder.getTimestamp(), binaryOrder.getTimestamp());
+			assertEquals(textOrder.getOrderAction(), binaryOrder.getOrderAction());
+			assertEquals(textOrder.getOrderKey(), binaryOrder.getOrderKey());
+			assertEquals(textOrder.getPrice(), binaryOrder.getPrice());
+			assertEquals(textOrder.getSize(), binaryOrder.getSize());
+			if(textOrder.getOrderAction().equals(OrderAction.ADD)){
+				assertEquals(textOrder.getSide(), binaryOrder.getSide());
+			}
+		}
+
+		assertFalse(lineReader.nextLine() && lineReader.getLineLength() != 0);
+		assertFalse(decoder.next(binaryOrder));
+		lineReader.close();
+		decoder.close();
+	}
+
+	@Test
+	public final void testMarketWithinSettings() throws Exception {
+		OrderFlowGenerator generator = generator(7);
+		MasterBook masterBook = new MasterBook(new int[] { 200 }, PriceLevelsType.TREE, false);
+		Set<String> orderIds = new HashSet<String>();
+		Order order = new Order();
+		int reduces = 0;
+
+		for(int i = 0; i < ORDERS; i++){
+			generator.next(order);
+			orderIds.add(order.getOrderId());
+
+			if(order.getOrderAction().equals(OrderAction.ADD)){
+				long distance = order.getSide().equals(OrderSide.B) ? generator.getMidPrice() - order.getPrice()
+						: order.getPrice() - generator.getMidPrice() - 1;
+				assertTrue(distance >= 0 && distance < DEPTH);
+				assertTrue(order.getPrice() > 0);
+			} else {
+				reduces++;
+			}
+
+			// Every reduce is of a live order
+			masterBook.updateBookStructures(order);
+			assertEquals(generator.getLiveCount(), masterBook.getLiveOrders().size());
+		}
+
+		assertEquals(ID_CARDINALITY, orderIds.size());
+		// The pool runs out, every order is a reduce until an id is free again
+		assertTrue(reduces > ORDERS * 0.5);
+	}
+
+	@Test
+	public final void testReduceRatio() throws Exception {
+		// A pool the live orders never fill
+		OrderFlowGenerator generator = new OrderFlowGenerator(7, DEPTH, 2, ORDERS, 0.4);
+		Order order = new Order();
+		int reduces = 0;
+
+		for(int i = 0; i < ORDERS; i++){
+			generator.next(order);
+			if(order.getOrderAction().equals(OrderAction.REDUCE)){
+				reduces++;
+			}
+		}
+
+		assertTrue(reduces > ORDERS * 0.39 && reduces < ORDERS * 0.41);
+	}
+
+	/**
+	 * @return Results of both targets written one after the other
+	 */
+	private byte[] results(List<String> lines, PriceLevelsType priceLevelsType, boolean incremental) throws Exception {
+		int[] targets = { 200, 10000 };
+		ByteArrayOutputStream[] written = new ByteArrayOutputStream[targets.length];
+		OutputSink[] outputs = new OutputSink[targets.length];
+		for(int i = 0; i < targets.length; i++){
+			written[i] = new ByteArrayOutputStream();
+			outputs[i] = new OutputSink(Channels.newChannel(written[i]), FlushPolicy.DEFAULT, false);
+		}
+
+		PricingEngine pricingEngine = new PricingEngine(new MasterBook(targets, priceLevelsType, incremental), outputs);
+		for(String line : lines){
+			pricingEngine.process(new Order(line.split("\\s+")));
+		}
+
+		ByteArrayOutputStream results = new ByteArrayOutputStream();
+		for(int i = 0; i < targets.length; i++){
+			outputs[i].close();
+			written[i].writeTo(results);
+		}
+		return results.toByteArray();
+	}
+
+	@Test
+	public final void testPriceLevelsAgreeAtVolume() throws Exception {
+		List<String> lines = generator(7).lines(ORDERS);
+		byte[] expected = results(lines, PriceLevelsType.TREE, false);
+		assertTrue(expected.length > 0);
+
+		for(PriceLevelsType priceLevelsType : PriceLevelsType.values()){
+			assertArrayEquals(priceLevelsType.toString(), expected, results(lines, priceLevelsType, false));
+		}
+		assertArrayEquals("incremental", expected, results(lines, PriceLevelsType.TREE, true));
+	}
+}
@@ -0,0 +1,123 @@
+package stocks.solver.raul;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class OrderIndexTest {
+
+	@Test
+	public final void testKeys() {
+		assertEquals('a', OrderIndex.key("a"));
+		assertEquals(('a' << 8) | 'b', OrderIndex.key("ab"));
+		assertTrue(OrderIndex.key("abcdefgh") > 0);
+		// Too long or not ASCII, keyed by hash
+		assertTrue(OrderIndex.key("abcdefghi") < 0);
+		assertTrue(OrderIndex.key("\u00e9") < 0);
+		assertNotEquals(OrderIndex.key("ab"), OrderIndex.key("ba"));
+	}
+
+	@Test
+	public final void testSameIdOnBothSides() {
+		OrderIndex orderIndex = new OrderIndex();
+		for(String id : new String[] { "x", "long-order-id-x" }){
+			orderIndex.put(id, OrderSide.B, 4400, 100);
+			orderIndex.put(id, OrderSide.S, 4500, 60);
+			assertEquals(1, orderIndex.bidCount());
+			assertEquals(1, orderIndex.askCount());
+
+			// Bid first, then the ask, each with its own shares
+			int slot = orderIndex.find(id);
+			assertEquals(OrderSide.B, orderIndex.getSide(slot));
+			assertEquals(4400, orderIndex.getPrice(slot));
+			assertEquals(OrderIndex.key(id), orderIndex.getKey(slot));
+			assertEquals(0, orderIndex.reduce(slot, 100));
+
+			slot = orderIndex.find(id);
+			assertEquals(OrderSide.S, orderIndex.getSide(slot));
+			assertEquals(4500, orderIndex.getPrice(slot));
+			assertEquals(OrderIndex.key(id), orderIndex.getKey(slot));
+			assertEquals(0, orderIndex.reduce(slot, 60));
+
+			assertEquals(OrderIndex.NOT_FOUND, orderIndex.find(id));
+			assertEquals(0, orderIndex.size());
+		}
+	}
+
+	@Test
+	public final void testSameIdOnBothSidesOfBook() throws Exception {
+		MasterBook masterBook = new MasterBook(new int[] { 200 }, PriceLevelsType.TREE, false);
+		String[] lines = { "28800000 A x B 44.00 100", "28800001 A x S 45.00 100", "28800002 R x 100", "28800003 R x 100" };
+		for(String line : lines){
+			masterBook.updateBookStructures(new Order(line.split("\\s+")));
+		}
+
+		assertEquals(0, masterBook.getTotalBidSize());
+		assertEquals(0, masterBook.getTotalAskSize());
+		assertEquals(0, masterBook.getLiveOrders().size());
+		assertEquals(0, masterBook.getBidPriceLevels().size());
+		assertEquals(0, masterBook.getAskPriceLevels().size());
+	}
+
+	@Test
+	public final void testSameAsHashMap() {
+		Random random = new Random(42);
+		OrderIndex orderIndex = new OrderIndex();
+		Map<String, long[]> expected = new HashMap<String, long[]>();
+		List<String> ids = new ArrayList<String>();
+		int bids = 0;
+
+		for(int i = 0; i < 100000; i++){
+			if(!ids.isEmpty() && random.nextInt(100) < 48){
+				int index = random.nextInt(ids.size());
+				String id = ids.get(index);
+				long[] order = expected.get(id);
+				int slot = orderIndex.find(id);
+
+				assertEquals(order[0], orderIndex.getPrice(slot));
+				assertEquals(order[1], orderIndex.getSize(slot));
+
+				int reduction = 1 + random.nextInt((int) order[1]);
+				order[1] -= reduction;
+				assertEquals(order[1], orderIndex.reduce(slot, reduction));
+
+				if(order[1] == 0){
+					bids -= order[2];
+					expected.remove(id);
+					ids.set(index, ids.get(ids.size() - 1));
+					ids.remove(ids.size() - 1);
+					assertEquals(OrderIndex.NOT_FOUND, orderIndex.find(id));
+				}
+			} else {
+				// Mix of packed and hashed ids
+				String id = random.nextBoolean() ? Integer.toString(i, 36) : "long-order-id-" + i;
+				long price = 4400 + random.nextInt(100);
+				int size = 1 + random.nextInt(500);
+				OrderSide side = random.nextBoolean() ? OrderSide.B : OrderSide.S;
+
+				orderIndex.put(id, side, price, size);
+				expected.put(id, new long[] { price, size, side == OrderSide.B ? 1 : 0 });
+				bids += side == OrderSide.B ? 1 : 0;
+				ids.add(id);
+				assertEquals(side, orderIndex.getSide(orderIndex.find(id)));
+			}
+
+			assertEquals(expected.size(), orderIndex.size());
+			assertEquals(bids, orderIndex.bidCount());
+			assertEquals(expected.size() - bids, orderIndex.askCount());
+		}
+
+		for(Map.Entry<String, long[]> entry : expected.entrySet()){
+			int slot = orderIndex.find(entry.getKey());
+			assertNotEquals(OrderIndex.NOT_FOUND, slot);
+			assertEquals(entry.getValue()[0], orderIndex.getPrice(slot));
+			assertEquals(entry.getValue()[1], orderIndex.getSize(slot));
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package stocks.solver.raul;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OrderJournalTest {
+
+	private static final String[] LINES = {
+		"28800538 A b S 44.26 100",
+		"28800562 A c B 44.10 100",
+		"28800744 R b 100",
+		"28800758 A averylongorderid B 44.18 157",
+		"28800773 A \u00e9t\u00e9 S 44.38 100",
+		"28800796 R averylongorderid 57",
+		"28800812 A 12345678 B 0.01 2147483647",
+	};
+
+	// Small enough for records, and interned ids, to run across regions
+	private static final int REGION_SIZE = 64;
+
+	Path journalFile;
+
+	@Before
+	public void setUp() throws Exception {
+		journalFile = Files.createTempFile("pricer", ".journal");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		Files.deleteIfExists(journalFile);
+	}
+
+	private void append(OrderJournal journal, int from, int to) throws Exception {
+		for(int i = from; i < to; i++){
+			journal.append(new Order(LINES[i].split("\\s+")));
+		}
+	}
+
+	private void assertJournal(long offset, int from, int to) throws Exception {
+		BinaryOrderDecoder decoder = OrderJournal.read(journalFile, offset);
+		Order order = new Order();
+
+		try {
+			for(int i = from; i < to; i++){
+				Order expected = new Order(LINES[i].split("\\s+"));
+				assertTrue(decoder.next(order));
+				assertEquals(expected.getTimestamp(), order.getTimestamp());
+				assertEquals(expected.getOrderAction(), order.getOrderAction());
+				assertEquals(expected.getOrderId(), order.getOrderId());
+				assertEquals(expected.getSide(), order.getSide());
+				assertEquals(expected.getPrice(), order.getPrice());
+				assertEquals(expected.getSize(), order.getSize());
+			}
+
+			assertFalse(decoder.next(order));
+		} finally {
+			decoder.close();
+		}
+	}
+
+	@Test
+	public final void testReadBack() throws Exception {
+		OrderJournal journal = new OrderJournal(journalFile, 2, 0, REGION_SIZE);
+		append(journal, 0, LINES.length);
+		journal.close();
+
+		assertEquals(journal.getLength(), Files.size(journalFile));
+		assertJournal(0, 0, LINES.length);
+	}
+
+	@Test
+	public final void testUnclosedJournalEndsAtLastRecord() throws Exception {
+		OrderJournal journal = new OrderJournal(journalFile, OrderJournal.DEFAULT_FORCE_INTERVAL, 0, REGION_SIZE);
+		append(journal, 0, LINES.length);
+		journal.force();
+
+		try {
+			// Still in the zeros of the last region, as after the process dies
+			assertTrue(Files.size(journalFile) > journal.getLength());
+			assertJournal(0, 0, LINES.length);
+		} finally {
+			journal.close();
+		}
+	}
+
+	@Test
+	public final void testReadAndResumeFromMark() throws Exception {
+		OrderJournal journal = new OrderJournal(journalFile, OrderJournal.DEFAULT_FORCE_INTERVAL, 0, REGION_SIZE);
+		append(journal, 0, 4);
+		long mark = journal.mark();
+		// Reduces an id interned before the mark
+		append(journal, 4, 6);
+		journal.close();
+
+		assertJournal(mark, 4, 6);
+
+		// Anything after the mark is written again
+		journal = new OrderJournal(journalFile, OrderJournal.DEFAULT_FORCE_INTERVAL, mark, REGION_SIZE);
+		append(journal, 4, LINES.length);
+		journal.close();
+
+		assertJournal(0, 0, LINES.length);
+	}
+
+	@Test(expected = IOException.class)
+	public final void testNotAJournal() throws Exception {
+		Files.write(journalFile, "28800538 A b S 44.26 100\n".getBytes("US-ASCII"));
+		OrderJournal.read(journalFile, 0);
+	}
+}
@@ -0,0 +1,37 @@
+package stocks.solver.raul;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+
+import org.junit.Test;
+
+public class OrderPipelineTest {
+
+	private String price(byte[] input, boolean pipeline) throws Exception {
+		ByteArrayOutputStream written = new ByteArrayOutputStream();
+		OutputSink outputSink = new OutputSink(Channels.newChannel(written), FlushPolicy.DEFAULT, true);
+		PricingEngine pricingEngine = new PricingEngine(new MasterBook(200), new OutputSink[] { outputSink }, pipeline);
+		if(pipeline){
+			// Small ring so the decoder keeps catching up with the book
+			new OrderPipeline(64).run(new ByteLineReader(new ByteArrayInputStream(input)), new OrderDecoder(), pricingEngine);
+		} else {
+			TestFeed.process(pricingEngine, input);
+		}
+
+		pricingEngine.finish();
+		outputSink.close();
+		return written.toString("US-ASCII");
+	}
+
+	@Test
+	public final void testSameOutputAsSingleThread() throws Exception {
+		byte[] input = TestFeed.input(TestFeed.lines(42, 100000));
+		String expected = price(input, false);
+
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, price(input, true));
+	}
+}
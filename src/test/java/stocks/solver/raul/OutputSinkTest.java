@@ -0,0 +1,106 @@
+package stocks.solver.raul;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+public class OutputSinkTest {
+
+	private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+	private OutputSink sink(String flushPolicy){
+		return new OutputSink(Channels.newChannel(written), FlushPolicy.getFlushPolicy(flushPolicy), true);
+	}
+
+	private String written(){
+		return new String(written.toByteArray(), Charset.forName("US-ASCII"));
+	}
+
+	@Test
+	public final void testFlushByEvents() throws IOException {
+		OutputSink outputSink = sink("events:2");
+
+		outputSink.writeLine("28800538 S 8832.56");
+		assertEquals("", written());
+		outputSink.writeLine("28800562 S NA");
+		assertEquals("28800538 S 8832.56\n28800562 S NA\n", written());
+	}
+
+	@Test
+	public final void testFlushByBytes() throws IOException {
+		OutputSink outputSink = sink("bytes:20");
+
+		outputSink.writeLine("28800538 S 8832.56");
+		assertEquals("", written());
+		outputSink.writeLine("1");
+		assertEquals("28800538 S 8832.56\n1\n", written());
+	}
+
+	@Test
+	public final void testFlushAtEnd() throws IOException {
+		OutputSink outputSink = sink("end");
+		StringBuilder expected = new StringBuilder();
+
+		for(int i = 0; i < 10000; i++){
+			outputSink.writeLine("28800538 B " + i);
+			expected.append("28800538 B ").append(i).append('\n');
+		}
+		// Only full buffers are written out before the end
+		assertTrue(written.size() > FlushPolicy.DEFAULT_BYTES - 32);
+		assertTrue(written.size() < expected.length());
+
+		outputSink.close();
+		assertEquals(expected.toString(), written());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public final void testBadFlushPolicy() {
+		FlushPolicy.getFlushPolicy("events:0");
+	}
+
+	@Test
+	public final void testBinaryRecordsRenderAsText() throws IOException {
+		ByteArrayOutputStream binary = new ByteArrayOutputStream();
+		OutputSink binarySink = new OutputSink(Channels.newChannel(binary), FlushPolicy.DEFAULT, true, true);
+
+		CalculatorResult calcResult = new CalculatorResult();
+		calcResult.setAmount(28800538, OrderSide.S, 883256);
+		calcResult.writeTo(binarySink);
+		calcResult.setNotAvailable(28800562, OrderSide.S);
+		calcResult.writeTo(binarySink);
+		calcResult.setAmount(28800744, OrderSide.B, 5);
+		calcResult.writeTo(binarySink);
+		binarySink.close();
+
+		assertEquals(BinaryResults.HEADER_SIZE + 3 * BinaryResults.RECORD_SIZE, binary.size());
+
+		OutputSink textSink = sink("end");
+		int records = BinaryResultReader.render(Channels.newChannel(new ByteArrayInputStream(binary.toByteArray())), textSink);
+		textSink.close();
+
+		assertEquals(3, records);
+		assertEquals("28800538 S 8832.56\n28800562 S NA\n28800744 B 0.05\n", written());
+	}
+
+	@Test
+	public final void testStandardOutFollowsSetOut() throws IOException {
+		PrintStream standardOut = System.out;
+		System.setOut(new PrintStream(written));
+		try {
+			OutputSink outputSink = OutputSink.toStandardOut(FlushPolicy.getFlushPolicy("end"));
+			outputSink.writeLine("28800538 S 8832.56");
+			outputSink.close();
+		} finally {
+			System.setOut(standardOut);
+		}
+
+		assertEquals("28800538 S 8832.56\n", written());
+	}
+}
@@ -0,0 +1,214 @@
+package stocks.solver.raul;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PriceLevelsTest {
+
+	/**
+	 * Applies the same random adds and reduces to the TreeMap implementation and another implementation, checking
+	 * that every fill comes out the same
+	 */
+	private void assertSameAsTree(PriceLevelsType type, boolean highestFirst, int priceRange){
+		PriceLevels actual = highestFirst ? type.create(OrderSide.B) : type.create(OrderSide.S);
+		assertSameAsTree(actual, highestFirst, priceRange, 0);
+	}
+
+	/**
+	 * @param fixedTarget Target to fill every time, 0 to pick a random target for each fill
+	 */
+	private void assertSameAsTree(PriceLevels actual, boolean highestFirst, int priceRange, int fixedTarget){
+		Random random = new Random(42);
+		PriceLevels expected = new TreePriceLevels(highestFirst);
+
+		List<long[]> liveOrders = new ArrayList<long[]>();
+		int totalShares = 0;
+		long midPrice = 4400;
+
+		for(int i = 0; i < 20000; i++){
+			midPrice += random.nextInt(3) - 1;
+
+			if(!liveOrders.isEmpty() && random.nextInt(100) < 45){
+				int index = random.nextInt(liveOrders.size());
+				long[] order = liveOrders.get(index);
+				int reduction = 1 + random.nextInt((int) order[1]);
+				order[1] -= reduction;
+				if(order[1] == 0){
+					liveOrders.set(index, liveOrders.get(liveOrders.size() - 1));
+					liveOrders.remove(liveOrders.size() - 1);
+				}
+				assertEquals(expected.reduceShares(order[0], reduction), actual.reduceShares(order[0], reduction));
+				totalShares -= reduction;
+			} else {
+				long price = midPrice + random.nextInt(priceRange) - priceRange / 2;
+				int shares = 1 + random.nextInt(500);
+				liveOrders.add(new long[] { price, shares });
+				expected.addShares(price, shares);
+				actual.addShares(price, shares);
+				totalShares += shares;
+			}
+
+			assertEquals(expected.size(), actual.size());
+			assertEquals(expected.bestPrice(), actual.bestPrice());
+
+			long probePrice = midPrice + random.nextInt(priceRange) - priceRange / 2;
+			assertEquals(expected.getShares(probePrice), actual.getShares(probePrice));
+
+			int target = fixedTarget != 0 ? fixedTarget : 1 + random.nextInt(2000);
+			if(totalShares >= target){
+				FillResult expectedFill = new FillResult();
+				FillResult actualFill = new FillResult();
+				expected.fill(target, expectedFill);
+				actual.fill(target, actualFill);
+
+				assertEquals(expectedFill.amount, actualFill.amount);
+				assertEquals(expectedFill.lastPriceUsed, actualFill.lastPriceUsed);
+				assertEquals(expectedFill.sharesUsedAtLastPrice, actualFill.sharesUsedAtLastPrice);
+			}
+		}
+	}
+
+	@Test
+	public final void testLadderBids() {
+		assertSameAsTree(PriceLevelsType.LADDER, true, 50);
+	}
+
+	@Test
+	public final void testLadderAsks() {
+		assertSameAsTree(PriceLevelsType.LADDER, false, 50);
+	}
+
+	@Test
+	public final void testLadderRecenters() {
+		// Wide range of prices makes the ladder grow and re-center many times
+		assertSameAsTree(PriceLevelsType.LADDER, true, 5000);
+	}
+
+	/**
+	 * Adds levels spanning more ticks than the implementation holds, checking they are walked as the tree walks them
+	 */
+	private void assertFarPriceSameAsTree(PriceLevels actual, boolean highestFirst, int maxCapacity){
+		PriceLevels expected = new TreePriceLevels(highestFirst);
+		long[] prices = { 4400, 4401, 4400 + maxCapacity, 4399, 4400 + 2L * maxCapacity };
+
+		for(long price : prices){
+			expected.addShares(price, 100);
+			actual.addShares(price, 100);
+		}
+		assertEquals(expected.reduceShares(4401, 100), actual.reduceShares(4401, 100));
+
+		assertEquals(expected.size(), actual.size());
+		assertEquals(expected.bestPrice(), actual.bestPrice());
+		assertEquals(expected.getShares(4400 + maxCapacity), actual.getShares(4400 + maxCapacity));
+		assertEquals(expected.nextWorsePrice(4400), actual.nextWorsePrice(4400));
+		assertEquals(expected.nextBetterPrice(4400), actual.nextBetterPrice(4400));
+
+		for(int target = 50; target <= 400; target += 50){
+			FillResult expectedFill = new FillResult();
+			FillResult actualFill = new FillResult();
+			expected.fill(target, expectedFill);
+			actual.fill(target, actualFill);
+			assertEquals(expectedFill.amount, actualFill.amount);
+			assertEquals(expectedFill.lastPriceUsed, actualFill.lastPriceUsed);
+		}
+	}
+
+	@Test
+	public final void testLadderSpillsFarPriceToTree() {
+		LadderPriceLevels bids = new LadderPriceLevels(true);
+		assertFarPriceSameAsTree(bids, true, LadderPriceLevels.MAX_CAPACITY);
+		assertTrue(bids.isSpilled());
+
+		LadderPriceLevels asks = new LadderPriceLevels(false);
+		assertFarPriceSameAsTree(asks, false, LadderPriceLevels.MAX_CAPACITY);
+		assertTrue(asks.isSpilled());
+	}
+
+	@Test
+	public final void testFenwickSpillsFarPriceToTree() {
+		FenwickPriceLevels bids = new FenwickPriceLevels(true);
+		assertFarPriceSameAsTree(bids, true, FenwickPriceLevels.MAX_CAPACITY);
+		assertTrue(bids.isSpilled());
+
+		FenwickPriceLevels asks = new FenwickPriceLevels(false);
+		assertFarPriceSameAsTree(asks, false, FenwickPriceLevels.MAX_CAPACITY);
+		assertTrue(asks.isSpilled());
+	}
+
+	@Test
+	public final void testFenwickBids() {
+		assertSameAsTree(PriceLevelsType.FENWICK, true, 50);
+	}
+
+	@Test
+	public final void testFenwickAsks() {
+		assertSameAsTree(PriceLevelsType.FENWICK, false, 50);
+	}
+
+	@Test
+	public final void testFenwickRecenters() {
+		assertSameAsTree(PriceLevelsType.FENWICK, false, 5000);
+	}
+
+	@Test
+	public final void testIncrementalBids() {
+		PriceLevels priceLevels = new IncrementalPriceLevels(new TreePriceLevels(true), true, 1000);
+		assertSameAsTree(priceLevels, true, 50, 1000);
+	}
+
+	@Test
+	public final void testIncrementalAsks() {
+		PriceLevels priceLevels = new IncrementalPriceLevels(new LadderPriceLevels(false), false, 200);
+		assertSameAsTree(priceLevels, false, 500, 200);
+	}
+
+	@Test
+	public final void testIncrementalOtherTargets() {
+		PriceLevels priceLevels = new IncrementalPriceLevels(new FenwickPriceLevels(true), true, 1);
+		assertSameAsTree(priceLevels, true, 50, 0);
+	}
+
+	/**
+	 * Checks that one shared walk for several targets gives the same fills as walking for each target on its own
+	 */
+	private void assertSharedWalk(PriceLevelsType type, boolean highestFirst){
+		Random random = new Random(7);
+		PriceLevels priceLevels = highestFirst ? type.create(OrderSide.B) : type.create(OrderSide.S);
+		int totalShares = 0;
+
+		for(int i = 0; i < 300; i++){
+			int shares = 1 + random.nextInt(500);
+			priceLevels.addShares(4400 + random.nextInt(100) - 50, shares);
+			totalShares += shares;
+		}
+
+		int[] targets = { 1, 200, 201, 5000, totalShares };
+		FillResult[] fillResults = new FillResult[targets.length];
+		for(int i = 0; i < targets.length; i++){
+			fillResults[i] = new FillResult();
+		}
+		priceLevels.fill(targets, targets.length, fillResults);
+
+		for(int i = 0; i < targets.length; i++){
+			FillResult expectedFill = new FillResult();
+			priceLevels.fill(targets[i], expectedFill);
+
+			assertEquals(expectedFill.amount, fillResults[i].amount);
+			assertEquals(expectedFill.lastPriceUsed, fillResults[i].lastPriceUsed);
+			assertEquals(expectedFill.sharesUsedAtLastPrice, fillResults[i].sharesUsedAtLastPrice);
+		}
+	}
+
+	@Test
+	public final void testSharedWalk() {
+		for(PriceLevelsType type : PriceLevelsType.values()){
+			assertSharedWalk(type, true);
+			assertSharedWalk(type, false);
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package stocks.solver.raul;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ShardedEngineTest {
+
+	private static final String[] SYMBOLS = { "IBM", "MSFT", "AAPL", "GOOG", "ORCL", "INTC", "CSCO", "A" };
+
+	private static final int ORDERS_PER_SYMBOL = 6000;
+
+	// Symbol of each line of input, in the order the lines come
+	private final List<Integer> symbolOrder = new ArrayList<Integer>();
+
+	/**
+	 * Random input for each symbol, interleaved at random, as lines without the symbol column
+	 */
+	private List<List<String>> symbolLines(){
+		List<List<String>> symbolLines = new ArrayList<List<String>>();
+		for(int i = 0; i < SYMBOLS.length; i++){
+			symbolLines.add(TestFeed.lines(11 + i, ORDERS_PER_SYMBOL));
+		}
+
+		Random random = new Random(11);
+		int[] left = new int[SYMBOLS.length];
+		int leftInAll = 0;
+		for(int i = 0; i < SYMBOLS.length; i++){
+			left[i] = symbolLines.get(i).size();
+			leftInAll += left[i];
+		}
+		for(; leftInAll > 0; leftInAll--){
+			// Symbols with more lines left come up more often, so they all run out together
+			int pick = random.nextInt(leftInAll);
+			int symbol = 0;
+			while(pick >= left[symbol]){
+				pick -= left[symbol++];
+			}
+			left[symbol]--;
+			symbolOrder.add(symbol);
+		}
+
+		return symbolLines;
+	}
+
+	private String priceSingleSymbol(List<String> lines) throws Exception {
+		ByteArrayOutputStream written = new ByteArrayOutputStream();
+		OutputSink outputSink = new OutputSink(Channels.newChannel(written), FlushPolicy.DEFAULT, true);
+		TestFeed.process(new PricingEngine(new MasterBook(200), new OutputSink[] { outputSink }), TestFeed.input(lines));
+		outputSink.close();
+		return written.toString("US-ASCII");
+	}
+
+	private void assertSameOutputPerSymbolAsSingleBook(boolean threadPerSymbol) throws Exception {
+		List<List<String>> symbolLines = symbolLines();
+
+		// Put the symbol column back in, keeping the interleaving
+		int[] next = new int[SYMBOLS.length];
+		StringBuilder input = new StringBuilder();
+		for(int symbol : symbolOrder){
+			String line = symbolLines.get(symbol).get(next[symbol]++);
+			int timestampEnd = line.indexOf(' ');
+			input.append(line, 0, timestampEnd).append(' ').append(SYMBOLS[symbol]).append(line, timestampEnd, line.length()).append('\n');
+		}
+
+		ByteArrayOutputStream written = new ByteArrayOutputStream();
+		OutputSink outputSink = new OutputSink(Channels.newChannel(written), FlushPolicy.DEFAULT, true);
+		ByteLineReader lineReader = new ByteLineReader(new ByteArrayInputStream(input.toString().getBytes(TestFeed.ASCII)));
+		OutputSink[] outputs = new OutputSink[] { outputSink };
+		if(threadPerSymbol){
+			new VirtualThreadEngine(new int[] { 200 }, PriceLevelsType.TREE, false, outputs).run(lineReader, new OrderDecoder(new SymbolTable()));
+		} else {
+			new ShardedEngine(new int[] { 200 }, PriceLevelsType.TREE, false, 3, outputs).run(lineReader, new OrderDecoder(new SymbolTable()));
+		}
+		outputSink.close();
+
+		// Split the output back up by symbol, dropping the symbol column
+		StringBuilder[] results = new StringBuilder[SYMBOLS.length];
+		for(int i = 0; i < SYMBOLS.length; i++){
+			results[i] = new StringBuilder();
+		}
+		for(String line : written.toString("US-ASCII").split("\n")){
+			String[] parts = line.split(" ");
+			for(int i = 0; i < SYMBOLS.length; i++){
+				if(SYMBOLS[i].equals(parts[1])){
+					results[i].append(parts[0]).append(' ').append(parts[2]).append(' ').append(parts[3]).append('\n');
+				}
+			}
+		}
+
+		for(int i = 0; i < SYMBOLS.length; i++){
+			String expected = priceSingleSymbol(symbolLines.get(i));
+			assertFalse(expected.isEmpty());
+			assertEquals(SYMBOLS[i], expected, results[i].toString());
+		}
+	}
+
+	@Test
+	public final void testSameOutputPerSymbolAsSingleBook() throws Exception {
+		assertSameOutputPerSymbolAsSingleBook(false);
+	}
+
+	@Test
+	public final void testThreadPerSymbolSameOutputPerSymbolAsSingleBook() throws Exception {
+		assumeTrue(VirtualThreadEngine.isVirtual());
+		assertSameOutputPerSymbolAsSingleBook(true);
+	}
+
+	/**
+	 * An add with a side the book has no levels for, then more orders of the same symbol than its thread's queue holds
+	 */
+	private ByteLineReader failingInput(){
+		StringBuilder input = new StringBuilder("28800000 IBM A d 00044.10 41.75 368\n");
+		for(int i = 1; i < 50000; i++){
+			input.append(28800000 + i).append(" IBM A ").append(Integer.toString(i, 36)).append(" B 44.10 100\n");
+		}
+		return new ByteLineReader(new ByteArrayInputStream(input.toString().getBytes(TestFeed.ASCII)));
+	}
+
+	@Test(expected = NullPointerException.class, timeout = 60000)
+	public final void testShardFailureEndsRun() throws Exception {
+		OutputSink[] outputs = { new OutputSink(new DiscardChannel(), FlushPolicy.DEFAULT, true) };
+		new ShardedEngine(new int[] { 200 }, PriceLevelsType.TREE, false, 3, outputs).run(failingInput(), new OrderDecoder(new SymbolTable()));
+	}
+
+	@Test(expected = NullPointerException.class, timeout = 60000)
+	public final void testThreadPerSymbolFailureEndsRun() throws Exception {
+		assumeTrue(VirtualThreadEngine.isVirtual());
+		OutputSink[] outputs = { new OutputSink(new DiscardChannel(), FlushPolicy.DEFAULT, true) };
+		new VirtualThreadEngine(new int[] { 200 }, PriceLevelsType.TREE, false, outputs).run(failingInput(), new OrderDecoder(new SymbolTable()));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public final void testThreadPerSymbolNeedsVirtualThreads() throws Exception {
+		assumeFalse(VirtualThreadEngine.isVirtual());
+		new VirtualThreadEngine(new int[] { 200 }, PriceLevelsType.TREE, false, new OutputSink[] { new OutputSink(new DiscardChannel(), FlushPolicy.DEFAULT, true) });
+	}
+}
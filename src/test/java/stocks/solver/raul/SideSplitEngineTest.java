@@ -0,0 +1,74 @@
+package stocks.solver.raul;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SideSplitEngineTest {
+
+	private static final int[] TARGETS = { 1, 200 };
+
+	private String[] price(byte[] input, boolean split) throws Exception {
+		ByteArrayOutputStream[] written = new ByteArrayOutputStream[TARGETS.length];
+		OutputSink[] outputs = new OutputSink[TARGETS.length];
+		for(int i = 0; i < TARGETS.length; i++){
+			written[i] = new ByteArrayOutputStream();
+			outputs[i] = new OutputSink(Channels.newChannel(written[i]), FlushPolicy.DEFAULT, true);
+		}
+
+		if(split){
+			new SideSplitEngine(TARGETS, PriceLevelsType.TREE, false, outputs).run(new ByteLineReader(new ByteArrayInputStream(input)), new OrderDecoder());
+		} else {
+			TestFeed.process(new PricingEngine(new MasterBook(TARGETS, PriceLevelsType.TREE, false), outputs), input);
+		}
+
+		String[] results = new String[TARGETS.length];
+		for(int i = 0; i < TARGETS.length; i++){
+			outputs[i].close();
+			results[i] = written[i].toString("US-ASCII");
+		}
+		return results;
+	}
+
+	@Test
+	public final void testSameOutputAsSingleThread() throws Exception {
+		byte[] input = TestFeed.input(TestFeed.sideRunLines(7, 100000));
+		String[] expected = price(input, false);
+		String[] results = price(input, true);
+
+		for(int i = 0; i < TARGETS.length; i++){
+			assertFalse(expected[i].isEmpty());
+			assertEquals(expected[i], results[i]);
+		}
+	}
+
+	@Test
+	public final void testSameOrderOnRepeatedRuns() throws Exception {
+		byte[] input = TestFeed.input(TestFeed.sideRunLines(7, 100000));
+		String[] expected = price(input, false);
+
+		// Results of one side overtaking the other only show up now and then, as the threads happen to interleave
+		for(int run = 0; run < 20; run++){
+			String[] results = price(input, true);
+			for(int i = 0; i < TARGETS.length; i++){
+				assertEquals("run " + run, expected[i], results[i]);
+			}
+		}
+	}
+
+	/**
+	 * An add with a side the book has no levels for, the ask worker fails on it and takes no more orders while the
+	 * rest of the input backs up behind it
+	 */
+	@Test(expected = NullPointerException.class, timeout = 60000)
+	public final void testWorkerFailureEndsRun() throws Exception {
+		List<String> lines = TestFeed.sideRunLines(7, 100000);
+		lines.add(0, "28800000 A d 00044.10 41.75 368");
+		price(TestFeed.input(lines), true);
+	}
+}
@@ -0,0 +1,121 @@
+package stocks.solver.raul;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Random input for the tests that check an engine against a single book on one thread, and that single threaded
+ * run.  Orders come from an {@link OrderFlowGenerator}, some of them with ids too long to pack into a key, and
+ * every so often a line the engines must skip is put in between: a bad line or a reduce of an order that is not in
+ * the market.
+ */
+final class TestFeed {
+
+	static final Charset ASCII = Charset.forName("US-ASCII");
+
+	private static final int DEPTH = 50;
+	private static final int VOLATILITY = 1;
+	private static final int ID_CARDINALITY = 2000;
+
+	private static final int BAD_LINE_INTERVAL = 5000;
+	private static final int UNKNOWN_REDUCE_INTERVAL = 101;
+	// Orders in a run of mostly bids, see sideRunLines
+	private static final int SIDE_RUN = 1000;
+
+	private TestFeed(){
+	}
+
+	/**
+	 * @param seed Seed, the same seed gives the same lines
+	 * @param count Number of orders, not counting the lines to skip
+	 * @return Lines of input, without line separators
+	 */
+	static List<String> lines(long seed, int count){
+		return lines(seed, count, false);
+	}
+
+	/**
+	 * Same as lines, but every third run of SIDE_RUN orders adds mostly bids, so that an engine with a thread per
+	 * side keeps having one side get ahead of the other
+	 */
+	static List<String> sideRunLines(long seed, int count){
+		return lines(seed, count, true);
+	}
+
+	private static List<String> lines(long seed, int count, boolean sideRuns){
+		OrderFlowGenerator generator = new OrderFlowGenerator(seed, DEPTH, VOLATILITY, ID_CARDINALITY, OrderFlowGenerator.DEFAULT_REDUCE_RATIO);
+		Random random = new Random(seed);
+		List<String> lines = new ArrayList<String>(count + count / UNKNOWN_REDUCE_INTERVAL + count / BAD_LINE_INTERVAL + 2);
+		Order order = new Order();
+
+		for(int i = 0; i < count; i++){
+			generator.next(order);
+
+			// Put in before the order rather than instead of it, so the generator's live orders stay in the market
+			if(i % BAD_LINE_INTERVAL == 17){
+				lines.add(order.getTimestamp() + " A bad");
+			}
+			if(i % UNKNOWN_REDUCE_INTERVAL == 50){
+				lines.add(order.getTimestamp() + " R unknown 10");
+			}
+
+			StringBuilder sb = new StringBuilder().append(order.getTimestamp());
+			if(order.getOrderAction().equals(OrderAction.REDUCE)){
+				sb.append(" R ").append(orderId(order));
+			} else {
+				boolean bid = order.getSide().equals(OrderSide.B);
+				if(sideRuns && (i / SIDE_RUN) % 3 == 0){
+					bid = random.nextInt(10) != 0;
+				}
+				sb.append(" A ").append(orderId(order)).append(bid ? " B " : " S ");
+				Prices.appendTicks(sb, order.getPrice());
+			}
+			lines.add(sb.append(' ').append(order.getSize()).toString());
+		}
+
+		return lines;
+	}
+
+	/**
+	 * @return Id of the order, or a longer one made from it for one id in seven
+	 */
+	private static String orderId(Order order){
+		String orderId = order.getOrderId();
+		return Integer.parseInt(orderId, 36) % 7 == 0 ? "longorderid" + orderId : orderId;
+	}
+
+	/**
+	 * @param lines Lines of input, without line separators
+	 * @return Lines as the bytes of an input
+	 */
+	static byte[] input(List<String> lines){
+		StringBuilder input = new StringBuilder();
+		for(String line : lines){
+			input.append(line).append('\n');
+		}
+		return input.toString().getBytes(ASCII);
+	}
+
+	/**
+	 * Prices an input on the calling thread, skipping bad orders as the solver does
+	 * @param pricingEngine Engine to apply the orders to
+	 * @param input Lines of input
+	 * @throws IOException Thrown if writing a result fails
+	 */
+	static void process(PricingEngine pricingEngine, byte[] input) throws IOException{
+		ByteLineReader lineReader = new ByteLineReader(new ByteArrayInputStream(input));
+		OrderDecoder orderDecoder = new OrderDecoder();
+
+		while(lineReader.nextLine() && lineReader.getLineLength() != 0){
+			try {
+				pricingEngine.process(orderDecoder.decode(lineReader.getBuffer(), lineReader.getLineStart(), lineReader.getLineEnd()));
+			} catch (ParsingException | ReduceMarketLookupException e) {
+				// Skipped, as the solver does
+			}
+		}
+	}
+}